@@ -0,0 +1,201 @@
+package com.platinum.pcv;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Deterministic password corpora shared by the benchmarks. Every corpus is
+ * generated from a fixed seed so runs are comparable with each other.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+final class BenchmarkCorpus {
+
+    // Corpus names, used as JMH parameter values
+    static final String ACCEPTED = "accepted";
+    static final String EARLY_FAIL = "earlyFail";
+    static final String LATE_FAIL = "lateFail";
+
+    // Must be a power of two, the benchmarks cycle through it with a mask
+    static final int SIZE = 256;
+
+    private static final String LOWER = "abcdefghijklmnopqrstuvwxyz";
+    private static final String UPPER = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    private static final String DIGITS = "0123456789";
+    private static final String SYMBOLS = "!@#$%^&*()-_=+[]{};:,.<>?~";
+
+    private BenchmarkCorpus() {
+    }
+
+    /**
+     * A validator for the default policy, with the history length stretched
+     * so the history stage really walks the whole list it is given.
+     *
+     * @param historyLen
+     * @return
+     */
+    static PasswordComplexityValidator validator(int historyLen) {
+        return new PasswordComplexityValidator(PasswordPolicy.builder()
+                .passwordHistoryLen(historyLen)
+                .build());
+    }
+
+    /**
+     * Passwords which survive every stage of validatePassword.
+     *
+     * @param count
+     * @param seed
+     * @return
+     */
+    static String[] accepted(int count, long seed) {
+        PasswordComplexityValidator validator = PasswordComplexityValidator.getDefaultInstance();
+        Random random = new Random(seed);
+        String[] passwords = new String[count];
+        int found = 0;
+        while (found < count) {
+            String candidate = randomPassword(random, 16 + random.nextInt(9));
+            try {
+                validator.validate(candidate);
+                passwords[found++] = candidate;
+            } catch (PasswordComplexityException ex) {
+                // Hit a dictionary word or a date, try again
+            }
+        }
+        return passwords;
+    }
+
+    /**
+     * Passwords rejected by the character and length stage, before any of the
+     * expensive stages run.
+     *
+     * @param count
+     * @param seed
+     * @return
+     */
+    static String[] earlyFailures(int count, long seed) {
+        Random random = new Random(seed);
+        String[] passwords = new String[count];
+        for (int i = 0; i < count; i++) {
+            switch (i % 3) {
+                case 0:
+                    // Too short
+                    passwords[i] = randomPassword(random, 8 + random.nextInt(6));
+                    break;
+                case 1:
+                    // No uppercase characters
+                    passwords[i] = randomPassword(random, 16 + random.nextInt(9)).toLowerCase();
+                    break;
+                default:
+                    // Invalid character at the end
+                    passwords[i] = randomPassword(random, 16 + random.nextInt(8)) + '\u00e9';
+                    break;
+            }
+        }
+        return passwords;
+    }
+
+    /**
+     * A history list of accepted passwords, newest to oldest.
+     *
+     * @param size
+     * @param seed
+     * @return
+     */
+    static ArrayList<String> history(int size, long seed) {
+        String[] passwords = accepted(size, seed);
+        ArrayList<String> history = new ArrayList<String>(size);
+        for (int i = 0; i < size; i++) {
+            history.add(passwords[i]);
+        }
+        return history;
+    }
+
+    /**
+     * The same history hashed, with the newest plaintext so it runs the same
+     * checks as the plain list.
+     *
+     * @param history
+     * @return
+     */
+    static PasswordHistory hashedHistory(ArrayList<String> history) {
+        byte[] salt = "benchmark-salt".getBytes();
+        long[] fingerprints = new long[history.size()];
+        for (int i = 0; i < fingerprints.length; i++) {
+            fingerprints[i] = PasswordHistory.fingerprint(salt, history.get(i));
+        }
+        return new PasswordHistory(salt, fingerprints, history.get(0));
+    }
+
+    /**
+     * Passwords which pass every stage but the history one, taken from the
+     * older half of the history so the reuse check has to walk most of it.
+     *
+     * @param count
+     * @param history
+     * @return
+     */
+    static String[] lateFailures(int count, ArrayList<String> history) {
+        String[] passwords = new String[count];
+        int size = history.size();
+        int start = size / 2;
+        for (int i = 0; i < count; i++) {
+            passwords[i] = history.get(start + (i % (size - start)));
+        }
+        return passwords;
+    }
+
+    /**
+     * The corpus by name, late failures are drawn from the given history.
+     *
+     * @param name
+     * @param history
+     * @return
+     */
+    static String[] corpus(String name, ArrayList<String> history) {
+        if (ACCEPTED.equals(name)) {
+            return accepted(SIZE, 1L);
+        } else if (EARLY_FAIL.equals(name)) {
+            return earlyFailures(SIZE, 2L);
+        } else if (LATE_FAIL.equals(name)) {
+            return lateFailures(SIZE, history);
+        }
+        throw new IllegalArgumentException("Unknown corpus: " + name);
+    }
+
+    private static String randomPassword(Random random, int length) {
+        char[] chars = new char[length];
+        chars[0] = LOWER.charAt(random.nextInt(LOWER.length()));
+        chars[1] = UPPER.charAt(random.nextInt(UPPER.length()));
+        chars[2] = DIGITS.charAt(random.nextInt(DIGITS.length()));
+        chars[3] = SYMBOLS.charAt(random.nextInt(SYMBOLS.length()));
+        for (int i = 4; i < length; i++) {
+            String pool;
+            switch (random.nextInt(4)) {
+                case 0:
+                    pool = LOWER;
+                    break;
+                case 1:
+                    pool = UPPER;
+                    break;
+                case 2:
+                    pool = DIGITS;
+                    break;
+                default:
+                    pool = SYMBOLS;
+                    break;
+            }
+            chars[i] = pool.charAt(random.nextInt(pool.length()));
+        }
+
+        // Shuffle so the forced characters aren't always up front
+        for (int i = length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            char swap = chars[i];
+            chars[i] = chars[j];
+            chars[j] = swap;
+        }
+        return new String(chars);
+    }
+}
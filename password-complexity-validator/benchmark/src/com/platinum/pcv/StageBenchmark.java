@@ -0,0 +1,201 @@
+package com.platinum.pcv;
+
+import com.platinum.dpv.DictionaryPasswordFileException;
+import com.platinum.dpv.DictionaryPasswordValidator;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures each rule of validatePassword in isolation.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StageBenchmark {
+
+    @State(Scope.Thread)
+    public static class Passwords {
+
+        @Param({BenchmarkCorpus.ACCEPTED, BenchmarkCorpus.EARLY_FAIL, BenchmarkCorpus.LATE_FAIL})
+        public String corpus;
+
+        Rule lengthRule;
+        Rule characterRule;
+        String[] passwords;
+        DictionaryPasswordValidator dictionary;
+        MappedDictionaryIndex dictionaryIndex;
+        SuccinctTrie dictionaryTrie;
+        AhoCorasickDictionary dictionaryAutomaton;
+        private int cursor;
+
+        @Setup(Level.Trial)
+        public void setUp() throws DictionaryPasswordFileException, IOException {
+            PasswordPolicy policy = BenchmarkCorpus.validator(10).getPolicy();
+            lengthRule = new BuiltInRules.LengthRule(policy);
+            characterRule = new BuiltInRules.CharacterRule(policy);
+            passwords = BenchmarkCorpus.corpus(corpus, BenchmarkCorpus.history(10, 3L));
+            dictionary = DictionaryPasswordValidator.getInstance();
+            Path indexFile = Files.createTempFile("en_US", ".idx");
+            new DictionaryIndexBuilder(4).addBundledDictionary().writeTo(indexFile);
+            dictionaryIndex = MappedDictionaryIndex.open(indexFile);
+            Files.delete(indexFile);
+            dictionaryTrie = SuccinctTrie.builder(4).addBundledDictionary().build();
+            dictionaryAutomaton = AhoCorasickDictionary.builder(4).addBundledDictionary().build();
+        }
+
+        String next() {
+            return passwords[cursor++ & (BenchmarkCorpus.SIZE - 1)];
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class History {
+
+        @Param({BenchmarkCorpus.ACCEPTED, BenchmarkCorpus.LATE_FAIL})
+        public String historyCorpus;
+
+        @Param({"10", "100", "1000"})
+        public int historySize;
+
+        Rule similarToLastRule;
+        Rule similarToRecentRule;
+        Rule recentlyUsedRule;
+        ArrayList<String> history;
+        PasswordHistory hashedHistory;
+        String[] passwords;
+        private int cursor;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            PasswordPolicy policy = BenchmarkCorpus.validator(historySize).getPolicy();
+            similarToLastRule = new BuiltInRules.SimilarToLastRule(policy);
+            similarToRecentRule = new BuiltInRules.SimilarToRecentRule(policy.toBuilder()
+                    .similarHistoryLen(24)
+                    .build());
+            recentlyUsedRule = new BuiltInRules.RecentlyUsedRule(policy);
+            history = BenchmarkCorpus.history(historySize, 3L);
+            hashedHistory = BenchmarkCorpus.hashedHistory(history);
+            passwords = BenchmarkCorpus.corpus(historyCorpus, history);
+        }
+
+        String next() {
+            return passwords[cursor++ & (BenchmarkCorpus.SIZE - 1)];
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Strength {
+
+        // The estimator has to run inline up to the default maximum length
+        @Param({"16", "50"})
+        public int length;
+
+        StrengthEstimator estimator;
+        String[] passwords;
+        private int cursor;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            estimator = StrengthEstimator.getDefault();
+            String[] accepted = BenchmarkCorpus.accepted(BenchmarkCorpus.SIZE, 1L);
+            passwords = new String[BenchmarkCorpus.SIZE];
+            for (int i = 0; i < passwords.length; i++) {
+                StringBuilder password = new StringBuilder();
+                for (int j = i; password.length() < length; j++) {
+                    password.append(accepted[j & (BenchmarkCorpus.SIZE - 1)]);
+                }
+                passwords[i] = password.substring(0, length);
+            }
+        }
+
+        String next() {
+            return passwords[cursor++ & (BenchmarkCorpus.SIZE - 1)];
+        }
+    }
+
+    @Benchmark
+    public ValidationResult lengthRule(Passwords state) {
+        return state.lengthRule.check(new PasswordCandidate(state.next()));
+    }
+
+    @Benchmark
+    public ValidationResult characterRule(Passwords state) {
+        return state.characterRule.check(new PasswordCandidate(state.next()));
+    }
+
+    @Benchmark
+    public long characterRuleViolations(Passwords state) {
+        return state.characterRule.checkAll(new PasswordCandidate(state.next()));
+    }
+
+    @Benchmark
+    public int patternScan(Passwords state) {
+        return PatternScanner.scan(state.next());
+    }
+
+    @Benchmark
+    public boolean dictionary(Passwords state) {
+        return state.dictionary.isPasswordDictionaryBased(state.next());
+    }
+
+    @Benchmark
+    public boolean mappedDictionary(Passwords state) {
+        return state.dictionaryIndex.isPasswordDictionaryBased(state.next());
+    }
+
+    @Benchmark
+    public boolean trieDictionary(Passwords state) {
+        return state.dictionaryTrie.isPasswordDictionaryBased(state.next());
+    }
+
+    @Benchmark
+    public double strengthEstimate(Strength state) {
+        return state.estimator.estimateGuesses(state.next());
+    }
+
+    @Benchmark
+    public boolean ahoCorasickDictionary(Passwords state) {
+        return state.dictionaryAutomaton.isPasswordDictionaryBased(state.next());
+    }
+
+    @Benchmark
+    public ValidationResult similarToLastRule(History state) {
+        return state.similarToLastRule.check(new PasswordCandidate(state.next(), state.history));
+    }
+
+    @Benchmark
+    public ValidationResult similarToRecentRule(History state) {
+        return state.similarToRecentRule.check(new PasswordCandidate(state.next(), state.history));
+    }
+
+    @Benchmark
+    public ValidationResult recentlyUsedRule(History state) {
+        return state.recentlyUsedRule.check(new PasswordCandidate(state.next(), state.history));
+    }
+
+    @Benchmark
+    public ValidationResult hashedRecentlyUsedRule(History state) {
+        return state.recentlyUsedRule.check(new PasswordCandidate(state.next(), state.hashedHistory));
+    }
+}
@@ -0,0 +1,118 @@
+package com.platinum.pcv;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures validatePassword end to end, from the null check through to the
+ * history comparison.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidatePasswordBenchmark {
+
+    @Param({BenchmarkCorpus.ACCEPTED, BenchmarkCorpus.EARLY_FAIL, BenchmarkCorpus.LATE_FAIL})
+    public String corpus;
+
+    @Param({"10", "100", "1000"})
+    public int historySize;
+
+    private PasswordComplexityValidator validator;
+    private PasswordComplexityValidator measuredValidator;
+    private PasswordComplexityValidator cachedValidator;
+    private ArrayList<String> history;
+    private String[] passwords;
+    private int cursor;
+    private ValidationSession session;
+    private int typed;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        validator = BenchmarkCorpus.validator(historySize);
+        // Metrics which do nothing, to leave only the cost of timing the rules
+        measuredValidator = new PasswordComplexityValidator(validator.getPolicy().toBuilder()
+                .metrics(new ValidationMetrics() {
+                })
+                .build());
+        // Room for the whole corpus, so every check after the first pass hits
+        cachedValidator = new PasswordComplexityValidator(validator.getPolicy().toBuilder()
+                .resultCache(new ResultCache(BenchmarkCorpus.SIZE))
+                .build());
+        history = BenchmarkCorpus.history(historySize, 3L);
+        passwords = BenchmarkCorpus.corpus(corpus, history);
+        session = validator.newSession(history);
+    }
+
+    @Benchmark
+    public Object validatePassword() {
+        try {
+            validator.validate(passwords[cursor++ & (BenchmarkCorpus.SIZE - 1)], history);
+            return null;
+        } catch (PasswordComplexityException ex) {
+            return ex;
+        }
+    }
+
+    @Benchmark
+    public ValidationResult checkPassword() {
+        return validator.check(passwords[cursor++ & (BenchmarkCorpus.SIZE - 1)], history);
+    }
+
+    @Benchmark
+    public ValidationResult checkPasswordMeasured() {
+        return measuredValidator.check(passwords[cursor++ & (BenchmarkCorpus.SIZE - 1)], history);
+    }
+
+    @Benchmark
+    public ValidationResult checkPasswordWithoutHistory() {
+        return validator.check(passwords[cursor++ & (BenchmarkCorpus.SIZE - 1)]);
+    }
+
+    @Benchmark
+    public ValidationResult checkPasswordCached() {
+        return cachedValidator.check(passwords[cursor++ & (BenchmarkCorpus.SIZE - 1)]);
+    }
+
+    @Benchmark
+    public long checkAllViolations() {
+        return validator.checkAll(passwords[cursor++ & (BenchmarkCorpus.SIZE - 1)], history);
+    }
+
+    /**
+     * One keystroke of typing the corpus into a live checklist.
+     *
+     * @return
+     */
+    @Benchmark
+    public long sessionKeystroke() {
+        String password = passwords[cursor & (BenchmarkCorpus.SIZE - 1)];
+        if (typed == password.length()) {
+            session.clear();
+            typed = 0;
+            cursor++;
+            password = passwords[cursor & (BenchmarkCorpus.SIZE - 1)];
+        }
+        session.append(password.charAt(typed++));
+        return session.getViolations();
+    }
+}
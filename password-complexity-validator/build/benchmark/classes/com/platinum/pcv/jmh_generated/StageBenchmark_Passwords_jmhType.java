@@ -0,0 +1,4 @@
+package com.platinum.pcv.jmh_generated;
+public class StageBenchmark_Passwords_jmhType extends StageBenchmark_Passwords_jmhType_B3 {
+}
+
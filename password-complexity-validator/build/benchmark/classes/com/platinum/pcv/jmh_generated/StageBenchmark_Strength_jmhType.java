@@ -0,0 +1,4 @@
+package com.platinum.pcv.jmh_generated;
+public class StageBenchmark_Strength_jmhType extends StageBenchmark_Strength_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package com.platinum.pcv.jmh_generated;
+public class StageBenchmark_jmhType extends StageBenchmark_jmhType_B3 {
+}
+
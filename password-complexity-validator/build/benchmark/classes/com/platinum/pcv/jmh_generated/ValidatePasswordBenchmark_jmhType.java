@@ -0,0 +1,4 @@
+package com.platinum.pcv.jmh_generated;
+public class ValidatePasswordBenchmark_jmhType extends ValidatePasswordBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,405 @@
+package com.platinum.pcv;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.TreeSet;
+
+/**
+ * AhoCorasickDictionary finds every dictionary word embedded in a password in
+ * a single pass over its characters, however many words there are and however
+ * long the password is. The other sources look for a word at every start
+ * position, which grows with the square of the password length.
+ *
+ * The automaton is a trie of the words plus a failure link per state, the
+ * longest proper suffix of the state's prefix which is also a prefix in the
+ * trie. Transitions are packed: states are numbered breadth first, so each
+ * state's edges are a contiguous, sorted run of labels and the edge numbered e
+ * leads to state e + 1. Each state also knows whether it or anything on its
+ * failure chain ends a word, so a match is reported the moment it is reached.
+ *
+ * Leetspeak is undone in the same pass, so "p@55w0rd" is read as "password".
+ * Each symbol maps to one letter only, '1' and '!' are read as 'i'. Anything
+ * which is neither a letter nor a leetspeak symbol is skipped, as with the
+ * other sources.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+public final class AhoCorasickDictionary implements DictionarySource {
+
+    static final char NOT_A_LETTER = 0;
+    private static final char[] LEETSPEAK = new char[128];
+
+    static {
+        LEETSPEAK['@'] = 'a';
+        LEETSPEAK['4'] = 'a';
+        LEETSPEAK['8'] = 'b';
+        LEETSPEAK['('] = 'c';
+        LEETSPEAK['3'] = 'e';
+        LEETSPEAK['6'] = 'g';
+        LEETSPEAK['9'] = 'g';
+        LEETSPEAK['#'] = 'h';
+        LEETSPEAK['1'] = 'i';
+        LEETSPEAK['!'] = 'i';
+        LEETSPEAK['|'] = 'l';
+        LEETSPEAK['0'] = 'o';
+        LEETSPEAK['$'] = 's';
+        LEETSPEAK['5'] = 's';
+        LEETSPEAK['7'] = 't';
+        LEETSPEAK['+'] = 't';
+        LEETSPEAK['2'] = 'z';
+    }
+
+    private final int minWordLength;
+    private final int wordCount;
+    private final boolean leetspeak;
+
+    // The edges of state s are labels[firstEdge[s]] to labels[firstEdge[s + 1] - 1]
+    private final int[] firstEdge;
+    private final char[] labels;
+    private final int[] failure;
+    // Whether the state, or a state on its failure chain, ends a word
+    private final boolean[] matches;
+    private final boolean[] terminal;
+    // The length of each state's prefix, and the nearest state on its
+    // failure chain which ends a word, or 0, for listing every word found
+    private final short[] depths;
+    private final int[] wordLinks;
+
+    private AhoCorasickDictionary(Builder builder) {
+        String[] words = builder.words.toArray(new String[builder.words.size()]);
+        minWordLength = builder.minWordLength;
+        wordCount = words.length;
+        leetspeak = builder.leetspeak;
+
+        // One state per distinct prefix, bounded by the total letters
+        int maxStates = 1;
+        for (String word : words) {
+            maxStates += word.length();
+        }
+        int[] edges = new int[maxStates + 1];
+        char[] edgeLabels = new char[maxStates];
+        boolean[] ends = new boolean[maxStates];
+        short[] prefixLengths = new short[maxStates];
+
+        // Breadth first over the trie, each state being the range of sorted
+        // words sharing a prefix of length depth and longer than it. The edge
+        // numbered e creates the state numbered e + 1.
+        int stateCount = 1;
+        int edgeCount = 0;
+        ArrayDeque<int[]> queue = new ArrayDeque<int[]>();
+        queue.add(new int[]{0, words.length, 0});
+        for (int state = 0; queue.isEmpty() == false; state++) {
+            int[] range = queue.poll();
+            int depth = range[2];
+            edges[state] = edgeCount;
+            for (int i = range[0]; i < range[1];) {
+                char c = words[i].charAt(depth);
+                int end = i;
+                while (end < range[1] && words[end].charAt(depth) == c) {
+                    end++;
+                }
+                edgeLabels[edgeCount++] = c;
+                int child = stateCount++;
+                prefixLengths[child] = (short) Math.min(depth + 1, Short.MAX_VALUE);
+                // Sorted, so a word ending here comes first
+                int childStart = i;
+                if (words[i].length() == depth + 1) {
+                    ends[child] = true;
+                    childStart++;
+                }
+                queue.add(new int[]{childStart, end, depth + 1});
+                i = end;
+            }
+        }
+        edges[stateCount] = edgeCount;
+
+        firstEdge = Arrays.copyOf(edges, stateCount + 1);
+        labels = Arrays.copyOf(edgeLabels, edgeCount);
+        terminal = Arrays.copyOf(ends, stateCount);
+        depths = Arrays.copyOf(prefixLengths, stateCount);
+        failure = new int[stateCount];
+        matches = new boolean[stateCount];
+        wordLinks = new int[stateCount];
+
+        // States are numbered breadth first, so every failure target is
+        // finished before it is needed
+        for (int state = 0; state < stateCount; state++) {
+            for (int edge = firstEdge[state]; edge < firstEdge[state + 1]; edge++) {
+                int child = edge + 1;
+                if (state == 0) {
+                    failure[child] = 0;
+                } else {
+                    failure[child] = next(failure[state], labels[edge]);
+                }
+                matches[child] = terminal[child] || matches[failure[child]];
+                wordLinks[child] = terminal[failure[child]] ? failure[child] : wordLinks[failure[child]];
+            }
+        }
+    }
+
+    /**
+     * Start a new automaton.
+     *
+     * @param minWordLength the shortest word to look for
+     * @return
+     */
+    public static Builder builder(int minWordLength) {
+        return new Builder(minWordLength);
+    }
+
+    @Override
+    public boolean isPasswordDictionaryBased(CharSequence password) {
+        int state = 0;
+        for (int i = 0, len = password.length(); i < len; i++) {
+            char c = normalize(password.charAt(i));
+            if (c == NOT_A_LETTER) {
+                continue;
+            }
+            state = next(state, c);
+            if (matches[state]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isDictionaryWord(CharSequence word) {
+        int len = word.length();
+        if (len < minWordLength) {
+            return false;
+        }
+        int state = 0;
+        for (int i = 0; i < len; i++) {
+            char c = normalize(word.charAt(i));
+            if (c == NOT_A_LETTER) {
+                return false;
+            }
+            int edge = findEdge(state, c);
+            if (edge < 0) {
+                return false;
+            }
+            state = edge + 1;
+        }
+        return terminal[state];
+    }
+
+    /**
+     * The shortest word the automaton was built with.
+     *
+     * @return
+     */
+    public int getMinWordLength() {
+        return minWordLength;
+    }
+
+    /**
+     * The number of distinct words in the automaton.
+     *
+     * @return
+     */
+    public int size() {
+        return wordCount;
+    }
+
+    /**
+     * The number of states in the automaton.
+     *
+     * @return
+     */
+    public int stateCount() {
+        return failure.length;
+    }
+
+    // The automaton can be carried along a password one character at a time,
+    // as ValidationSession does while it is typed, starting from state 0
+
+    /**
+     * The state after reading a password character, the same state if the
+     * character is skipped.
+     */
+    int step(int state, char c) {
+        char letter = normalize(c);
+        return letter == NOT_A_LETTER ? state : next(state, letter);
+    }
+
+    /**
+     * Whether reaching the state means a word was found.
+     */
+    boolean isMatch(int state) {
+        return matches[state];
+    }
+
+    // StrengthEstimator lists every word ending at a state: the state itself
+    // if it ends one, then along the word links until 0
+
+    /**
+     * Whether the state's prefix is a word.
+     */
+    boolean isWordEnd(int state) {
+        return terminal[state];
+    }
+
+    /**
+     * The next shorter word ending where the state's prefix does, or 0.
+     */
+    int nextWordEnd(int state) {
+        return wordLinks[state];
+    }
+
+    /**
+     * The number of letters in the state's prefix.
+     */
+    int prefixLength(int state) {
+        return depths[state];
+    }
+
+    /**
+     * Whether a password character is a leetspeak symbol standing for a
+     * letter, rather than a letter.
+     */
+    boolean isLeetspeak(char c) {
+        return leetspeak && c < 128 && LEETSPEAK[c] != NOT_A_LETTER;
+    }
+
+    /**
+     * The letter a password character is read as, or NOT_A_LETTER if it is
+     * skipped.
+     */
+    char normalize(char c) {
+        if (c < 128) {
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+                return (char) (c | 0x20);
+            }
+            return leetspeak ? LEETSPEAK[c] : NOT_A_LETTER;
+        }
+        return Character.isLetter(c) ? Character.toLowerCase(c) : NOT_A_LETTER;
+    }
+
+    /**
+     * Follow the edge labelled c, falling back along the failure links until
+     * one has it, or the root doesn't.
+     */
+    private int next(int state, char c) {
+        while (true) {
+            int edge = findEdge(state, c);
+            if (edge >= 0) {
+                return edge + 1;
+            }
+            if (state == 0) {
+                return 0;
+            }
+            state = failure[state];
+        }
+    }
+
+    /**
+     * The edge out of state labelled c, or -1.
+     */
+    private int findEdge(int state, char c) {
+        int low = firstEdge[state];
+        int high = firstEdge[state + 1] - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            char label = labels[middle];
+            if (label < c) {
+                low = middle + 1;
+            } else if (label > c) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Collects the words for an AhoCorasickDictionary. Builders are not thread
+     * safe, but the automata they build are.
+     */
+    public static final class Builder {
+
+        private final int minWordLength;
+        private final TreeSet<String> words = new TreeSet<String>();
+        private boolean leetspeak = true;
+
+        private Builder(int minWordLength) {
+            if (minWordLength < 1) {
+                throw new IllegalArgumentException("The minimum word length must be at least 1.");
+            }
+            this.minWordLength = minWordLength;
+        }
+
+        /**
+         * Whether to read leetspeak symbols as the letters they stand for, on
+         * by default.
+         *
+         * @param value
+         * @return
+         */
+        public Builder leetspeak(boolean value) {
+            leetspeak = value;
+            return this;
+        }
+
+        /**
+         * Add a word, if it is long enough and only holds letters.
+         *
+         * @param word
+         * @return
+         */
+        public Builder addWord(CharSequence word) {
+            String folded = WordLists.fold(word, minWordLength);
+            if (folded != null) {
+                words.add(folded);
+            }
+            return this;
+        }
+
+        /**
+         * Add a word list, one word per line. Hunspell style affix flags
+         * after a '/' are dropped, so .dic files can be used as they are.
+         *
+         * @param list
+         * @return
+         * @throws IOException
+         */
+        public Builder addWords(Reader list) throws IOException {
+            BufferedReader reader = new BufferedReader(list);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                addWord(WordLists.wordOf(line));
+            }
+            return this;
+        }
+
+        /**
+         * Add the word list bundled with DictionaryPasswordValidator.
+         *
+         * @return
+         * @throws IOException if it isn't on the classpath
+         */
+        public Builder addBundledDictionary() throws IOException {
+            Reader in = DictionaryIndexBuilder.openBundledDictionary();
+            try {
+                return addWords(in);
+            } finally {
+                in.close();
+            }
+        }
+
+        /**
+         * Build the automaton.
+         *
+         * @return
+         */
+        public AhoCorasickDictionary build() {
+            return new AhoCorasickDictionary(this);
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package com.platinum.pcv;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * AsyncPasswordValidator checks passwords for servers which mustn't block
+ * their request threads, such as event loops and reactive stacks.
+ *
+ * The rules themselves only use the CPU, so once everything they need is
+ * loaded a check runs on the caller's thread and the future it returns is
+ * already complete. Only the blocking work goes to the executor: loading the
+ * bundled dictionary on first use, and fetching a user's history from a
+ * PasswordHistoryProvider. The default executor runs each task on a virtual
+ * thread where the JVM has them, and on a pooled daemon thread where it
+ * doesn't.
+ *
+ * Calls made while the rules are loading all wait on the same load, rather
+ * than each blocking a thread on it. Once it finishes, each waiting check is
+ * handed to the executor, so they run in parallel rather than one after
+ * another on the loading thread. If the load fails, the waiting checks report
+ * DICTIONARY_UNAVAILABLE without running the rules, which would each try the
+ * load again, and the next call starts a fresh load.
+ *
+ * The password mustn't be changed or wiped until the future completes.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+public final class AsyncPasswordValidator {
+
+    private static final Logger LOG = Logger.getLogger(AsyncPasswordValidator.class.getName());
+
+    private static Executor defaultExecutor;
+
+    private final PasswordComplexityValidator validator;
+    private final PasswordHistoryProvider historyProvider;
+    private final Executor executor;
+    private final List<Rule> rules;
+    private final AtomicReference<CompletableFuture<Void>> loading = new AtomicReference<CompletableFuture<Void>>();
+    private volatile boolean loaded;
+
+    /**
+     * A facade checking without any history.
+     *
+     * @param validator
+     */
+    public AsyncPasswordValidator(PasswordComplexityValidator validator) {
+        this(validator, null, null);
+    }
+
+    /**
+     * A facade fetching histories from the given provider.
+     *
+     * @param validator
+     * @param historyProvider null if only checks without history are made
+     * @param executor where the blocking work runs, or null for the default
+     */
+    public AsyncPasswordValidator(PasswordComplexityValidator validator, PasswordHistoryProvider historyProvider,
+            Executor executor) {
+        if (validator == null) {
+            throw new IllegalArgumentException("The validator cannot be null.");
+        }
+        this.validator = validator;
+        this.historyProvider = historyProvider;
+        this.executor = executor == null ? getDefaultExecutor() : executor;
+        this.rules = validator.getRules();
+    }
+
+    /**
+     * The validator the checks are made with.
+     *
+     * @return
+     */
+    public PasswordComplexityValidator getValidator() {
+        return validator;
+    }
+
+    /**
+     * Check a password without any history, as PasswordComplexityValidator
+     * does.
+     *
+     * @param newPassword
+     * @return VALID, or a rule the password broke
+     */
+    public CompletableFuture<ValidationResult> check(final CharSequence newPassword) {
+        return whenLoaded(() -> validator.check(newPassword), ValidationResult.DICTIONARY_UNAVAILABLE);
+    }
+
+    /**
+     * Check a password against the user's history, fetched from the provider.
+     *
+     * @param newPassword
+     * @param userId
+     * @return VALID, or a rule the password broke. Completes exceptionally
+     * with the provider's IOException if the history couldn't be fetched.
+     */
+    public CompletableFuture<ValidationResult> check(final CharSequence newPassword, String userId) {
+        return withHistory(userId, history -> validator.check(newPassword, history),
+                ValidationResult.DICTIONARY_UNAVAILABLE);
+    }
+
+    /**
+     * Check every rule for a password without any history.
+     *
+     * @param newPassword
+     * @return a bit per violation, see ValidationResult.fromBits
+     */
+    public CompletableFuture<Long> checkAll(final CharSequence newPassword) {
+        return whenLoaded(() -> validator.checkAll(newPassword), ValidationResult.DICTIONARY_UNAVAILABLE.getBit());
+    }
+
+    /**
+     * Check every rule for a password against the user's history.
+     *
+     * @param newPassword
+     * @param userId
+     * @return a bit per violation, see ValidationResult.fromBits
+     */
+    public CompletableFuture<Long> checkAll(final CharSequence newPassword, String userId) {
+        return withHistory(userId, history -> validator.checkAll(newPassword, history),
+                ValidationResult.DICTIONARY_UNAVAILABLE.getBit());
+    }
+
+    private <T> CompletableFuture<T> whenLoaded(Supplier<T> check, final T unavailable) {
+        CompletableFuture<Void> load = load();
+        if (load != null) {
+            return load.handleAsync((ignored, failure) -> {
+                checkLoad(failure);
+                return failure == null ? check.get() : unavailable;
+            }, executor);
+        }
+        CompletableFuture<T> result = new CompletableFuture<T>();
+        try {
+            result.complete(check.get());
+        } catch (RuntimeException ex) {
+            result.completeExceptionally(ex);
+        }
+        return result;
+    }
+
+    private <T> CompletableFuture<T> withHistory(final String userId, Function<PasswordHistory, T> check,
+            final T unavailable) {
+        if (historyProvider == null) {
+            throw new IllegalStateException("No history provider was given.");
+        }
+        if (userId == null) {
+            throw new IllegalArgumentException("The user id cannot be null.");
+        }
+        final CompletableFuture<PasswordHistory> history = new CompletableFuture<PasswordHistory>();
+        execute(history, () -> {
+            try {
+                history.complete(historyProvider.getHistory(userId));
+            } catch (IOException | RuntimeException ex) {
+                history.completeExceptionally(ex);
+            }
+        });
+        CompletableFuture<Void> load = load();
+        if (load != null) {
+            return history.thenCombineAsync(load.handle((ignored, failure) -> failure), (fetched, failure) -> {
+                checkLoad(failure);
+                return failure == null ? check.apply(fetched) : unavailable;
+            }, executor);
+        }
+        return history.thenApply(check);
+    }
+
+    /**
+     * Pass on the executor rejecting the load. A load which ran and failed
+     * leaves the rules unavailable instead.
+     */
+    private static void checkLoad(Throwable failure) {
+        if (failure instanceof RejectedExecutionException) {
+            throw new CompletionException(failure);
+        }
+    }
+
+    /**
+     * The load the checks must wait for, starting it if no call has yet.
+     *
+     * @return null once every rule is loaded
+     */
+    private CompletableFuture<Void> load() {
+        while (loaded == false) {
+            CompletableFuture<Void> current = loading.get();
+            if (current != null) {
+                return current;
+            }
+            boolean ready = true;
+            for (Rule rule : rules) {
+                ready &= rule.isLoaded();
+            }
+            if (ready == true) {
+                loaded = true;
+                break;
+            }
+            final CompletableFuture<Void> started = new CompletableFuture<Void>();
+            if (loading.compareAndSet(null, started) == true) {
+                execute(started, () -> loadRules(started));
+                if (started.isCompletedExceptionally() == true) {
+                    // Rejected by the executor, so the next call tries again
+                    loading.compareAndSet(started, null);
+                }
+                return started;
+            }
+        }
+        return null;
+    }
+
+    private void loadRules(CompletableFuture<Void> started) {
+        try {
+            for (Rule rule : rules) {
+                if (rule.isLoaded() == false) {
+                    rule.load();
+                }
+            }
+            loaded = true;
+            loading.compareAndSet(started, null);
+            started.complete(null);
+        } catch (Throwable ex) {
+
+            LOG.log(Level.SEVERE, null, ex);
+            // The calls waiting on it fail, the next one tries again
+            loading.compareAndSet(started, null);
+            started.completeExceptionally(ex);
+            if (ex instanceof Error) {
+                throw (Error) ex;
+            }
+        }
+    }
+
+    private void execute(CompletableFuture<?> future, Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException ex) {
+            future.completeExceptionally(ex);
+        }
+    }
+
+    /**
+     * A virtual thread per task on Java 21 and later, otherwise a pool of
+     * daemon threads. Looked up reflectively as the library still builds for
+     * Java 8.
+     */
+    private static synchronized Executor getDefaultExecutor() {
+        if (defaultExecutor == null) {
+            try {
+                defaultExecutor = (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException ex) {
+                defaultExecutor = Executors.newCachedThreadPool(task -> {
+                    Thread thread = new Thread(task, "AsyncPasswordValidator");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
+        return defaultExecutor;
+    }
+}
@@ -0,0 +1,61 @@
+package com.platinum.pcv;
+
+import com.platinum.dpv.DictionaryPasswordFileException;
+import com.platinum.dpv.DictionaryPasswordValidator;
+
+/**
+ * The bundled en_US dictionary, held in DictionaryPasswordValidator's bloom
+ * filter. This is the default source. It is loaded on first use and shared by
+ * the whole JVM, its accuracy and minimum word length come from the first
+ * policy applied through PasswordComplexityValidator.configure. Being a bloom
+ * filter it has a small rate of false positives.
+ *
+ * DictionaryPasswordValidator only takes Strings, so this is the one source
+ * which copies passwords given as a char[] or CharBuffer into a String. Use
+ * one of the other sources where the plaintext mustn't linger on the heap.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+public final class BloomFilterDictionarySource implements DictionarySource {
+
+    public static final BloomFilterDictionarySource INSTANCE = new BloomFilterDictionarySource();
+
+    // The name its load is reported under, see ValidationMetrics
+    static final String NAME = "en_US";
+
+    // DictionaryPasswordValidator.getInstance is synchronized, so the loaded
+    // instance is kept here to keep lookups off its lock
+    private volatile DictionaryPasswordValidator validator;
+
+    private BloomFilterDictionarySource() {
+    }
+
+    @Override
+    public boolean isPasswordDictionaryBased(CharSequence password) throws DictionaryPasswordFileException {
+        return validator().isPasswordDictionaryBased(password.toString());
+    }
+
+    @Override
+    public boolean isDictionaryWord(CharSequence word) throws DictionaryPasswordFileException {
+        return validator().isDictionaryWord(word.toString().toLowerCase());
+    }
+
+    boolean isLoaded() {
+        return validator != null;
+    }
+
+    void load() throws DictionaryPasswordFileException {
+        validator();
+    }
+
+    private DictionaryPasswordValidator validator() throws DictionaryPasswordFileException {
+        DictionaryPasswordValidator loaded = validator;
+        if (loaded == null) {
+            loaded = DictionaryPasswordValidator.getInstance();
+            validator = loaded;
+        }
+        return loaded;
+    }
+}
@@ -0,0 +1,325 @@
+package com.platinum.pcv;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * BreachedPasswordIndex checks passwords against a known breach corpus, such
+ * as the Pwned Passwords list, held in a local file written ahead of time by
+ * BreachedPasswordIndexBuilder. Nothing is sent over the network.
+ *
+ * The file holds the leading 64 bits of each breached password's hash, sorted
+ * as unsigned numbers, after a fan-out table of where each 16 bit prefix
+ * starts. The fan-out table is read onto the heap, 512 KB however large the
+ * corpus, and the hashes are mapped read only in chunks of up to 1 GB.
+ *
+ * A billion hashes leave about 15,000 in each bucket, 120 KB, which a binary
+ * search would cross in 5 or 6 cold pages. As the hashes are uniform, a lookup
+ * instead guesses the key's position from the bits after its prefix, and
+ * searches outward from there in growing steps. The guess is typically off by
+ * about the square root of the bucket's size, 120 hashes or 1 KB, so most
+ * lookups read one page, or two when the guess lies near a page's edge.
+ *
+ * <pre>
+ * int magic, int version, int algorithm, int unused, long count, long unused,
+ * long[65537] fanOut, long[count] hashes
+ * </pre>
+ *
+ * Keeping 64 of the hash's bits makes a false match against a corpus of a
+ * billion hashes about a one in 18 billion chance.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+public final class BreachedPasswordIndex {
+
+    static final int MAGIC = 0x50435642; // "PCVB"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int FAN_OUT_BITS = 16;
+    static final int FAN_OUT_SIZE = (1 << FAN_OUT_BITS) + 1;
+    static final long DATA_OFFSET = HEADER_SIZE + FAN_OUT_SIZE * 8L;
+
+    // The bits after the fan-out prefix, and the number of values they take
+    private static final long GUESS_MASK = (1L << (64 - FAN_OUT_BITS)) - 1;
+    private static final double GUESS_SCALE = 1L << (64 - FAN_OUT_BITS);
+
+    // Mapped buffers are limited to 2 GB, so the hashes are mapped in chunks
+    private static final int CHUNK_BITS = 30;
+    private static final long CHUNK_SIZE = 1L << CHUNK_BITS;
+
+    /**
+     * The hashes a corpus can be made of.
+     */
+    public enum HashAlgorithm {
+
+        /**
+         * SHA-1 of the UTF-8 password, as used by Pwned Passwords.
+         */
+        SHA1(1, "SHA-1", StandardCharsets.UTF_8),
+        /**
+         * NTLM, MD4 of the UTF-16LE password. The JDK doesn't register MD4,
+         * so this needs a provider which does, such as Bouncy Castle.
+         */
+        NTLM(2, "MD4", StandardCharsets.UTF_16LE);
+
+        private final int id;
+        private final String digestName;
+        private final Charset charset;
+        private final ThreadLocal<MessageDigest> digest = new ThreadLocal<MessageDigest>() {
+
+            @Override
+            protected MessageDigest initialValue() {
+                try {
+                    return MessageDigest.getInstance(digestName);
+                } catch (NoSuchAlgorithmException ex) {
+                    throw new IllegalStateException("No security provider supports " + digestName + ".", ex);
+                }
+            }
+        };
+        private final ThreadLocal<CharsetEncoder> encoder = new ThreadLocal<CharsetEncoder>() {
+
+            @Override
+            protected CharsetEncoder initialValue() {
+                return PasswordEncoding.replacing(charset.newEncoder());
+            }
+        };
+
+        private HashAlgorithm(int id, String digestName, Charset charset) {
+            this.id = id;
+            this.digestName = digestName;
+            this.charset = charset;
+        }
+
+        /**
+         * Whether a security provider supports the digest.
+         *
+         * @return
+         */
+        public boolean isAvailable() {
+            try {
+                MessageDigest.getInstance(digestName);
+                return true;
+            } catch (NoSuchAlgorithmException ex) {
+                return false;
+            }
+        }
+
+        /**
+         * The leading 64 bits of the password's hash.
+         *
+         * @param password
+         * @return
+         */
+        public long key(CharSequence password) {
+            MessageDigest md = digest.get();
+            md.reset();
+            PasswordEncoding.update(md, encoder.get(), password);
+            byte[] hash = md.digest();
+            long key = 0L;
+            for (int i = 0; i < 8; i++) {
+                key = (key << 8) | (hash[i] & 0xFF);
+            }
+            return key;
+        }
+
+        static HashAlgorithm byId(int id) {
+            for (HashAlgorithm algorithm : values()) {
+                if (algorithm.id == id) {
+                    return algorithm;
+                }
+            }
+            return null;
+        }
+
+        int getId() {
+            return id;
+        }
+    }
+
+    private final HashAlgorithm algorithm;
+    private final long count;
+    private final long[] fanOut;
+    private final LongBuffer[] chunks;
+
+    private BreachedPasswordIndex(HashAlgorithm algorithm, long count, long[] fanOut, LongBuffer[] chunks) {
+        this.algorithm = algorithm;
+        this.count = count;
+        this.fanOut = fanOut;
+        this.chunks = chunks;
+    }
+
+    /**
+     * Map an index file.
+     *
+     * @param file
+     * @return
+     * @throws IOException if the file can't be read or isn't an index
+     */
+    public static BreachedPasswordIndex open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < DATA_OFFSET) {
+                throw new IOException("Not a breached password index file.");
+            }
+            ByteBuffer head = ByteBuffer.allocate((int) DATA_OFFSET);
+            while (head.hasRemaining()) {
+                if (channel.read(head, head.position()) < 0) {
+                    throw new IOException("The breached password index file is truncated or corrupt.");
+                }
+            }
+            head.flip();
+            if (head.getInt(0) != MAGIC) {
+                throw new IOException("Not a breached password index file.");
+            }
+            if (head.getInt(4) != VERSION) {
+                throw new IOException("Unsupported breached password index version: " + head.getInt(4));
+            }
+            HashAlgorithm algorithm = HashAlgorithm.byId(head.getInt(8));
+            if (algorithm == null) {
+                throw new IOException("Unknown breached password hash algorithm: " + head.getInt(8));
+            }
+            if (algorithm.isAvailable() == false) {
+                throw new IOException("No security provider supports the " + algorithm + " hash used by the index.");
+            }
+            long count = head.getLong(16);
+            if (count < 0 || size != DATA_OFFSET + count * 8) {
+                throw new IOException("The breached password index file is truncated or corrupt.");
+            }
+            long[] fanOut = new long[FAN_OUT_SIZE];
+            head.position(HEADER_SIZE);
+            head.asLongBuffer().get(fanOut);
+            if (fanOut[0] != 0 || fanOut[FAN_OUT_SIZE - 1] != count) {
+                throw new IOException("The breached password index file is truncated or corrupt.");
+            }
+
+            // The mappings stay valid once the channel is closed
+            long dataSize = count * 8;
+            LongBuffer[] chunks = new LongBuffer[(int) ((dataSize + CHUNK_SIZE - 1) >>> CHUNK_BITS)];
+            for (int i = 0; i < chunks.length; i++) {
+                long start = (long) i << CHUNK_BITS;
+                long length = Math.min(CHUNK_SIZE, dataSize - start);
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, DATA_OFFSET + start, length).asLongBuffer();
+            }
+            return new BreachedPasswordIndex(algorithm, count, fanOut, chunks);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Whether the password is in the corpus.
+     *
+     * @param password
+     * @return
+     */
+    public boolean contains(CharSequence password) {
+        return containsKey(algorithm.key(password));
+    }
+
+    /**
+     * Whether a hash is in the corpus, given its leading 64 bits.
+     *
+     * @param key
+     * @return
+     */
+    public boolean containsKey(long key) {
+        int bucket = (int) (key >>> (64 - FAN_OUT_BITS));
+        long first = fanOut[bucket];
+        long end = fanOut[bucket + 1];
+        if (first == end) {
+            return false;
+        }
+        long guess = first + (long) ((key & GUESS_MASK) * ((end - first) / GUESS_SCALE));
+        if (guess >= end) {
+            guess = end - 1;
+        }
+        int compare = Long.compareUnsigned(keyAt(guess), key);
+        if (compare == 0) {
+            return true;
+        }
+
+        // Step outward from the guess until a key past the one looked for
+        // bounds it, then search what's left between the last two steps
+        long step = 1;
+        if (compare < 0) {
+            long low = guess + 1;
+            long high = guess + step;
+            while (high < end) {
+                compare = Long.compareUnsigned(keyAt(high), key);
+                if (compare == 0) {
+                    return true;
+                } else if (compare > 0) {
+                    break;
+                }
+                low = high + 1;
+                step <<= 1;
+                high = guess + step;
+            }
+            return binarySearch(key, low, Math.min(high, end) - 1);
+        } else {
+            long high = guess - 1;
+            long low = guess - step;
+            while (low >= first) {
+                compare = Long.compareUnsigned(keyAt(low), key);
+                if (compare == 0) {
+                    return true;
+                } else if (compare < 0) {
+                    break;
+                }
+                high = low - 1;
+                step <<= 1;
+                low = guess - step;
+            }
+            return binarySearch(key, Math.max(low + 1, first), high);
+        }
+    }
+
+    /**
+     * The hash the corpus is made of.
+     *
+     * @return
+     */
+    public HashAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * The number of distinct hashes in the corpus.
+     *
+     * @return
+     */
+    public long size() {
+        return count;
+    }
+
+    private boolean binarySearch(long key, long low, long high) {
+        while (low <= high) {
+            long middle = (low + high) >>> 1;
+            int compare = Long.compareUnsigned(keyAt(middle), key);
+            if (compare < 0) {
+                low = middle + 1;
+            } else if (compare > 0) {
+                high = middle - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long keyAt(long index) {
+        return chunks[(int) (index >>> (CHUNK_BITS - 3))].get((int) (index & ((CHUNK_SIZE >>> 3) - 1)));
+    }
+}
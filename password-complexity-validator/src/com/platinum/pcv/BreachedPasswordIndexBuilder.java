@@ -0,0 +1,272 @@
+package com.platinum.pcv;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * BreachedPasswordIndexBuilder writes the files read by BreachedPasswordIndex
+ * from a breach corpus of hex hashes, one per line. Anything after a ':' is
+ * ignored, so the Pwned Passwords "HASH:count" files can be used as they are,
+ * and the lines needn't be sorted:
+ *
+ * <pre>
+ * java com.platinum.pcv.BreachedPasswordIndexBuilder [--ntlm] output.idx corpus.txt ...
+ * </pre>
+ *
+ * Corpora run to hundreds of millions of hashes, far more than fit on the
+ * heap, so the hashes are first scattered by their leading byte into 256
+ * temporary files, each small enough to sort on its own, and the sorted
+ * buckets are then written out in order.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+public final class BreachedPasswordIndexBuilder {
+
+    private static final int SCATTER_BUCKETS = 256;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final BreachedPasswordIndex.HashAlgorithm algorithm;
+    private final Path tempDir;
+    private final Path[] bucketFiles = new Path[SCATTER_BUCKETS];
+    private final DataOutputStream[] buckets = new DataOutputStream[SCATTER_BUCKETS];
+
+    /**
+     * @param algorithm the hash the corpus is made of
+     * @param tempDir where to scatter the hashes, which needs as much free
+     * space as the finished index
+     */
+    public BreachedPasswordIndexBuilder(BreachedPasswordIndex.HashAlgorithm algorithm, Path tempDir) {
+        if (algorithm == null || tempDir == null) {
+            throw new IllegalArgumentException("The algorithm and temporary directory must not be null");
+        }
+        this.algorithm = algorithm;
+        this.tempDir = tempDir;
+    }
+
+    /**
+     * Add a hash, in hex. Only the leading 16 digits are kept.
+     *
+     * @param hex
+     * @return
+     * @throws IOException
+     */
+    public BreachedPasswordIndexBuilder addHash(CharSequence hex) throws IOException {
+        if (hex.length() < 16) {
+            throw new IllegalArgumentException("Not a hash: " + hex);
+        }
+        long key = 0L;
+        for (int i = 0; i < 16; i++) {
+            int digit = Character.digit(hex.charAt(i), 16);
+            if (digit < 0) {
+                throw new IllegalArgumentException("Not a hash: " + hex);
+            }
+            key = (key << 4) | digit;
+        }
+        return addKey(key);
+    }
+
+    /**
+     * Add a plaintext password, hashed with the builder's algorithm.
+     *
+     * @param password
+     * @return
+     * @throws IOException
+     */
+    public BreachedPasswordIndexBuilder addPassword(String password) throws IOException {
+        return addKey(algorithm.key(password));
+    }
+
+    /**
+     * Add every line of a corpus, skipping blank lines.
+     *
+     * @param corpus
+     * @return
+     * @throws IOException if a line isn't a hash
+     */
+    public BreachedPasswordIndexBuilder addHashes(Reader corpus) throws IOException {
+        BufferedReader reader = new BufferedReader(corpus, BUFFER_SIZE);
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            int count = line.indexOf(':');
+            String hex = (count < 0 ? line : line.substring(0, count)).trim();
+            if (hex.isEmpty()) {
+                continue;
+            }
+            try {
+                addHash(hex);
+            } catch (IllegalArgumentException ex) {
+                throw new IOException("Line " + lineNumber + " is not a hash.", ex);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Sort the hashes and write the index. It is written to a temporary file
+     * first and moved into place, so a running process never maps a half
+     * written index. The builder can't be used afterwards.
+     *
+     * @param file
+     * @throws IOException
+     */
+    public void writeTo(Path file) throws IOException {
+        Path absolute = file.toAbsolutePath();
+        Path temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try {
+            FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE);
+            try {
+                long[] fanOut = new long[BreachedPasswordIndex.FAN_OUT_SIZE];
+                long count = 0;
+                ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE);
+                channel.position(BreachedPasswordIndex.DATA_OFFSET);
+
+                for (int b = 0; b < SCATTER_BUCKETS; b++) {
+                    long[] keys = readBucket(b);
+                    // Every key in a bucket shares its leading byte, so the
+                    // signed order is the unsigned order
+                    Arrays.sort(keys);
+                    for (int i = 0; i < keys.length; i++) {
+                        if (i > 0 && keys[i] == keys[i - 1]) {
+                            continue;
+                        }
+                        fanOut[(int) (keys[i] >>> (64 - BreachedPasswordIndex.FAN_OUT_BITS)) + 1]++;
+                        count++;
+                        if (out.remaining() < 8) {
+                            writeFully(channel, out);
+                        }
+                        out.putLong(keys[i]);
+                    }
+                }
+                writeFully(channel, out);
+
+                for (int i = 1; i < fanOut.length; i++) {
+                    fanOut[i] += fanOut[i - 1];
+                }
+                ByteBuffer head = ByteBuffer.allocate((int) BreachedPasswordIndex.DATA_OFFSET);
+                head.putInt(BreachedPasswordIndex.MAGIC);
+                head.putInt(BreachedPasswordIndex.VERSION);
+                head.putInt(algorithm.getId());
+                head.putInt(0);
+                head.putLong(count);
+                head.putLong(0L);
+                for (long start : fanOut) {
+                    head.putLong(start);
+                }
+                channel.position(0);
+                writeFully(channel, head);
+            } finally {
+                channel.close();
+            }
+            Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+            discard();
+        }
+    }
+
+    /**
+     * Delete the scattered hashes without writing an index.
+     *
+     * @throws IOException
+     */
+    public void discard() throws IOException {
+        for (int b = 0; b < SCATTER_BUCKETS; b++) {
+            if (buckets[b] != null) {
+                buckets[b].close();
+                buckets[b] = null;
+            }
+            if (bucketFiles[b] != null) {
+                Files.deleteIfExists(bucketFiles[b]);
+                bucketFiles[b] = null;
+            }
+        }
+    }
+
+    private BreachedPasswordIndexBuilder addKey(long key) throws IOException {
+        int b = (int) (key >>> 56);
+        if (buckets[b] == null) {
+            bucketFiles[b] = Files.createTempFile(tempDir, "breached-" + b + "-", ".tmp");
+            buckets[b] = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(bucketFiles[b]), BUFFER_SIZE));
+        }
+        buckets[b].writeLong(key);
+        return this;
+    }
+
+    private long[] readBucket(int b) throws IOException {
+        if (buckets[b] == null) {
+            return new long[0];
+        }
+        buckets[b].close();
+        buckets[b] = null;
+        long size = Files.size(bucketFiles[b]);
+        if (size / 8 > Integer.MAX_VALUE - 8) {
+            throw new IOException("The corpus is too large for one pass, bucket " + b + " holds " + size / 8 + " hashes.");
+        }
+        long[] keys = new long[(int) (size / 8)];
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(bucketFiles[b]), BUFFER_SIZE));
+        try {
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = in.readLong();
+            }
+        } finally {
+            in.close();
+        }
+        Files.delete(bucketFiles[b]);
+        bucketFiles[b] = null;
+        return keys;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int first = 0;
+        BreachedPasswordIndex.HashAlgorithm algorithm = BreachedPasswordIndex.HashAlgorithm.SHA1;
+        if (args.length > 0 && args[0].equals("--ntlm")) {
+            algorithm = BreachedPasswordIndex.HashAlgorithm.NTLM;
+            first = 1;
+        }
+        if (args.length < first + 2) {
+            System.err.println("Usage: BreachedPasswordIndexBuilder [--ntlm] output.idx corpus.txt ...");
+            System.exit(2);
+        }
+        Path output = Paths.get(args[first]).toAbsolutePath();
+        BreachedPasswordIndexBuilder builder = new BreachedPasswordIndexBuilder(algorithm, output.getParent());
+        try {
+            for (int i = first + 1; i < args.length; i++) {
+                Reader in = Files.newBufferedReader(Paths.get(args[i]), StandardCharsets.US_ASCII);
+                try {
+                    builder.addHashes(in);
+                } finally {
+                    in.close();
+                }
+            }
+            builder.writeTo(output);
+        } finally {
+            builder.discard();
+        }
+    }
+}
@@ -0,0 +1,625 @@
+package com.platinum.pcv;
+
+import com.platinum.dpv.DictionaryPasswordFileException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The rules behind PasswordPolicy's settings. A policy is compiled into only
+ * the rules it enables, each with its limits copied in, so a rule never asks
+ * the policy what it allows while checking a password.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+final class BuiltInRules {
+
+    // For character determinations
+    private static final int CHAR_LOWER_A = 'a';
+    private static final int CHAR_LOWER_Z = 'z';
+    private static final int CHAR_UPPER_A = 'A';
+    private static final int CHAR_UPPER_Z = 'Z';
+    private static final int CHAR_NUMERIC_ZERO = '0';
+    private static final int CHAR_NUMERIC_NINE = '9';
+
+    // Since the alpha and numeric checks handle the [a-zA-Z0-9] case in
+    // earlier if statement checks, we can then assume the surrounding characters
+    // within the range of the special char lower and upper values are in fact
+    // special characters.  If it extends past the range, then it's no longer a symbol.
+    private static final int CHAR_LOWER_SPECIAL_CHAR = ' ';
+    private static final int CHAR_UPPER_SPECIAL_CHAR = '~';
+    private static final int CHAR_EXTENDED_UPPER_SPECIAL_CHAR = 255;
+
+    private BuiltInRules() {
+    }
+
+    /**
+     * The rules a policy enables, cheapest first going by their estimates,
+     * followed by the policy's custom rules.
+     *
+     * @param policy
+     * @return
+     */
+    static List<Rule> compile(PasswordPolicy policy) {
+        List<Rule> rules = new ArrayList<Rule>();
+        if (policy.getMinPasswordLength() > 0 || policy.getMaxPasswordLength() < Integer.MAX_VALUE) {
+            rules.add(new LengthRule(policy));
+        }
+        rules.add(new CharacterRule(policy));
+        if (policy.getLastPasswordDifferInChars() > 0 && policy.getSimilarHistoryLen() > 0) {
+            rules.add(new SimilarToLastRule(policy));
+        }
+        if (policy.getLastPasswordDifferInChars() > 0 && policy.getSimilarHistoryLen() > 1) {
+            rules.add(new SimilarToRecentRule(policy));
+        }
+        if (policy.getPasswordHistoryLen() > 0) {
+            rules.add(new RecentlyUsedRule(policy));
+        }
+        if (policy.isRestrictedByDictionary() == true) {
+            rules.add(new DictionaryRule(policy));
+        }
+        if (policy.getMinEntropyBits() > 0.0) {
+            rules.add(new EntropyRule(policy));
+        }
+        if (policy.getBreachedPasswordIndex() != null) {
+            rules.add(new BreachedPasswordRule(policy));
+        }
+        rules.addAll(policy.getRules());
+        return rules;
+    }
+
+    static final class LengthRule implements Rule {
+
+        private final int minPasswordLength;
+        private final int maxPasswordLength;
+
+        LengthRule(PasswordPolicy policy) {
+            minPasswordLength = policy.getMinPasswordLength();
+            maxPasswordLength = policy.getMaxPasswordLength();
+        }
+
+        @Override
+        public ValidationResult check(PasswordCandidate candidate) {
+            return checkLength(candidate.getPasswordChars().length());
+        }
+
+        ValidationResult checkLength(int passwordLen) {
+            if (passwordLen < minPasswordLength) {
+                return ValidationResult.TOO_SHORT;
+            }
+            if (passwordLen > maxPasswordLength) {
+                return ValidationResult.TOO_LONG;
+            }
+            return ValidationResult.VALID;
+        }
+
+        @Override
+        public long getEstimatedNanos() {
+            return 2L;
+        }
+
+        @Override
+        public String getName() {
+            return "length";
+        }
+    }
+
+    /**
+     * Counts the character classes, and feeds the characters through the
+     * PatternScanner on the same pass unless the policy allows both dates and
+     * phone numbers. The dates and phone numbers are checked off the final
+     * scanner state.
+     *
+     * The classes are looked up in a table of the first 256 characters built
+     * from the policy, so there are no range comparisons to mispredict. The
+     * table holds each character's increment to a long of four 16 bit
+     * counters, lower, upper, numerical and special, so counting a character
+     * is a single add whatever its class. Invalid characters add nothing, and
+     * are the characters left over once the counters are summed.
+     */
+    static final class CharacterRule implements Rule {
+
+        // The classes a character can fall in, see classOf
+        static final int LOWER_ALPHA = 0;
+        static final int UPPER_ALPHA = 1;
+        static final int NUMERICAL = 2;
+        static final int SPECIAL = 3;
+        static final int INVALID = 4;
+        static final int CLASS_COUNT = 5;
+
+        // The characters counted before the 16 bit counters are emptied
+        private static final int COUNTER_LIMIT = 0xFFFF;
+        private static final int TABLE_SIZE = 256;
+
+        private final int minLowerAlphaChars;
+        private final int minUpperAlphaChars;
+        private final int minNumericalChars;
+        private final int minSpecialChars;
+        private final int upperSpecialChar;
+        // The class of each of the first TABLE_SIZE characters, and its
+        // increment to the counters
+        private final byte[] classes = new byte[TABLE_SIZE];
+        private final long[] increments = new long[TABLE_SIZE];
+        private final boolean scanPatterns;
+        private final boolean rejectDates;
+        private final boolean rejectPhoneNumbers;
+
+        CharacterRule(PasswordPolicy policy) {
+            minLowerAlphaChars = policy.getMinLowerAlphaChars();
+            minUpperAlphaChars = policy.getMinUpperAlphaChars();
+            minNumericalChars = policy.getMinNumericalChars();
+            minSpecialChars = policy.getMinSpecialChars();
+            upperSpecialChar = policy.isAllowExtendedAsciiSymbols() == true
+                    ? CHAR_EXTENDED_UPPER_SPECIAL_CHAR : CHAR_UPPER_SPECIAL_CHAR;
+            rejectDates = policy.isAllowDates() == false;
+            rejectPhoneNumbers = policy.isAllowPhoneNumbers() == false;
+            scanPatterns = rejectDates || rejectPhoneNumbers;
+            for (int c = 0; c < TABLE_SIZE; c++) {
+                int charClass = classify((char) c);
+                classes[c] = (byte) charClass;
+                increments[c] = charClass == INVALID ? 0L : 1L << (charClass * 16);
+            }
+        }
+
+        @Override
+        public ValidationResult check(PasswordCandidate candidate) {
+            // An invalid character has the lowest code of the violations, so
+            // it still wins without stopping the count
+            return ValidationResult.firstOf(scan(candidate.getPasswordChars()));
+        }
+
+        @Override
+        public long checkAll(PasswordCandidate candidate) {
+            return scan(candidate.getPasswordChars());
+        }
+
+        @Override
+        public long getEstimatedNanos() {
+            return 20L;
+        }
+
+        @Override
+        public String getName() {
+            return "characters";
+        }
+
+        private long scan(CharSequence password) {
+
+            int alphaLowerCharsCount = 0;
+            int alphaUpperCharsCount = 0;
+            int numericCharsCount = 0;
+            int specialCharsCount = 0;
+
+            int scanState = PatternScanner.INITIAL;
+            int passwordLen = password.length();
+            for (int start = 0; start < passwordLen; start += COUNTER_LIMIT) {
+                int end = Math.min(passwordLen, start + COUNTER_LIMIT);
+                long counters = 0L;
+                if (scanPatterns == true) {
+                    for (int i = start; i < end; i++) {
+                        char passwordChar = password.charAt(i);
+                        scanState = PatternScanner.next(scanState, passwordChar);
+                        counters += passwordChar < TABLE_SIZE ? increments[passwordChar] : 0L;
+                    }
+                } else {
+                    for (int i = start; i < end; i++) {
+                        char passwordChar = password.charAt(i);
+                        counters += passwordChar < TABLE_SIZE ? increments[passwordChar] : 0L;
+                    }
+                }
+                alphaLowerCharsCount += (int) (counters & 0xFFFF);
+                alphaUpperCharsCount += (int) ((counters >>> 16) & 0xFFFF);
+                numericCharsCount += (int) ((counters >>> 32) & 0xFFFF);
+                specialCharsCount += (int) (counters >>> 48);
+            }
+            boolean invalidChar = alphaLowerCharsCount + alphaUpperCharsCount + numericCharsCount
+                    + specialCharsCount < passwordLen;
+
+            return violationsOf(alphaLowerCharsCount, alphaUpperCharsCount, numericCharsCount,
+                    specialCharsCount, invalidChar, scanState);
+        }
+
+        /**
+         * The class a character falls in.
+         *
+         * @param passwordChar
+         * @return
+         */
+        int classOf(char passwordChar) {
+            return passwordChar < TABLE_SIZE ? classes[passwordChar] : INVALID;
+        }
+
+        /**
+         * The class a character falls in under the policy, for the table.
+         */
+        private int classify(char passwordChar) {
+            if (passwordChar >= CHAR_LOWER_A && passwordChar <= CHAR_LOWER_Z) {
+                return LOWER_ALPHA;
+            } else if (passwordChar >= CHAR_UPPER_A && passwordChar <= CHAR_UPPER_Z) {
+                return UPPER_ALPHA;
+            } else if (passwordChar >= CHAR_NUMERIC_ZERO && passwordChar <= CHAR_NUMERIC_NINE) {
+                return NUMERICAL;
+            } else if (passwordChar >= CHAR_LOWER_SPECIAL_CHAR && passwordChar <= upperSpecialChar) {
+                return SPECIAL;
+            }
+            return INVALID;
+        }
+
+        /**
+         * The violations of a password with these counts and final scanner
+         * state, however they were arrived at.
+         */
+        long violationsOf(int alphaLowerCharsCount, int alphaUpperCharsCount, int numericCharsCount,
+                int specialCharsCount, boolean invalidChar, int scanState) {
+
+            long violations = 0L;
+            if (invalidChar == true) {
+                violations |= ValidationResult.INVALID_CHARACTER.getBit();
+            }
+            if (alphaLowerCharsCount < minLowerAlphaChars) {
+                violations |= ValidationResult.TOO_FEW_LOWER_ALPHA.getBit();
+            }
+            if (alphaUpperCharsCount < minUpperAlphaChars) {
+                violations |= ValidationResult.TOO_FEW_UPPER_ALPHA.getBit();
+            }
+            if (numericCharsCount < minNumericalChars) {
+                violations |= ValidationResult.TOO_FEW_NUMERICAL.getBit();
+            }
+            if (specialCharsCount < minSpecialChars) {
+                violations |= ValidationResult.TOO_FEW_SPECIAL.getBit();
+            }
+            if (rejectDates == true && PatternScanner.containsDate(scanState) == true) {
+                violations |= ValidationResult.CONTAINS_DATE.getBit();
+            }
+            if (rejectPhoneNumbers == true && PatternScanner.containsPhoneNumber(scanState) == true) {
+                violations |= ValidationResult.CONTAINS_PHONE_NUMBER.getBit();
+            }
+            return violations;
+        }
+    }
+
+    /**
+     * The new password must differ from the newest old one by at least N
+     * characters, case sensitive. Only whether the distance is under the limit
+     * matters, so the calculation stops as soon as it knows. A hashed history
+     * is only checked if the caller opted in by passing the newest plaintext.
+     */
+    static final class SimilarToLastRule implements Rule {
+
+        private final int maxSimilarDistance;
+
+        SimilarToLastRule(PasswordPolicy policy) {
+            maxSimilarDistance = policy.getLastPasswordDifferInChars() - 1;
+        }
+
+        @Override
+        public ValidationResult check(PasswordCandidate candidate) {
+            String lastOldPassword;
+            if (candidate.getHistory() != null) {
+                lastOldPassword = candidate.getHistory().getNewestPassword();
+                if (lastOldPassword == null) {
+                    return ValidationResult.VALID;
+                }
+            } else {
+                List<String> oldPasswordsNewestToOldest = candidate.getOldPasswordsNewestToOldest();
+                if (oldPasswordsNewestToOldest == null || oldPasswordsNewestToOldest.isEmpty()) {
+                    return ValidationResult.VALID;
+                }
+                lastOldPassword = oldPasswordsNewestToOldest.get(0);
+                if (lastOldPassword == null) {
+                    return ValidationResult.HISTORY_INVALID;
+                }
+            }
+            if (LevenshteinDistance.isWithin(candidate.getPasswordChars(), lastOldPassword, maxSimilarDistance)) {
+                return ValidationResult.TOO_SIMILAR_TO_LAST;
+            }
+            return ValidationResult.VALID;
+        }
+
+        @Override
+        public long getEstimatedNanos() {
+            return 100L;
+        }
+
+        @Override
+        public boolean usesHistory() {
+            return true;
+        }
+
+        @Override
+        public String getName() {
+            return "similarToLast";
+        }
+    }
+
+    /**
+     * The new password must also differ by N characters from the older
+     * passwords within the policy's similar history length, so variants of
+     * the same password can't be cycled past SimilarToLastRule. The new
+     * password's automaton is built once and each old password streamed
+     * through it. A hashed history only carries the newest plaintext, which
+     * SimilarToLastRule checks, so only plaintext histories are checked here.
+     */
+    static final class SimilarToRecentRule implements Rule {
+
+        private final int maxSimilarDistance;
+        private final int similarHistoryLen;
+
+        SimilarToRecentRule(PasswordPolicy policy) {
+            maxSimilarDistance = policy.getLastPasswordDifferInChars() - 1;
+            similarHistoryLen = policy.getSimilarHistoryLen();
+        }
+
+        @Override
+        public ValidationResult check(PasswordCandidate candidate) {
+            List<String> oldPasswordsNewestToOldest = candidate.getOldPasswordsNewestToOldest();
+            if (candidate.getHistory() != null || oldPasswordsNewestToOldest == null) {
+                return ValidationResult.VALID;
+            }
+            // The newest is SimilarToLastRule's
+            if (LevenshteinDistance.indexWithin(candidate.getPasswordChars(), oldPasswordsNewestToOldest,
+                    1, similarHistoryLen, maxSimilarDistance) >= 0) {
+                return ValidationResult.TOO_SIMILAR_TO_RECENT;
+            }
+            return ValidationResult.VALID;
+        }
+
+        @Override
+        public long getEstimatedNanos() {
+            return 600L;
+        }
+
+        @Override
+        public boolean usesHistory() {
+            return true;
+        }
+
+        @Override
+        public String getName() {
+            return "similarToRecent";
+        }
+    }
+
+    /**
+     * The new password mustn't be one of the last N, case sensitive. Against
+     * a hashed history this is a single probe of its fingerprint table, so the
+     * depth of the history costs nothing.
+     */
+    static final class RecentlyUsedRule implements Rule {
+
+        private final int passwordHistoryLen;
+
+        RecentlyUsedRule(PasswordPolicy policy) {
+            passwordHistoryLen = policy.getPasswordHistoryLen();
+        }
+
+        @Override
+        public ValidationResult check(PasswordCandidate candidate) {
+            CharSequence newPassword = candidate.getPasswordChars();
+            if (candidate.getHistory() != null) {
+                if (candidate.getHistory().containsWithin(newPassword, passwordHistoryLen)) {
+                    return ValidationResult.RECENTLY_USED;
+                }
+                return ValidationResult.VALID;
+            }
+            List<String> oldPasswordsNewestToOldest = candidate.getOldPasswordsNewestToOldest();
+            if (oldPasswordsNewestToOldest != null) {
+                int oldPasswordsCount = oldPasswordsNewestToOldest.size();
+                for (int r = 0; r < oldPasswordsCount && r < passwordHistoryLen; r++) {
+                    String oldPassword = oldPasswordsNewestToOldest.get(r);
+                    if (oldPassword != null && oldPassword.contentEquals(newPassword)) {
+                        return ValidationResult.RECENTLY_USED;
+                    }
+                }
+            }
+            return ValidationResult.VALID;
+        }
+
+        @Override
+        public long getEstimatedNanos() {
+            return 150L;
+        }
+
+        @Override
+        public boolean usesHistory() {
+            return true;
+        }
+
+        @Override
+        public String getName() {
+            return "recentlyUsed";
+        }
+    }
+
+    static final class DictionaryRule implements Rule {
+
+        private final DictionarySource dictionarySource;
+        private final ValidationMetrics metrics;
+        // The bundled dictionary, which is loaded on first use
+        private final BloomFilterDictionarySource bundled;
+        // Why the words last failed to load, null once they have
+        private volatile Exception loadFailure;
+
+        DictionaryRule(PasswordPolicy policy) {
+            dictionarySource = policy.getDictionarySource();
+            metrics = policy.getMetrics();
+            bundled = dictionarySource instanceof BloomFilterDictionarySource
+                    ? (BloomFilterDictionarySource) dictionarySource : null;
+        }
+
+        DictionarySource getDictionarySource() {
+            return dictionarySource;
+        }
+
+        @Override
+        public boolean isLoaded() {
+            return bundled == null || bundled.isLoaded() == true;
+        }
+
+        @Override
+        public void load() throws IOException {
+            try {
+                loadBundled();
+            } catch (DictionaryPasswordFileException ex) {
+                loadFailure = ex;
+                throw new IOException("The bundled dictionary couldn't be loaded.", ex);
+            }
+        }
+
+        @Override
+        public Exception getLoadFailure() {
+            return loadFailure;
+        }
+
+        private void loadBundled() throws DictionaryPasswordFileException {
+            if (bundled != null && bundled.isLoaded() == false) {
+                long start = System.nanoTime();
+                bundled.load();
+                metrics.dictionaryLoaded(BloomFilterDictionarySource.NAME, System.nanoTime() - start);
+            }
+            if (loadFailure != null) {
+                loadFailure = null;
+            }
+        }
+
+        @Override
+        public ValidationResult check(PasswordCandidate candidate) {
+            try {
+                loadBundled();
+                if (dictionarySource.isPasswordDictionaryBased(candidate.getPasswordChars()) == true) {
+                    return ValidationResult.CONTAINS_DICTIONARY_WORD;
+                }
+            } catch (DictionaryPasswordFileException ex) {
+
+                loadFailure = ex;
+                Logger.getLogger(PasswordComplexityValidator.class.getName()).log(Level.SEVERE, null, ex);
+                return ValidationResult.DICTIONARY_UNAVAILABLE;
+            }
+            return ValidationResult.VALID;
+        }
+
+        @Override
+        public long getEstimatedNanos() {
+            return 5000L;
+        }
+
+        @Override
+        public String getName() {
+            return "dictionary";
+        }
+    }
+
+    /**
+     * The password must take at least the policy's entropy to guess. Unless
+     * the policy has its own estimator, the default is built on first use, as
+     * building it takes a while.
+     */
+    static final class EntropyRule implements Rule {
+
+        private final double minEntropyBits;
+        private final ValidationMetrics metrics;
+        // Null until the default is built
+        private volatile StrengthEstimator estimator;
+        // Why the default last failed to build, null once it has
+        private volatile Exception loadFailure;
+
+        EntropyRule(PasswordPolicy policy) {
+            minEntropyBits = policy.getMinEntropyBits();
+            metrics = policy.getMetrics();
+            estimator = policy.getStrengthEstimator();
+        }
+
+        @Override
+        public boolean isLoaded() {
+            return estimator != null;
+        }
+
+        @Override
+        public void load() throws IOException {
+            if (estimator == null) {
+                boolean loading = StrengthEstimator.isDefaultBuilt() == false;
+                long start = System.nanoTime();
+                StrengthEstimator loaded;
+                try {
+                    loaded = StrengthEstimator.getDefault();
+                } catch (IOException ex) {
+                    loadFailure = ex;
+                    throw ex;
+                }
+                if (loading == true) {
+                    metrics.dictionaryLoaded(StrengthEstimator.DEFAULT_NAME, System.nanoTime() - start);
+                }
+                loadFailure = null;
+                estimator = loaded;
+            }
+        }
+
+        @Override
+        public Exception getLoadFailure() {
+            return loadFailure;
+        }
+
+        @Override
+        public ValidationResult check(PasswordCandidate candidate) {
+            if (estimator == null) {
+                try {
+                    load();
+                } catch (IOException ex) {
+
+                    // Tried again by the next check
+                    Logger.getLogger(PasswordComplexityValidator.class.getName()).log(Level.SEVERE, null, ex);
+                    return ValidationResult.DICTIONARY_UNAVAILABLE;
+                }
+            }
+            if (estimator.estimateEntropyBits(candidate.getPasswordChars()) < minEntropyBits) {
+                return ValidationResult.TOO_GUESSABLE;
+            }
+            return ValidationResult.VALID;
+        }
+
+        @Override
+        public long getEstimatedNanos() {
+            return 10000L;
+        }
+
+        @Override
+        public String getName() {
+            return "entropy";
+        }
+    }
+
+    /**
+     * Estimated as the most expensive rule, being the only one which may have
+     * to wait on the disk.
+     */
+    static final class BreachedPasswordRule implements Rule {
+
+        private final BreachedPasswordIndex index;
+
+        BreachedPasswordRule(PasswordPolicy policy) {
+            index = policy.getBreachedPasswordIndex();
+        }
+
+        @Override
+        public ValidationResult check(PasswordCandidate candidate) {
+            if (index.contains(candidate.getPasswordChars()) == true) {
+                return ValidationResult.BREACHED;
+            }
+            return ValidationResult.VALID;
+        }
+
+        @Override
+        public long getEstimatedNanos() {
+            return 20000L;
+        }
+
+        @Override
+        public String getName() {
+            return "breached";
+        }
+    }
+}
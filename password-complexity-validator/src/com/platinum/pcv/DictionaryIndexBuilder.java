@@ -0,0 +1,192 @@
+package com.platinum.pcv;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * DictionaryIndexBuilder writes the index files read by MappedDictionaryIndex.
+ * It is meant to run as a build step, so the word list is parsed once ahead of
+ * time rather than on the first validation of every new JVM:
+ *
+ * <pre>
+ * java com.platinum.pcv.DictionaryIndexBuilder output.idx [minWordLength] [wordList ...]
+ * </pre>
+ *
+ * With no word lists the bundled en_US dictionary is indexed. Lines holding
+ * anything but the letters a-z and A-Z can never match a password, so they
+ * are left out.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+public final class DictionaryIndexBuilder {
+
+    /**
+     * The word list bundled with DictionaryPasswordValidator.
+     */
+    public static final String BUNDLED_DICTIONARY = "dictionaries/en_US.dic";
+
+    private final int minWordLength;
+    private long[] fingerprints = new long[1024];
+    private int count;
+    private int maxWordLength;
+
+    /**
+     * @param minWordLength the shortest word to index
+     */
+    public DictionaryIndexBuilder(int minWordLength) {
+        if (minWordLength < 1) {
+            throw new IllegalArgumentException("The minimum word length must be at least 1.");
+        }
+        this.minWordLength = minWordLength;
+    }
+
+    /**
+     * Add a word, if it is long enough and only holds letters.
+     *
+     * @param word
+     * @return
+     */
+    public DictionaryIndexBuilder addWord(CharSequence word) {
+        int len = word.length();
+        if (len < minWordLength) {
+            return this;
+        }
+        for (int i = 0; i < len; i++) {
+            if (MappedDictionaryIndex.isLetter(word.charAt(i)) == false) {
+                return this;
+            }
+        }
+        if (count == fingerprints.length) {
+            fingerprints = Arrays.copyOf(fingerprints, count * 2);
+        }
+        fingerprints[count++] = MappedDictionaryIndex.fingerprint(MappedDictionaryIndex.hash(word));
+        maxWordLength = Math.max(maxWordLength, len);
+        return this;
+    }
+
+    /**
+     * Add every line of a word list.
+     *
+     * @param words
+     * @return
+     * @throws IOException
+     */
+    public DictionaryIndexBuilder addWords(Reader words) throws IOException {
+        BufferedReader reader = new BufferedReader(words);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            addWord(line.trim());
+        }
+        return this;
+    }
+
+    /**
+     * Add the word list bundled with DictionaryPasswordValidator.
+     *
+     * @return
+     * @throws IOException if it isn't on the classpath
+     */
+    public DictionaryIndexBuilder addBundledDictionary() throws IOException {
+        Reader in = openBundledDictionary();
+        try {
+            return addWords(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    static Reader openBundledDictionary() throws IOException {
+        InputStream in = DictionaryIndexBuilder.class.getClassLoader().getResourceAsStream(BUNDLED_DICTIONARY);
+        if (in == null) {
+            throw new IOException("The bundled dictionary " + BUNDLED_DICTIONARY + " is not on the classpath.");
+        }
+        return new InputStreamReader(in, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write the index. It is written to a temporary file first and moved into
+     * place, so a running process never maps a half written index.
+     *
+     * @param file
+     * @throws IOException
+     */
+    public void writeTo(Path file) throws IOException {
+        long[] words = Arrays.copyOf(fingerprints, count);
+        Arrays.sort(words);
+        int distinct = 0;
+        for (int i = 0; i < words.length; i++) {
+            if (distinct == 0 || words[distinct - 1] != words[i]) {
+                words[distinct++] = words[i];
+            }
+        }
+
+        // At most half full keeps the probe sequences short
+        int capacity = Integer.highestOneBit(Math.max(1, distinct) * 2) * 2;
+        int mask = capacity - 1;
+        long[] table = new long[capacity];
+        for (int i = 0; i < distinct; i++) {
+            int slot = (int) words[i] & mask;
+            while (table[slot] != 0L) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = words[i];
+        }
+
+        Path absolute = file.toAbsolutePath();
+        Path temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)));
+            try {
+                out.writeInt(MappedDictionaryIndex.MAGIC);
+                out.writeInt(MappedDictionaryIndex.VERSION);
+                out.writeInt(minWordLength);
+                out.writeInt(maxWordLength);
+                out.writeInt(distinct);
+                out.writeInt(capacity);
+                for (long slot : table) {
+                    out.writeLong(slot);
+                }
+            } finally {
+                out.close();
+            }
+            Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: DictionaryIndexBuilder output.idx [minWordLength] [wordList ...]");
+            System.exit(2);
+        }
+        int minWordLength = args.length > 1 ? Integer.parseInt(args[1]) : PasswordPolicy.DEFAULT.getDictionaryMinWordLength();
+        DictionaryIndexBuilder builder = new DictionaryIndexBuilder(minWordLength);
+        if (args.length > 2) {
+            for (int i = 2; i < args.length; i++) {
+                Reader in = Files.newBufferedReader(Paths.get(args[i]), StandardCharsets.UTF_8);
+                try {
+                    builder.addWords(in);
+                } finally {
+                    in.close();
+                }
+            }
+        } else {
+            builder.addBundledDictionary();
+        }
+        builder.writeTo(Paths.get(args[0]));
+    }
+}
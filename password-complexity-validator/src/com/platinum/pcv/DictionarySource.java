@@ -0,0 +1,35 @@
+package com.platinum.pcv;
+
+import com.platinum.dpv.DictionaryPasswordFileException;
+
+/**
+ * DictionarySource is where the dictionary check looks for words. A policy
+ * holds one source, which may be shared by any number of policies and threads,
+ * so implementations must be thread safe.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+public interface DictionarySource {
+
+    /**
+     * Whether the letters of the password contain a dictionary word. Anything
+     * which isn't a letter is skipped, so "pass-word" still contains
+     * "password", and case is ignored.
+     *
+     * @param password
+     * @return
+     * @throws DictionaryPasswordFileException if the words couldn't be loaded
+     */
+    boolean isPasswordDictionaryBased(CharSequence password) throws DictionaryPasswordFileException;
+
+    /**
+     * Whether the whole of word is in the dictionary, ignoring case.
+     *
+     * @param word
+     * @return
+     * @throws DictionaryPasswordFileException if the words couldn't be loaded
+     */
+    boolean isDictionaryWord(CharSequence word) throws DictionaryPasswordFileException;
+}
@@ -0,0 +1,112 @@
+package com.platinum.pcv;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Records the measurements as Java Flight Recorder events, under the
+ * "Password Validation" category, so a recording of a production box shows
+ * each rule's latency next to the GC and the rest of the JVM. Events which
+ * aren't enabled in the recording cost next to nothing, and none are enabled
+ * unless a recording is running.
+ *
+ * Needs a JVM with Flight Recorder, Java 11 or 8u262 on. It is the one class
+ * which can't be compiled by JDK 8's javac or with --release 8, so the
+ * project builds with JDK 11 or later, while still targeting Java 8. The
+ * other classes never load it unless it is given as a policy's metrics.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+public final class JfrValidationMetrics implements ValidationMetrics {
+
+    public static final JfrValidationMetrics INSTANCE = new JfrValidationMetrics();
+
+    private JfrValidationMetrics() {
+    }
+
+    @Override
+    public void ruleChecked(String rule, long nanos, ValidationResult result) {
+        RuleCheckEvent event = new RuleCheckEvent();
+        if (event.isEnabled() == true) {
+            event.rule = rule;
+            event.result = result.name();
+            event.ruleDuration = nanos;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void dictionaryLoaded(String dictionary, long nanos) {
+        DictionaryLoadEvent event = new DictionaryLoadEvent();
+        if (event.isEnabled() == true) {
+            event.dictionary = dictionary;
+            event.loadDuration = nanos;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void batchValidated(int candidates, long nanos) {
+        BatchEvent event = new BatchEvent();
+        if (event.isEnabled() == true) {
+            event.candidates = candidates;
+            event.batchDuration = nanos;
+            event.commit();
+        }
+    }
+
+    @Name("com.platinum.pcv.RuleCheck")
+    @Label("Password Rule Check")
+    @Description("A rule checked against a password")
+    @Category("Password Validation")
+    @StackTrace(false)
+    static final class RuleCheckEvent extends Event {
+
+        @Label("Rule")
+        String rule;
+
+        @Label("Result")
+        String result;
+
+        @Label("Rule Duration")
+        @Timespan(Timespan.NANOSECONDS)
+        long ruleDuration;
+    }
+
+    @Name("com.platinum.pcv.DictionaryLoad")
+    @Label("Password Dictionary Load")
+    @Description("A dictionary loaded on first use")
+    @Category("Password Validation")
+    @StackTrace(false)
+    static final class DictionaryLoadEvent extends Event {
+
+        @Label("Dictionary")
+        String dictionary;
+
+        @Label("Load Duration")
+        @Timespan(Timespan.NANOSECONDS)
+        long loadDuration;
+    }
+
+    @Name("com.platinum.pcv.Batch")
+    @Label("Password Batch")
+    @Description("A batch of candidates validated by validateAll")
+    @Category("Password Validation")
+    @StackTrace(false)
+    static final class BatchEvent extends Event {
+
+        @Label("Candidates")
+        int candidates;
+
+        @Label("Batch Duration")
+        @Timespan(Timespan.NANOSECONDS)
+        long batchDuration;
+    }
+}
@@ -0,0 +1,314 @@
+package com.platinum.pcv;
+
+import java.util.List;
+
+/**
+ * Threshold aware Levenshtein Distance. The validator only needs to know
+ * whether two passwords are within k edits of each other, so rather than
+ * filling the full n * m matrix this gives up as soon as the answer is known:
+ *
+ * - Strings whose lengths differ by more than k are rejected outright.
+ * - If the shorter string fits in a long, Myers' bit-parallel algorithm runs
+ *   one column per character of the longer string, stopping once the
+ *   remaining columns can no longer bring the distance down to k.
+ * - Otherwise only a diagonal band of width 2k + 1 is computed (Ukkonen),
+ *   stopping as soon as a whole row of the band is above k.
+ *
+ * To check one password against many, indexWithin builds the bit-parallel
+ * automaton for the password once and streams each of the others through it,
+ * so each costs a step per character rather than a matrix.
+ *
+ * Scratch buffers are kept per thread, so nothing is allocated per call.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+final class LevenshteinDistance {
+
+    // Longest pattern the bit-parallel version handles
+    private static final int MAX_BIT_PARALLEL_LENGTH = 64;
+
+    // Characters below this have a precomputed match mask, the rest are
+    // matched against the pattern as they come up
+    private static final int PEQ_SIZE = 256;
+
+    // Stands in for infinity outside the band, with room to add 1
+    private static final int OUTSIDE_BAND = Integer.MAX_VALUE / 2;
+
+    private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
+    private LevenshteinDistance() {
+    }
+
+    /**
+     * Whether s can be turned into t with at most threshold edits.
+     *
+     * @param s
+     * @param t
+     * @param threshold
+     * @return
+     */
+    static boolean isWithin(CharSequence s, CharSequence t, int threshold) {
+        return distance(s, t, threshold) <= threshold;
+    }
+
+    /**
+     * The Levenshtein Distance between s and t, if it is at most threshold.
+     *
+     * @param s
+     * @param t
+     * @param threshold
+     * @return the distance, or threshold + 1 if it is greater than threshold
+     */
+    static int distance(CharSequence s, CharSequence t, int threshold) {
+        if (s == null || t == null) {
+            throw new IllegalArgumentException("Strings must not be null");
+        }
+        if (threshold < 0) {
+            return 0;
+        }
+
+        // Make s the shorter of the two
+        if (s.length() > t.length()) {
+            CharSequence swap = s;
+            s = t;
+            t = swap;
+        }
+
+        int n = s.length();
+        int m = t.length();
+
+        if (m - n > threshold) {
+            return threshold + 1;
+        }
+        if (n == 0) {
+            return m;
+        }
+
+        if (n <= MAX_BIT_PARALLEL_LENGTH) {
+            return bitParallelDistance(s, t, threshold);
+        }
+        return bandedDistance(s, t, threshold);
+    }
+
+    /**
+     * The first of the words from index from up to to which is within
+     * threshold edits of s. Null words are skipped.
+     *
+     * @param s
+     * @param words
+     * @param from
+     * @param to
+     * @param threshold
+     * @return the word's index, or -1 if none are within threshold
+     */
+    static int indexWithin(CharSequence s, List<String> words, int from, int to, int threshold) {
+        if (s == null) {
+            throw new IllegalArgumentException("Strings must not be null");
+        }
+        int n = s.length();
+        to = Math.min(to, words.size());
+        if (threshold < 0 || from >= to) {
+            return -1;
+        }
+        if (n == 0 || n > MAX_BIT_PARALLEL_LENGTH) {
+            for (int r = from; r < to; r++) {
+                String word = words.get(r);
+                if (word != null && isWithin(s, word, threshold) == true) {
+                    return r;
+                }
+            }
+            return -1;
+        }
+
+        long[] peq = SCRATCH.get().peq;
+        fillMatchMasks(peq, s);
+        try {
+            for (int r = from; r < to; r++) {
+                String word = words.get(r);
+                if (word != null && Math.abs(word.length() - n) <= threshold
+                        && bitParallelDistance(peq, s, word, threshold) <= threshold) {
+                    return r;
+                }
+            }
+            return -1;
+        } finally {
+            clearMatchMasks(peq, s);
+        }
+    }
+
+    private static int bitParallelDistance(CharSequence s, CharSequence t, int threshold) {
+        long[] peq = SCRATCH.get().peq;
+        fillMatchMasks(peq, s);
+        try {
+            return bitParallelDistance(peq, s, t, threshold);
+        } finally {
+            clearMatchMasks(peq, s);
+        }
+    }
+
+    private static void fillMatchMasks(long[] peq, CharSequence s) {
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            if (c < PEQ_SIZE) {
+                peq[c] |= 1L << i;
+            }
+        }
+    }
+
+    private static void clearMatchMasks(long[] peq, CharSequence s) {
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            if (c < PEQ_SIZE) {
+                peq[c] = 0L;
+            }
+        }
+    }
+
+    /**
+     * Myers' bit-vector algorithm, as formulated by Hyyro, with the pattern s
+     * (1 to 64 chars) held one bit per character and its match masks already
+     * in peq. Each character of t advances the last row of the matrix by one
+     * column.
+     */
+    private static int bitParallelDistance(long[] peq, CharSequence s, CharSequence t, int threshold) {
+        int n = s.length();
+        int m = t.length();
+
+        long lastBit = 1L << (n - 1);
+        long pv = -1L;
+        long mv = 0L;
+        int score = n;
+
+        for (int j = 0; j < m; j++) {
+            char c = t.charAt(j);
+            long eq = c < PEQ_SIZE ? peq[c] : matchMask(s, c);
+
+            long xv = eq | mv;
+            long xh = (((eq & pv) + pv) ^ pv) | eq;
+            long ph = mv | ~(xh | pv);
+            long mh = pv & xh;
+
+            if ((ph & lastBit) != 0) {
+                score++;
+            } else if ((mh & lastBit) != 0) {
+                score--;
+            }
+
+            // Each remaining column lowers the score by one at best
+            if (score - (m - j - 1) > threshold) {
+                return threshold + 1;
+            }
+
+            // The first row is 0, 1, 2, ... so it always steps up by one
+            ph = (ph << 1) | 1L;
+            mh <<= 1;
+            pv = mh | ~(xv | ph);
+            mv = ph & xv;
+        }
+        return score <= threshold ? score : threshold + 1;
+    }
+
+    private static long matchMask(CharSequence s, char c) {
+        long mask = 0L;
+        for (int i = 0, n = s.length(); i < n; i++) {
+            if (s.charAt(i) == c) {
+                mask |= 1L << i;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * The flat two row version modified from Apache Commons, limited to the
+     * diagonal band where the distance can still be at most threshold.
+     */
+    private static int bandedDistance(CharSequence s, CharSequence t, int threshold) {
+        int n = s.length();
+        int m = t.length();
+
+        Scratch scratch = SCRATCH.get();
+        int p[] = scratch.previousRow(n + 1); // 'previous' cost array, horizontally
+        int d[] = scratch.currentRow(n + 1); // cost array, horizontally
+        int dSwap[]; // placeholder to assist in swapping p and d
+
+        int boundary = Math.min(n, threshold) + 1;
+        for (int i = 0; i < boundary; i++) {
+            p[i] = i;
+        }
+        for (int i = boundary; i <= n; i++) {
+            p[i] = OUTSIDE_BAND;
+        }
+        for (int i = 0; i <= n; i++) {
+            d[i] = OUTSIDE_BAND;
+        }
+
+        for (int j = 1; j <= m; j++) {
+            char tJ = t.charAt(j - 1);
+            d[0] = j;
+
+            int min = Math.max(1, j - threshold);
+            int max = Math.min(n, j + threshold);
+            if (min > max) {
+                return threshold + 1;
+            }
+            if (min > 1) {
+                d[min - 1] = OUTSIDE_BAND;
+            }
+
+            int rowMin = OUTSIDE_BAND;
+            for (int i = min; i <= max; i++) {
+                if (s.charAt(i - 1) == tJ) {
+                    d[i] = p[i - 1];
+                } else {
+                    d[i] = 1 + Math.min(Math.min(d[i - 1], p[i]), p[i - 1]);
+                }
+                if (d[i] < rowMin) {
+                    rowMin = d[i];
+                }
+            }
+
+            // Costs never go down from one row to the next
+            if (rowMin > threshold) {
+                return threshold + 1;
+            }
+
+            dSwap = p;
+            p = d;
+            d = dSwap;
+        }
+
+        return p[n] <= threshold ? p[n] : threshold + 1;
+    }
+
+    /**
+     * Per thread working space.
+     */
+    private static final class Scratch {
+
+        final long[] peq = new long[PEQ_SIZE];
+        private int[] rowA = new int[0];
+        private int[] rowB = new int[0];
+
+        int[] previousRow(int length) {
+            if (rowA.length < length) {
+                rowA = new int[length];
+            }
+            return rowA;
+        }
+
+        int[] currentRow(int length) {
+            if (rowB.length < length) {
+                rowB = new int[length];
+            }
+            return rowB;
+        }
+    }
+}
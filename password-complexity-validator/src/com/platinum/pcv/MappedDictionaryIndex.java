@@ -0,0 +1,200 @@
+package com.platinum.pcv;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * MappedDictionaryIndex looks up dictionary words in an index file written
+ * ahead of time by DictionaryIndexBuilder. The file is mapped read only, so
+ * opening it costs a few page faults rather than parsing and hashing the
+ * whole word list, and lookups read the mapping in place without copying it
+ * onto the heap. An index can be shared by any number of threads.
+ *
+ * The file is a small header followed by an open addressing table of 64 bit
+ * word fingerprints, at most half full, with zero marking an empty slot:
+ *
+ * <pre>
+ * int magic, int version, int minWordLength, int maxWordLength,
+ * int wordCount, int capacity, long[capacity] table
+ * </pre>
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+public final class MappedDictionaryIndex implements DictionarySource {
+
+    static final int MAGIC = 0x50435644; // "PCVD"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 24;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final ByteBuffer table;
+    private final int minWordLength;
+    private final int maxWordLength;
+    private final int wordCount;
+    private final int mask;
+
+    private MappedDictionaryIndex(ByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a dictionary index file.");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported dictionary index version: " + buffer.getInt(4));
+        }
+        minWordLength = buffer.getInt(8);
+        maxWordLength = buffer.getInt(12);
+        wordCount = buffer.getInt(16);
+        int capacity = buffer.getInt(20);
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1
+                || buffer.capacity() != HEADER_SIZE + (long) capacity * 8) {
+            throw new IOException("The dictionary index file is truncated or corrupt.");
+        }
+        table = buffer;
+        mask = capacity - 1;
+    }
+
+    /**
+     * Map an index file.
+     *
+     * @param file
+     * @return
+     * @throws IOException if the file can't be read or isn't an index
+     */
+    public static MappedDictionaryIndex open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            // The mapping stays valid once the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new MappedDictionaryIndex(buffer);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Whether the letters of the password contain a dictionary word. Like the
+     * bundled DictionaryPasswordValidator, everything but a-z and A-Z is
+     * skipped, so "pass-word" still contains "password", and case is ignored.
+     *
+     * @param password
+     * @return
+     */
+    @Override
+    public boolean isPasswordDictionaryBased(CharSequence password) {
+        int len = password.length();
+        for (int start = 0; start < len; start++) {
+            if (isLetter(password.charAt(start)) == false) {
+                continue;
+            }
+            // Extend the word one letter at a time from this start, the
+            // hash of each prefix builds on the one before it
+            long hash = FNV_OFFSET_BASIS;
+            int letters = 0;
+            for (int i = start; i < len && letters < maxWordLength; i++) {
+                char c = password.charAt(i);
+                if (isLetter(c) == false) {
+                    continue;
+                }
+                hash = step(hash, c);
+                letters++;
+                if (letters >= minWordLength && contains(fingerprint(hash))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether the whole of word is in the dictionary, ignoring case.
+     *
+     * @param word
+     * @return
+     */
+    @Override
+    public boolean isDictionaryWord(CharSequence word) {
+        int len = word.length();
+        if (len < minWordLength || len > maxWordLength) {
+            return false;
+        }
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < len; i++) {
+            char c = word.charAt(i);
+            if (isLetter(c) == false) {
+                return false;
+            }
+            hash = step(hash, c);
+        }
+        return contains(fingerprint(hash));
+    }
+
+    /**
+     * The shortest word the index was built with.
+     *
+     * @return
+     */
+    public int getMinWordLength() {
+        return minWordLength;
+    }
+
+    /**
+     * The number of distinct words in the index.
+     *
+     * @return
+     */
+    public int size() {
+        return wordCount;
+    }
+
+    private boolean contains(long fingerprint) {
+        int slot = (int) fingerprint & mask;
+        while (true) {
+            long stored = table.getLong(HEADER_SIZE + slot * 8);
+            if (stored == fingerprint) {
+                return true;
+            }
+            if (stored == 0L) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    /**
+     * Add a letter to an FNV-1a hash, folding it to lower case first.
+     */
+    static long step(long hash, char c) {
+        return (hash ^ (c | 0x20)) * FNV_PRIME;
+    }
+
+    static long hash(CharSequence word) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0, len = word.length(); i < len; i++) {
+            hash = step(hash, word.charAt(i));
+        }
+        return hash;
+    }
+
+    /**
+     * Spread the hash so its low bits make a good slot, and keep it off zero.
+     */
+    static long fingerprint(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash == 0L ? 1L : hash;
+    }
+}
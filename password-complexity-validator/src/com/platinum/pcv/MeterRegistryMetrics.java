@@ -0,0 +1,128 @@
+package com.platinum.pcv;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongConsumer;
+
+/**
+ * Records the measurements as timers and counters in a metrics registry,
+ * such as Micrometer's MeterRegistry, without depending on one. The registry
+ * is reached through the two calls of Registry, shaped after MeterRegistry's
+ * timer and counter so bridging one is a method each: a timer recording
+ * registry.timer(name, tags) in nanoseconds, and a counter incrementing
+ * registry.counter(name, tags). Its timers then give the latency histograms
+ * and percentiles.
+ *
+ * The meters are looked up once per rule and result and kept, so recording
+ * a check is a map lookup and the meters' own cost.
+ *
+ * <ul>
+ * <li>pcv.rule.latency, timer tagged rule</li>
+ * <li>pcv.rule.rejections, counter tagged rule and result</li>
+ * <li>pcv.dictionary.load, timer tagged dictionary</li>
+ * <li>pcv.batch.latency, timer</li>
+ * <li>pcv.batch.candidates, counter</li>
+ * </ul>
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+public final class MeterRegistryMetrics implements ValidationMetrics {
+
+    public static final String RULE_LATENCY = "pcv.rule.latency";
+    public static final String RULE_REJECTIONS = "pcv.rule.rejections";
+    public static final String DICTIONARY_LOAD = "pcv.dictionary.load";
+    public static final String BATCH_LATENCY = "pcv.batch.latency";
+    public static final String BATCH_CANDIDATES = "pcv.batch.candidates";
+
+    /**
+     * Where the meters come from. Tags alternate keys and values, as they do
+     * for MeterRegistry. Asking twice for the same name and tags must give
+     * the same meter.
+     */
+    public interface Registry {
+
+        /**
+         * A timer, recording durations in nanoseconds.
+         *
+         * @param name
+         * @param tags
+         * @return
+         */
+        LongConsumer timer(String name, String... tags);
+
+        /**
+         * A counter, adding amounts.
+         *
+         * @param name
+         * @param tags
+         * @return
+         */
+        LongConsumer counter(String name, String... tags);
+    }
+
+    private static final ValidationResult[] RESULTS = ValidationResult.values();
+
+    private final Registry registry;
+    private final ConcurrentHashMap<String, RuleMeters> rules = new ConcurrentHashMap<String, RuleMeters>();
+    private final LongConsumer batchLatency;
+    private final LongConsumer batchCandidates;
+
+    public MeterRegistryMetrics(Registry registry) {
+        if (registry == null) {
+            throw new IllegalArgumentException("The registry cannot be null.");
+        }
+        this.registry = registry;
+        batchLatency = registry.timer(BATCH_LATENCY);
+        batchCandidates = registry.counter(BATCH_CANDIDATES);
+    }
+
+    @Override
+    public void ruleChecked(String rule, long nanos, ValidationResult result) {
+        RuleMeters meters = rules.get(rule);
+        if (meters == null) {
+            meters = rules.computeIfAbsent(rule, RuleMeters::new);
+        }
+        meters.latency.accept(nanos);
+        if (result != ValidationResult.VALID) {
+            meters.rejections(result).accept(1L);
+        }
+    }
+
+    @Override
+    public void dictionaryLoaded(String dictionary, long nanos) {
+        registry.timer(DICTIONARY_LOAD, "dictionary", dictionary).accept(nanos);
+    }
+
+    @Override
+    public void batchValidated(int candidates, long nanos) {
+        batchLatency.accept(nanos);
+        batchCandidates.accept(candidates);
+    }
+
+    /**
+     * A rule's timer and, as they are needed, its counter per result.
+     */
+    private final class RuleMeters {
+
+        final String rule;
+        final LongConsumer latency;
+        private final AtomicReferenceArray<LongConsumer> rejections = new AtomicReferenceArray<LongConsumer>(RESULTS.length);
+
+        RuleMeters(String rule) {
+            this.rule = rule;
+            latency = registry.timer(RULE_LATENCY, "rule", rule);
+        }
+
+        LongConsumer rejections(ValidationResult result) {
+            LongConsumer counter = rejections.get(result.ordinal());
+            if (counter == null) {
+                // The registry gives every racing thread the same counter
+                counter = registry.counter(RULE_REJECTIONS, "rule", rule, "result", result.name());
+                rejections.set(result.ordinal(), counter);
+            }
+            return counter;
+        }
+    }
+}
@@ -0,0 +1,407 @@
+package com.platinum.pcv;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * PasswordAuditor streams a file of candidate passwords, one per line,
+ * through a validator and reports how many broke each rule. It is also the
+ * jar's entry point, see main.
+ *
+ * A reader thread cuts the lines into batches and hands them to a pool of
+ * workers, queueing each batch's future in order. The queue holds a couple
+ * of batches per worker, so when the workers fall behind the reader waits
+ * rather than reading ahead. The calling thread takes the futures off the
+ * queue in the same order, so the rejects come out in the order of the file,
+ * and memory stays the same whatever the file's size.
+ *
+ * Every rule is checked for each candidate, as by checkAll. Lines can also be
+ * username:candidate pairs, split at the first colon. The rejects list the
+ * line number, the username if there is one, and the rules broken, never the
+ * candidate itself. Blank lines are skipped.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+public final class PasswordAuditor {
+
+    private static final int BATCH_LINES = 1024;
+
+    // Batches queued per worker, enough to keep them busy while the writer
+    // catches up
+    private static final int BATCHES_PER_WORKER = 2;
+
+    // Marks a pair without a colon
+    private static final long MALFORMED = -1L;
+
+    private static final Future<Batch> END = CompletableFuture.completedFuture(null);
+
+    private final PasswordComplexityValidator validator;
+    private final int threads;
+    private final boolean pairs;
+
+    /**
+     * An auditor validating with the given number of worker threads.
+     *
+     * @param validator
+     * @param threads
+     * @param pairs whether the lines are username:candidate pairs
+     */
+    public PasswordAuditor(PasswordComplexityValidator validator, int threads, boolean pairs) {
+        if (validator == null) {
+            throw new IllegalArgumentException("The validator cannot be null.");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("There must be at least one thread.");
+        }
+        this.validator = validator;
+        this.threads = threads;
+        this.pairs = pairs;
+    }
+
+    /**
+     * Audit every line of the input. Neither the input nor the rejects are
+     * closed.
+     *
+     * @param in
+     * @param rejects where to list the rejected lines, or null for nowhere
+     * @return
+     * @throws IOException if the input can't be read or the rejects written
+     */
+    public Summary audit(Reader in, Writer rejects) throws IOException {
+
+        final BufferedReader lines = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+        final ExecutorService workers = Executors.newFixedThreadPool(threads, task -> {
+            Thread worker = new Thread(task, "PasswordAuditor worker");
+            worker.setDaemon(true);
+            return worker;
+        });
+        final BlockingQueue<Future<Batch>> queue = new ArrayBlockingQueue<Future<Batch>>(threads * BATCHES_PER_WORKER);
+        Thread reader = new Thread(() -> read(lines, workers, queue), "PasswordAuditor reader");
+        reader.setDaemon(true);
+        reader.start();
+
+        Summary summary = new Summary();
+        try {
+            Future<Batch> next;
+            while ((next = queue.take()) != END) {
+                Batch batch = next.get();
+                summary.add(batch);
+                if (rejects != null) {
+                    batch.writeRejects(rejects);
+                }
+            }
+            if (rejects != null) {
+                rejects.flush();
+            }
+            return summary;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while auditing.", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            } else if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            } else if (ex.getCause() instanceof Error) {
+                throw (Error) ex.getCause();
+            }
+            throw new IllegalStateException(ex.getCause());
+        } finally {
+            // Stops the reader if it is still going, after a failure
+            reader.interrupt();
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Cut the input into batches for the workers until it runs out, or until
+     * interrupted. Any failure, not only a read's, is queued in place of the
+     * next batch, so the audit always sees the end of the queue.
+     */
+    private void read(BufferedReader lines, ExecutorService workers, BlockingQueue<Future<Batch>> queue) {
+        try {
+            try {
+                long lineNumber = 0L;
+                Batch batch = new Batch();
+                String line;
+                while ((line = lines.readLine()) != null) {
+                    lineNumber++;
+                    if (line.isEmpty() == true) {
+                        continue;
+                    }
+                    batch.add(lineNumber, line);
+                    if (batch.size == BATCH_LINES) {
+                        queue.put(workers.submit(batch));
+                        batch = new Batch();
+                    }
+                }
+                if (batch.size > 0) {
+                    queue.put(workers.submit(batch));
+                }
+            } catch (InterruptedException ex) {
+                throw ex;
+            } catch (Throwable ex) {
+                CompletableFuture<Batch> failed = new CompletableFuture<Batch>();
+                failed.completeExceptionally(ex);
+                queue.put(failed);
+            }
+            queue.put(END);
+        } catch (InterruptedException ex) {
+            // The audit failed or was abandoned
+        }
+    }
+
+    /**
+     * A run of lines, and once validated the rules each one broke.
+     */
+    private final class Batch implements Callable<Batch> {
+
+        private final long[] lineNumbers = new long[BATCH_LINES];
+        private final String[] lines = new String[BATCH_LINES];
+        private final long[] violations = new long[BATCH_LINES];
+        private final String[] usernames;
+        private int size;
+
+        Batch() {
+            usernames = pairs == true ? new String[BATCH_LINES] : null;
+        }
+
+        void add(long lineNumber, String line) {
+            lineNumbers[size] = lineNumber;
+            lines[size] = line;
+            size++;
+        }
+
+        @Override
+        public Batch call() {
+            for (int i = 0; i < size; i++) {
+                String line = lines[i];
+                if (pairs == false) {
+                    violations[i] = validator.checkAll(line);
+                } else {
+                    int colon = line.indexOf(':');
+                    if (colon < 0) {
+                        violations[i] = MALFORMED;
+                    } else {
+                        usernames[i] = line.substring(0, colon);
+                        violations[i] = validator.checkAll(CharBuffer.wrap(line, colon + 1, line.length()));
+                    }
+                }
+                // Let go of the plaintext as soon as it is checked
+                lines[i] = null;
+            }
+            return this;
+        }
+
+        void writeRejects(Writer out) throws IOException {
+            for (int i = 0; i < size; i++) {
+                if (violations[i] == 0L) {
+                    continue;
+                }
+                out.write(Long.toString(lineNumbers[i]));
+                out.write('\t');
+                if (pairs == true) {
+                    if (usernames[i] != null) {
+                        out.write(usernames[i]);
+                    }
+                    out.write('\t');
+                }
+                if (violations[i] == MALFORMED) {
+                    out.write("MALFORMED");
+                } else {
+                    String separator = "";
+                    for (ValidationResult result : ValidationResult.fromBits(violations[i])) {
+                        out.write(separator);
+                        out.write(result.name());
+                        separator = ",";
+                    }
+                }
+                out.write('\n');
+            }
+        }
+    }
+
+    /**
+     * The counts from an audit.
+     */
+    public static final class Summary {
+
+        private final long[] counts = new long[ValidationResult.values().length];
+        private long candidates;
+        private long rejected;
+        private long malformed;
+
+        private Summary() {
+        }
+
+        private void add(Batch batch) {
+            for (int i = 0; i < batch.size; i++) {
+                long violations = batch.violations[i];
+                if (violations == MALFORMED) {
+                    malformed++;
+                    continue;
+                }
+                candidates++;
+                if (violations != 0L) {
+                    rejected++;
+                }
+                for (ValidationResult result : ValidationResult.fromBits(violations)) {
+                    counts[result.getCode()]++;
+                }
+            }
+        }
+
+        /**
+         * The candidates validated, not counting malformed lines.
+         *
+         * @return
+         */
+        public long getCandidates() {
+            return candidates;
+        }
+
+        /**
+         * The candidates which met the policy.
+         *
+         * @return
+         */
+        public long getValid() {
+            return candidates - rejected;
+        }
+
+        /**
+         * The candidates which broke at least one rule.
+         *
+         * @return
+         */
+        public long getRejected() {
+            return rejected;
+        }
+
+        /**
+         * The lines which weren't username:candidate pairs, when pairs were
+         * expected.
+         *
+         * @return
+         */
+        public long getMalformed() {
+            return malformed;
+        }
+
+        /**
+         * The candidates which broke a rule.
+         *
+         * @param result
+         * @return
+         */
+        public long getCount(ValidationResult result) {
+            return counts[result.getCode()];
+        }
+
+        /**
+         * Print the counts, a line per rule broken.
+         *
+         * @param out
+         */
+        public void print(PrintStream out) {
+            out.println("candidates\t" + candidates);
+            out.println("valid\t" + getValid());
+            out.println("rejected\t" + rejected);
+            if (malformed > 0) {
+                out.println("malformed\t" + malformed);
+            }
+            for (ValidationResult result : ValidationResult.values()) {
+                if (counts[result.getCode()] > 0) {
+                    out.println(result.name() + "\t" + counts[result.getCode()]);
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        String policyFile = null;
+        String rejectsFile = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int cacheSize = 0;
+        boolean pairs = false;
+        int i = 0;
+        try {
+            for (; i < args.length - 1 && args[i].startsWith("--"); i++) {
+                switch (args[i]) {
+                    case "--pairs":
+                        pairs = true;
+                        break;
+                    case "--policy":
+                        policyFile = args[++i];
+                        break;
+                    case "--rejects":
+                        rejectsFile = args[++i];
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(args[++i]);
+                        break;
+                    case "--cache":
+                        cacheSize = Integer.parseInt(args[++i]);
+                        break;
+                    default:
+                        i = args.length;
+                }
+            }
+        } catch (RuntimeException ex) {
+            i = args.length;
+        }
+        if (i != args.length - 1) {
+            System.err.println("Usage: PasswordAuditor [--pairs] [--policy policy.properties] [--rejects rejects.txt]"
+                    + " [--threads n] [--cache entries] candidates.txt");
+            System.exit(2);
+        }
+
+        PasswordPolicy policy = policyFile == null ? PasswordPolicy.DEFAULT
+                : PolicyWatcher.load(Paths.get(policyFile), PasswordPolicy.DEFAULT);
+        if (cacheSize > 0) {
+            policy = policy.toBuilder().resultCache(new ResultCache(cacheSize)).build();
+        }
+        // The bundled dictionary's settings are the JVM's, not the policy's
+        PasswordComplexityValidator.configureDictionary(policy);
+        PasswordAuditor auditor = new PasswordAuditor(new PasswordComplexityValidator(policy), threads, pairs);
+
+        long start = System.nanoTime();
+        Summary summary;
+        Reader in = new InputStreamReader(Files.newInputStream(Paths.get(args[i])), StandardCharsets.UTF_8);
+        try {
+            Writer rejects = rejectsFile == null ? null
+                    : new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(Paths.get(rejectsFile)), StandardCharsets.UTF_8));
+            try {
+                summary = auditor.audit(in, rejects);
+            } finally {
+                if (rejects != null) {
+                    rejects.close();
+                }
+            }
+        } finally {
+            in.close();
+        }
+        summary.print(System.out);
+        System.out.println("seconds\t" + (System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,82 @@
+package com.platinum.pcv;
+
+import java.util.List;
+
+/**
+ * A password to validate, with the history to validate it against. The
+ * password can be any CharSequence, such as a CharBuffer wrapping the char[]
+ * from a JPasswordField, and the built in rules read it in place without ever
+ * making a String of it.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+public final class PasswordCandidate {
+
+    private final CharSequence password;
+    private final List<String> oldPasswordsNewestToOldest;
+    private final PasswordHistory history;
+
+    /**
+     * A candidate without any history checks.
+     *
+     * @param password
+     */
+    public PasswordCandidate(CharSequence password) {
+        this(password, null, null);
+    }
+
+    /**
+     * A candidate checked against a plaintext history.
+     *
+     * @param password
+     * @param oldPasswordsNewestToOldest
+     */
+    public PasswordCandidate(CharSequence password, List<String> oldPasswordsNewestToOldest) {
+        this(password, oldPasswordsNewestToOldest, null);
+    }
+
+    /**
+     * A candidate checked against a hashed history.
+     *
+     * @param password
+     * @param history
+     */
+    public PasswordCandidate(CharSequence password, PasswordHistory history) {
+        this(password, null, history);
+    }
+
+    private PasswordCandidate(CharSequence password, List<String> oldPasswordsNewestToOldest, PasswordHistory history) {
+        this.password = password;
+        this.oldPasswordsNewestToOldest = oldPasswordsNewestToOldest;
+        this.history = history;
+    }
+
+    /**
+     * The password as a String, which copies it unless it already is one.
+     * Rules should read getPasswordChars instead.
+     *
+     * @return
+     */
+    public String getPassword() {
+        return password == null ? null : password.toString();
+    }
+
+    /**
+     * The password as it was given, without copying it.
+     *
+     * @return
+     */
+    public CharSequence getPasswordChars() {
+        return password;
+    }
+
+    public List<String> getOldPasswordsNewestToOldest() {
+        return oldPasswordsNewestToOldest;
+    }
+
+    public PasswordHistory getHistory() {
+        return history;
+    }
+}
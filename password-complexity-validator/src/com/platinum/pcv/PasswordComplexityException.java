@@ -11,13 +11,48 @@ public class PasswordComplexityException extends Exception {
 
 	private static final long serialVersionUID = -5310848576449958224L;
 
+	private final ValidationResult result;
+
 	public PasswordComplexityException(String message) {
 		super(message);
+		this.result = null;
 	}
 
 	public PasswordComplexityException(String message, Throwable cause) {
 		super(message, cause);
+		this.result = null;
 	}
 
-}
+	public PasswordComplexityException(ValidationResult result, String message) {
+		super(message);
+		this.result = result;
+	}
+
+	public PasswordComplexityException(ValidationResult result, String message, Throwable cause) {
+		super(message, cause);
+		this.result = result;
+	}
+
+	/**
+	 * Rejections are an expected outcome rather than a fault, so the
+	 * validator can skip filling in the stack trace for them.
+	 *
+	 * @param result
+	 * @param message
+	 * @param writableStackTrace
+	 */
+	public PasswordComplexityException(ValidationResult result, String message, boolean writableStackTrace) {
+		super(message, null, false, writableStackTrace);
+		this.result = result;
+	}
 
+	/**
+	 * The rule the password broke, if known.
+	 *
+	 * @return
+	 */
+	public ValidationResult getResult() {
+		return result;
+	}
+
+}
@@ -1,13 +1,19 @@
 package com.platinum.pcv;
 
 import com.platinum.dpv.DictionaryPasswordConfigException;
-import com.platinum.dpv.DictionaryPasswordFileException;
 import com.platinum.dpv.DictionaryPasswordValidator;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 /**
  * PasswordComplexityValidator validates the password meets your requirements
@@ -19,50 +25,60 @@ import java.util.regex.Pattern;
  */
 public class PasswordComplexityValidator {
 
-    // For character determinations
-    private static final int CHAR_LOWER_A = 'a';
-    private static final int CHAR_LOWER_Z = 'z';
-    private static final int CHAR_UPPER_A = 'A';
-    private static final int CHAR_UPPER_Z = 'Z';
-    private static final int CHAR_NUMERIC_ZERO = '0';
-    private static final int CHAR_NUMERIC_NINE = '9';
-
-    // Since the alpha and numeric checks handle the [a-zA-Z0-9] case in
-    // earlier if statement checks, we can then assume the surrounding characters
-    // within the range of the special char lower and upper values are in fact
-    // special characters.  If it extends past the range, then it's no longer a symbol.
-    private static final int CHAR_LOWER_SPECIAL_CHAR = ' ';
-    private static final int CHAR_UPPER_SPECIAL_CHAR = '~';
-    private static final int CHAR_EXTENDED_UPPER_SPECIAL_CHAR = 255;
-
-    // Date regex and pattern
-    private static final String REGEX_DATE_NUMERICAL = ".*([0-9]{1,4}[\\-.\\/]{1}"
-            + "[0-9]{1,2}[\\-.\\/]{1}[0-9]{1,4}).*";
-    private static final Pattern PATTERN_DATE_NUMERICAL = Pattern.compile(REGEX_DATE_NUMERICAL, Pattern.CASE_INSENSITIVE | Pattern.MULTILINE);
-
-    // Phone regex and pattern
-    private static final String REGEX_PHONE_NUMBER = ".*([0-9]{3}[\\-.]{1}"
-            + "[0-9]{3}[\\-.]{1}[0-9]{4}).*";
-    private static final Pattern PATTERN_PHONE_NUMBER = Pattern.compile(REGEX_PHONE_NUMBER, Pattern.CASE_INSENSITIVE | Pattern.MULTILINE);
-    
-    // Configurable variables
-    private static int minPasswordLength = 15;
-    private static int maxPasswordLength = 50;
-    private static int minLowerAlphaChars = 1;
-    private static int minUpperAlphaChars = 1;
-    private static int minSpecialChars = 1;
-    private static int minNumericalChars = 1;
-    private static boolean allowExtendedAsciiSymbols = false;
-    private static int lastPasswordDifferInChars = 4;
-    private static int passwordHistoryLen = 10;
-    private static boolean restrictedByDictionary = true;
-    private static boolean allowPhoneNumbers = false;
-    private static boolean allowDates = false;
+    // Candidates a batch task validates itself rather than splitting further
+    private static final int BATCH_SPLIT_THRESHOLD = 256;
+
+    // Keeps each validator's results apart in a shared ResultCache
+    private static final AtomicLong VERSIONS = new AtomicLong();
+
+    // The bundled dictionary's settings last given to configure, starting
+    // from its own defaults
+    private static float dictionaryAccuracy = 17.0f;
+    private static int dictionaryMinWordLength = 4;
+
+    // The validator used by the static methods, swapped out by configure
+    private static volatile PasswordComplexityValidator defaultInstance =
+            new PasswordComplexityValidator(PasswordPolicy.DEFAULT);
+
+    private final PasswordPolicy policy;
+    private final RulePipeline pipeline;
+    private final ResultCache resultCache;
+    private final long version = VERSIONS.incrementAndGet();
+
+    /**
+     * Create a validator bound to a policy, compiling the policy's settings
+     * into the rules they enable. Validators are thread safe, and one instance
+     * per policy should be shared by every thread, so the pipeline learns the
+     * rules' costs once.
+     *
+     * @param policy
+     */
+    public PasswordComplexityValidator(PasswordPolicy policy) {
+        if (policy == null) {
+            throw new IllegalArgumentException("The policy must not be null");
+        }
+        this.policy = policy;
+        this.pipeline = new RulePipeline(BuiltInRules.compile(policy), policy.getMetrics());
+        this.resultCache = policy.getResultCache();
+    }
+
+    /**
+     * The validator the static methods delegate to.
+     *
+     * @return
+     */
+    public static PasswordComplexityValidator getDefaultInstance() {
+        return defaultInstance;
+    }
 
    /**
     *
      * Override the default settings. This should be called on start up of the
      * app using the util.  This goes against normal conventions, but just go with it.
+     * Validations already in flight finish against the policy they started
+     * with, and callers needing more than one policy should create their own
+     * PasswordComplexityValidator instances instead. To change the policy
+     * while running, load it from a file with PolicyWatcher.watchDefault.
     * 
     * @param newMinPasswordLength
     * @param newMaxPasswordLength
@@ -78,6 +94,10 @@ public class PasswordComplexityValidator {
     * @param newRestrictedByDictionary
     * @param newDictionaryAccuracy
     * @param newDictionaryMinWordLength
+    * @throws IllegalArgumentException if the maximum length is less than the
+    * minimum, where no password could pass, or the history length is
+    * negative, which used to skip the history check; use 0 for that. Before
+    * the settings were checked, such values were accepted.
     */
     public static synchronized void configure(int newMinPasswordLength, int newMaxPasswordLength,
             int newMinLowerAlphaChars, int newMinUpperAlphaChars, int newMinSpecialChars,
@@ -86,25 +106,66 @@ public class PasswordComplexityValidator {
             boolean newAllowPhoneNumbers, boolean newAllowDates, boolean newRestrictedByDictionary, float newDictionaryAccuracy,
             int newDictionaryMinWordLength) {
 
-        minPasswordLength = newMinPasswordLength;
-        maxPasswordLength = newMaxPasswordLength;
-        minLowerAlphaChars = newMinLowerAlphaChars;
-        minUpperAlphaChars = newMinUpperAlphaChars;
-        minSpecialChars = newMinSpecialChars;
-        minNumericalChars = newMinNumericalChars;
-        allowExtendedAsciiSymbols = newAllowExtendedAsciiSymbols;
-        lastPasswordDifferInChars = newLastPasswordDifferInChars;
-        passwordHistoryLen = newPasswordHistoryLen;
-        allowPhoneNumbers = newAllowPhoneNumbers;
-        allowDates = newAllowDates;
-        restrictedByDictionary = newRestrictedByDictionary;
+        configure(PasswordPolicy.builder()
+                .minPasswordLength(newMinPasswordLength)
+                .maxPasswordLength(newMaxPasswordLength)
+                .minLowerAlphaChars(newMinLowerAlphaChars)
+                .minUpperAlphaChars(newMinUpperAlphaChars)
+                .minSpecialChars(newMinSpecialChars)
+                .minNumericalChars(newMinNumericalChars)
+                .allowExtendedAsciiSymbols(newAllowExtendedAsciiSymbols)
+                .lastPasswordDifferInChars(newLastPasswordDifferInChars)
+                .passwordHistoryLen(newPasswordHistoryLen)
+                .allowPhoneNumbers(newAllowPhoneNumbers)
+                .allowDates(newAllowDates)
+                .restrictedByDictionary(newRestrictedByDictionary)
+                .dictionaryAccuracy(newDictionaryAccuracy)
+                .dictionaryMinWordLength(newDictionaryMinWordLength)
+                .build());
+    }
+
+    /**
+     * Replace the policy used by the static methods.
+     *
+     * @param newPolicy
+     */
+    public static void configure(PasswordPolicy newPolicy) {
+        configure(new PasswordComplexityValidator(newPolicy));
+    }
+
+    /**
+     * Replace the validator used by the static methods with one already built.
+     *
+     * @param newInstance
+     */
+    static synchronized void configure(PasswordComplexityValidator newInstance) {
+
+        configureDictionary(newInstance.getPolicy());
+        defaultInstance = newInstance;
+    }
 
+    /**
+     * Apply the policy's accuracy and minimum word length to the bundled
+     * dictionary. They can only be applied before it is first loaded, after
+     * that a change is warned about once and ignored.
+     *
+     * @param newPolicy
+     */
+    static synchronized void configureDictionary(PasswordPolicy newPolicy) {
+
+        if (newPolicy.getDictionaryAccuracy() == dictionaryAccuracy
+                && newPolicy.getDictionaryMinWordLength() == dictionaryMinWordLength) {
+            return;
+        }
+        dictionaryAccuracy = newPolicy.getDictionaryAccuracy();
+        dictionaryMinWordLength = newPolicy.getDictionaryMinWordLength();
         try {
-            DictionaryPasswordValidator.configure(newDictionaryAccuracy, newDictionaryMinWordLength);
+            DictionaryPasswordValidator.configure(dictionaryAccuracy, dictionaryMinWordLength);
         } catch (DictionaryPasswordConfigException ex) {
-            Logger.getLogger(PasswordComplexityValidator.class.getName()).log(Level.SEVERE, null, ex);
+            Logger.getLogger(PasswordComplexityValidator.class.getName()).log(Level.WARNING,
+                    "The bundled dictionary is already loaded, its accuracy and minimum word length"
+                    + " can't change until restarted.");
         }
-
     }
 
     /**
@@ -116,226 +177,475 @@ public class PasswordComplexityValidator {
      * @throws PasswordComplexityException
      */
     public static void validatePassword(String newPassword, ArrayList<String> oldPasswordsNewestToOldest) throws PasswordComplexityException {
+        defaultInstance.validate(newPassword, oldPasswordsNewestToOldest);
+    }
 
-        if (newPassword == null) {
-            throw new PasswordComplexityException("You cannot have a null password.");
-        }
-
-        // Validate the password meets our character and length restrictions
-        characterAndLengthValidations(newPassword);
-
-        // Date validation
-        dateValidation(newPassword);
-
-        // Phone number validation
-        phoneNumberValidation(newPassword);
-
-        // Check the password doesn't contain dictionary words
-        if (restrictedByDictionary == true) {
-            try {
-                DictionaryPasswordValidator dPV = DictionaryPasswordValidator.getInstance();
-                if (dPV.isPasswordDictionaryBased(newPassword) == true) {
-                    throw new PasswordComplexityException("Your password cannot contain dictionary words.");
-                }
-            } catch (DictionaryPasswordFileException ex) {
-
-                Logger.getLogger(PasswordComplexityValidator.class.getName()).log(Level.SEVERE, null, ex);
-                throw new PasswordComplexityException("Error attempting to load up the dictionary.", ex);
-            }
-        }
-
-
-        // Validate it isn't a previous password, and the last password has changed
-        // enough to meet our requirements.
-        previousPasswordValidations(newPassword, oldPasswordsNewestToOldest);
-
+    /**
+     * Checks if a password meets our requirements, without throwing.
+     *
+     * @param newPassword
+     * @param oldPasswordsNewestToOldest
+     * @return VALID, or a rule the password broke
+     */
+    public static ValidationResult checkPassword(String newPassword, List<String> oldPasswordsNewestToOldest) {
+        return defaultInstance.check(newPassword, oldPasswordsNewestToOldest);
+    }
 
-        // Success, we've survived the battery of tests.
+    /**
+     * The policy this validator enforces.
+     *
+     * @return
+     */
+    public PasswordPolicy getPolicy() {
+        return policy;
     }
 
-    private static void dateValidation(String newPassword) throws PasswordComplexityException {
+    /**
+     * The rules this validator's policy compiled into, in the order they
+     * currently run.
+     *
+     * @return
+     */
+    public List<Rule> getRules() {
+        return Arrays.asList(pipeline.getRules());
+    }
 
-        if (allowDates == false) {
-            Matcher m = PATTERN_DATE_NUMERICAL.matcher(newPassword);
-            if (m.matches() == true) {
-                throw new PasswordComplexityException("Your password cannot contain dates.");
-            }
-        }
+    /**
+     * Validates if a password meets this validator's policy, without any
+     * history checks. Throws an exception with a reason if it does not.
+     *
+     * @param newPassword
+     * @throws PasswordComplexityException
+     */
+    public void validate(CharSequence newPassword) throws PasswordComplexityException {
+        throwIfInvalid(check(newPassword));
+    }
 
+    /**
+     * Validates if a password meets this validator's policy. Throws an
+     * exception with a reason if it does not.
+     *
+     * @param newPassword
+     * @param oldPasswordsNewestToOldest
+     * @throws PasswordComplexityException
+     */
+    public void validate(CharSequence newPassword, List<String> oldPasswordsNewestToOldest) throws PasswordComplexityException {
+        throwIfInvalid(check(newPassword, oldPasswordsNewestToOldest));
     }
 
-    private static void phoneNumberValidation(String newPassword) throws PasswordComplexityException {
+    /**
+     * Validates if a password meets this validator's policy, checking reuse
+     * against a hashed history. The "differ by N chars" check only runs if the
+     * history carries the plaintext newest password. Throws an exception with
+     * a reason if it does not.
+     *
+     * @param newPassword
+     * @param history
+     * @throws PasswordComplexityException
+     */
+    public void validate(CharSequence newPassword, PasswordHistory history) throws PasswordComplexityException {
+        throwIfInvalid(check(newPassword, history));
+    }
 
-        if (allowPhoneNumbers == false) {
-            Matcher m = PATTERN_PHONE_NUMBER.matcher(newPassword);
-            if (m.matches() == true) {
-                throw new PasswordComplexityException("Your password cannot contain phone numbers.");
+    /**
+     * Checks if a password meets this validator's policy, without any history
+     * checks. Nothing is thrown for a rejection, the result's message is only
+     * rendered if asked for.
+     *
+     * @param newPassword
+     * @return VALID, or a rule the password broke
+     */
+    public ValidationResult check(CharSequence newPassword) {
 
-            }
+        if (newPassword == null) {
+            return ValidationResult.NULL_PASSWORD;
         }
-
+        return checkCandidate(new PasswordCandidate(newPassword));
     }
 
     /**
-     * This validates against your list of previous passwords. It does a
-     * comparison against the last 10 characters to see if the passwords match
-     * up. It also does a difference test to ensure the new password is X amount
-     * of characters different then the last password.
+     * Checks if a password meets this validator's policy, without throwing.
      *
      * @param newPassword
      * @param oldPasswordsNewestToOldest
-     * @throws PasswordComplexityException
+     * @return VALID, or a rule the password broke
      */
-    private static void previousPasswordValidations(String newPassword, ArrayList<String> oldPasswordsNewestToOldest) throws PasswordComplexityException {
-
-        if (oldPasswordsNewestToOldest != null) {
+    public ValidationResult check(CharSequence newPassword, List<String> oldPasswordsNewestToOldest) {
 
-            int oldPasswordsCount = oldPasswordsNewestToOldest.size();
-            if (oldPasswordsCount > 0) {
+        if (newPassword == null) {
+            return ValidationResult.NULL_PASSWORD;
+        }
+        return checkCandidate(new PasswordCandidate(newPassword, oldPasswordsNewestToOldest));
+    }
 
-                // Validate we have 4 chars differing from the last password
-                // Case Sensitive!
-                String lastOldPassword = oldPasswordsNewestToOldest.get(0);
-                try {
-                    if (getLevenshteinDistance(newPassword, lastOldPassword) < lastPasswordDifferInChars) {
-                        throw new PasswordComplexityException("The password must differ by at least " + lastPasswordDifferInChars + " characters.");
-                    }
-                } catch (IllegalArgumentException e) {
-                    throw new PasswordComplexityException("Error doing Levenshtein Distance calculation.", e);
-                }
+    /**
+     * Checks if a password meets this validator's policy against a hashed
+     * history, without throwing.
+     *
+     * @param newPassword
+     * @param history
+     * @return VALID, or a rule the password broke
+     */
+    public ValidationResult check(CharSequence newPassword, PasswordHistory history) {
 
-                // Validate we haven't used this password in the last X changes
-                // Case Sensitive!
-                for (int r = 0; r < oldPasswordsCount && r < passwordHistoryLen; r++) {
+        if (newPassword == null) {
+            return ValidationResult.NULL_PASSWORD;
+        }
+        return checkCandidate(new PasswordCandidate(newPassword, history));
+    }
 
-                    if (oldPasswordsNewestToOldest.get(r).equals(newPassword)) {
-                        throw new PasswordComplexityException("You may not use a password which has been used within the last " + passwordHistoryLen + " password changes.");
-                    }
-                }
+    /**
+     * Checks a password held in a char[], such as from a JPasswordField or
+     * Console.readPassword, without copying it. The caller can wipe the array
+     * as soon as this returns.
+     *
+     * @param password
+     * @param offset
+     * @param length
+     * @return VALID, or a rule the password broke
+     */
+    public ValidationResult check(char[] password, int offset, int length) {
+        return check(password, offset, length, null);
+    }
 
-            }
+    /**
+     * Checks a password held in a char[] against a hashed history, without
+     * copying it.
+     *
+     * @param password
+     * @param offset
+     * @param length
+     * @param history
+     * @return VALID, or a rule the password broke
+     */
+    public ValidationResult check(char[] password, int offset, int length, PasswordHistory history) {
+        if (password == null) {
+            return ValidationResult.NULL_PASSWORD;
         }
-
+        return check(CharBuffer.wrap(password, offset, length), history);
     }
 
     /**
-     * Check it meets the length and character requirements
+     * Validates a password held in a char[], without copying it. Throws an
+     * exception with a reason if it does not meet the policy.
      *
      * @param password
+     * @param offset
+     * @param length
+     * @param history the hashed history, or null for no history checks
      * @throws PasswordComplexityException
      */
-    private static void characterAndLengthValidations(String password) throws PasswordComplexityException {
+    public void validate(char[] password, int offset, int length, PasswordHistory history) throws PasswordComplexityException {
+        throwIfInvalid(check(password, offset, length, history));
+    }
 
-        int passwordLen = password.length();
+    /**
+     * Checks a UTF-8 password, such as a request body, without making a
+     * String of it. The bytes are decoded into a scratch buffer belonging to
+     * the thread, which is wiped before this returns, and the buffer's
+     * position is left untouched.
+     *
+     * @param utf8Password the bytes from the position to the limit
+     * @return VALID, or a rule the password broke. Bytes which aren't valid
+     * UTF-8 are an INVALID_CHARACTER.
+     */
+    public ValidationResult check(ByteBuffer utf8Password) {
+        return check(utf8Password, null);
+    }
 
-        if (passwordLen < minPasswordLength) {
-            throw new PasswordComplexityException("The password must be at least " + minPasswordLength + " characters in length.");
+    /**
+     * Checks a UTF-8 password against a hashed history, without making a
+     * String of it.
+     *
+     * @param utf8Password
+     * @param history
+     * @return VALID, or a rule the password broke
+     */
+    public ValidationResult check(ByteBuffer utf8Password, PasswordHistory history) {
+        if (utf8Password == null) {
+            return ValidationResult.NULL_PASSWORD;
         }
-
-        if (passwordLen > maxPasswordLength) {
-            throw new PasswordComplexityException("The password must be at less than " + maxPasswordLength + " characters in length.");
+        CharBuffer password = PasswordEncoding.decode(utf8Password);
+        if (password == null) {
+            return ValidationResult.INVALID_CHARACTER;
         }
-
-        int alphaLowerCharsCount = 0;
-        int alphaUpperCharsCount = 0;
-        int numericCharsCount = 0;
-        int specialCharsCount = 0;
-
-        // Count the characters
-        char passwordChar;
-        for (int i = 0; i < passwordLen; i++) {
-            passwordChar = password.charAt(i);
-            if (passwordChar >= CHAR_LOWER_A && passwordChar <= CHAR_LOWER_Z) {
-                alphaLowerCharsCount++;
-            } else if (passwordChar >= CHAR_UPPER_A && passwordChar <= CHAR_UPPER_Z) {
-                alphaUpperCharsCount++;
-            } else if (passwordChar >= CHAR_NUMERIC_ZERO && passwordChar <= CHAR_NUMERIC_NINE) {
-                numericCharsCount++;
-            } else if (allowExtendedAsciiSymbols == false &&
-                    passwordChar >= CHAR_LOWER_SPECIAL_CHAR && passwordChar <= CHAR_UPPER_SPECIAL_CHAR) {
-                specialCharsCount++;
-            } else if (allowExtendedAsciiSymbols == true &&
-                    passwordChar >= CHAR_LOWER_SPECIAL_CHAR && passwordChar <= CHAR_EXTENDED_UPPER_SPECIAL_CHAR) {
-                specialCharsCount++;
-            }  else {
-                throw new PasswordComplexityException("Invalid password character entered.  You can use: a-z, A-Z, 0-9, Symbols");
-            }
+        try {
+            return checkCandidate(new PasswordCandidate(password, history));
+        } finally {
+            PasswordEncoding.release(password);
         }
+    }
 
-        if (alphaLowerCharsCount < minLowerAlphaChars) {
-            throw new PasswordComplexityException("The password must contain at least " + minLowerAlphaChars + " lowercase alpha (a-z) characters.");
-        }
+    /**
+     * Validates a UTF-8 password, without making a String of it. Throws an
+     * exception with a reason if it does not meet the policy.
+     *
+     * @param utf8Password
+     * @param history the hashed history, or null for no history checks
+     * @throws PasswordComplexityException
+     */
+    public void validate(ByteBuffer utf8Password, PasswordHistory history) throws PasswordComplexityException {
+        throwIfInvalid(check(utf8Password, history));
+    }
 
-        if (alphaUpperCharsCount < minUpperAlphaChars) {
-            throw new PasswordComplexityException("The password must contain at least " + minUpperAlphaChars + " uppercase alpha (A-Z) characters.");
-        }
+    /**
+     * Start following a password as it is typed, without any history checks.
+     *
+     * @return
+     */
+    public ValidationSession newSession() {
+        return new ValidationSession(pipeline.getRules(), null, null);
+    }
 
-        if (numericCharsCount < minNumericalChars) {
-            throw new PasswordComplexityException("The password must contain at least " + minNumericalChars + " numerical (0-9) characters.");
-        }
+    /**
+     * Start following a password as it is typed, checked against a plaintext
+     * history.
+     *
+     * @param oldPasswordsNewestToOldest
+     * @return
+     */
+    public ValidationSession newSession(List<String> oldPasswordsNewestToOldest) {
+        return new ValidationSession(pipeline.getRules(), oldPasswordsNewestToOldest, null);
+    }
 
-        if (specialCharsCount < minSpecialChars) {
-            throw new PasswordComplexityException("The password must contain at least " + minSpecialChars + " special (symbols such as: !@#) characters.");
+    /**
+     * Start following a password as it is typed, checked against a hashed
+     * history.
+     *
+     * @param history
+     * @return
+     */
+    public ValidationSession newSession(PasswordHistory history) {
+        return new ValidationSession(pipeline.getRules(), null, history);
+    }
+
+    /**
+     * Validates a batch of candidates across the common fork join pool.
+     * Nothing is thrown for a rejected candidate, its ValidationResult code is
+     * returned in its place instead.
+     *
+     * @param candidates
+     * @return the ValidationResult code of each candidate, in order
+     */
+    public byte[] validateAll(List<PasswordCandidate> candidates) {
+        return validateAll(candidates, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Validates a batch of candidates across the given fork join pool.
+     *
+     * @param candidates
+     * @param pool
+     * @return the ValidationResult code of each candidate, in order
+     */
+    public byte[] validateAll(List<PasswordCandidate> candidates, ForkJoinPool pool) {
+        if (!(candidates instanceof RandomAccess)) {
+            candidates = new ArrayList<PasswordCandidate>(candidates);
         }
+        byte[] codes = new byte[candidates.size()];
+        long start = System.nanoTime();
+        pool.invoke(new BatchTask(this, candidates, codes, 0, codes.length));
+        policy.getMetrics().batchValidated(codes.length, System.nanoTime() - start);
+        return codes;
     }
 
     /**
-     * The Levenshtein Distance formula. This is modified from the Apache
-     * Commons version to support longer strings and to use a flat array.
+     * Validates a stream of candidates as a parallel stream. The results are
+     * lazy and keep the order of the candidates, so a stream of any length
+     * can be audited without holding it all in memory. To use a pool other
+     * than the common one, run the terminal operation from a task submitted
+     * to that pool.
      *
-     * @param s
-     * @param t
+     * @param candidates
+     * @return the result of each candidate
+     */
+    public Stream<ValidationResult> validateAll(Stream<PasswordCandidate> candidates) {
+        return candidates.parallel().map(this::check);
+    }
+
+    /**
+     * Checks one candidate against whichever history it carries.
+     *
+     * @param candidate
      * @return
      */
-    private static int getLevenshteinDistance(String s, String t) {
-        if (s == null || t == null) {
-            throw new IllegalArgumentException("Strings must not be null");
+    public ValidationResult check(PasswordCandidate candidate) {
+        if (candidate == null || candidate.getPasswordChars() == null) {
+            return ValidationResult.NULL_PASSWORD;
         }
+        return checkCandidate(candidate);
+    }
 
-        int n = s.length(); // length of s
-        int m = t.length(); // length of t
+    /**
+     * Checks every rule against a password, without any history checks, and
+     * reports all of the rules it broke rather than only the first. Rules
+     * sharing work are fused, the character classes, dates and phone numbers
+     * all come from one pass over the characters and the dictionary is
+     * searched once.
+     *
+     * @param newPassword
+     * @return a bit per broken rule, see ValidationResult.getBit, or 0 if the
+     * password is valid. The result check returns is always one of them.
+     */
+    public long checkAll(CharSequence newPassword) {
 
-        if (n == 0) {
-            return m;
-        } else if (m == 0) {
-            return n;
+        if (newPassword == null) {
+            return ValidationResult.NULL_PASSWORD.getBit();
         }
+        return checkAllCandidate(new PasswordCandidate(newPassword));
+    }
 
-        int p[] = new int[n + 1]; // 'previous' cost array, horizontally
-        int d[] = new int[n + 1]; // cost array, horizontally
-        int dSwap[]; // placeholder to assist in swapping p and d
+    /**
+     * Checks every rule, including the history, and reports all of the rules
+     * the password broke.
+     *
+     * @param newPassword
+     * @param oldPasswordsNewestToOldest
+     * @return a bit per broken rule, or 0 if the password is valid
+     */
+    public long checkAll(CharSequence newPassword, List<String> oldPasswordsNewestToOldest) {
 
-        // indexes into strings s and t
-        int i; // iterates through s
-        int j; // iterates through t
+        if (newPassword == null) {
+            return ValidationResult.NULL_PASSWORD.getBit();
+        }
+        return checkAllCandidate(new PasswordCandidate(newPassword, oldPasswordsNewestToOldest));
+    }
 
-        char tJ; // jth character of t
+    /**
+     * Checks every rule, including the hashed history, and reports all of the
+     * rules the password broke.
+     *
+     * @param newPassword
+     * @param history
+     * @return a bit per broken rule, or 0 if the password is valid
+     */
+    public long checkAll(CharSequence newPassword, PasswordHistory history) {
+
+        if (newPassword == null) {
+            return ValidationResult.NULL_PASSWORD.getBit();
+        }
+        return checkAllCandidate(new PasswordCandidate(newPassword, history));
+    }
 
-        int cost; // cost
+    /**
+     * Run the rules against the candidate, taking the results of those which
+     * don't use the history from the cache where it can. The rules cheaper
+     * than a lookup run first, and those which use the history always run.
+     */
+    private ValidationResult checkCandidate(PasswordCandidate candidate) {
+        if (resultCache == null) {
+            return pipeline.check(candidate);
+        }
+        ValidationResult result = pipeline.check(candidate, 0L, ResultCache.LOOKUP_NANOS, RulePipeline.Scope.ALL);
+        if (result != ValidationResult.VALID) {
+            return result;
+        }
+        long[] key = resultCache.keyOf(version, candidate.getPasswordChars());
+        long cached = resultCache.get(key, false);
+        if (cached != 0L) {
+            result = ValidationResult.firstOf(cached & ~ResultCache.COMPLETE);
+        } else {
+            result = pipeline.check(candidate, ResultCache.LOOKUP_NANOS, Long.MAX_VALUE, RulePipeline.Scope.WITHOUT_HISTORY);
+            if (result == ValidationResult.VALID) {
+                // No rule broken is every violation there is
+                resultCache.put(key, ResultCache.COMPLETE);
+            } else if (result != ValidationResult.DICTIONARY_UNAVAILABLE) {
+                resultCache.put(key, result.getBit());
+            }
+        }
+        if (result != ValidationResult.VALID || hasHistory(candidate) == false) {
+            return result;
+        }
+        return pipeline.check(candidate, ResultCache.LOOKUP_NANOS, Long.MAX_VALUE, RulePipeline.Scope.HISTORY);
+    }
 
-        for (i = 0; i <= n; i++) {
-            p[i] = i;
+    /**
+     * Run every rule against the candidate, taking the violations of those
+     * which don't use the history from the cache where it can.
+     */
+    private long checkAllCandidate(PasswordCandidate candidate) {
+        if (resultCache == null) {
+            return pipeline.checkAll(candidate);
+        }
+        long[] key = resultCache.keyOf(version, candidate.getPasswordChars());
+        long cached = resultCache.get(key, true);
+        long violations;
+        if (cached != 0L) {
+            violations = cached & ~ResultCache.COMPLETE;
+        } else {
+            violations = pipeline.checkAll(candidate, RulePipeline.Scope.WITHOUT_HISTORY);
+            if ((violations & ValidationResult.DICTIONARY_UNAVAILABLE.getBit()) == 0L) {
+                resultCache.put(key, violations | ResultCache.COMPLETE);
+            }
         }
+        if (hasHistory(candidate) == true) {
+            violations |= pipeline.checkAll(candidate, RulePipeline.Scope.HISTORY);
+        }
+        return violations;
+    }
 
-        for (j = 1; j <= m; j++) {
-            tJ = t.charAt(j - 1);
-            d[0] = j;
+    private static boolean hasHistory(PasswordCandidate candidate) {
+        return candidate.getHistory() != null || (candidate.getOldPasswordsNewestToOldest() != null
+                && candidate.getOldPasswordsNewestToOldest().isEmpty() == false);
+    }
 
-            for (i = 1; i <= n; i++) {
-                cost = s.charAt(i - 1) == tJ ? 0 : 1;
-                // minimum of cell to the left+1, to the top+1, diagonally left
-                // and up +cost
-                d[i] = Math.min(Math.min(d[i - 1] + 1, p[i] + 1), p[i - 1] + cost);
+    /**
+     * The thin exception throwing layer over the checks. Rejections are
+     * expected, so they are thrown without a stack trace, but failures to load
+     * the dictionary keep theirs, with the rule's load failure as the cause.
+     *
+     * @param result
+     * @throws PasswordComplexityException
+     */
+    private void throwIfInvalid(ValidationResult result) throws PasswordComplexityException {
+        if (result == ValidationResult.VALID) {
+            return;
+        }
+        if (result == ValidationResult.DICTIONARY_UNAVAILABLE) {
+            Exception cause = null;
+            for (Rule rule : pipeline.getRules()) {
+                if (rule.getLoadFailure() != null) {
+                    cause = rule.getLoadFailure();
+                    break;
+                }
             }
+            throw new PasswordComplexityException(result, result.getMessage(policy), cause);
+        }
+        throw new PasswordComplexityException(result, result.getMessage(policy), false);
+    }
 
-            // copy current distance counts to 'previous row' distance counts
-            dSwap = p;
-            p = d;
-            d = dSwap;
+    /**
+     * Splits a batch in halves until it is small enough to validate in place.
+     */
+    private static final class BatchTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final PasswordComplexityValidator validator;
+        private final List<PasswordCandidate> candidates;
+        private final byte[] codes;
+        private final int from;
+        private final int to;
+
+        BatchTask(PasswordComplexityValidator validator, List<PasswordCandidate> candidates, byte[] codes, int from, int to) {
+            this.validator = validator;
+            this.candidates = candidates;
+            this.codes = codes;
+            this.from = from;
+            this.to = to;
         }
 
-        // our last action in the above loop was to switch d and p, so p now
-        // actually has the most recent cost counts
-        return p[n];
+        @Override
+        protected void compute() {
+            if (to - from <= BATCH_SPLIT_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    codes[i] = validator.check(candidates.get(i)).getCode();
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new BatchTask(validator, candidates, codes, from, middle),
+                        new BatchTask(validator, candidates, codes, middle, to));
+            }
+        }
     }
 }
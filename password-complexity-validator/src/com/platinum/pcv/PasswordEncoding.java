@@ -0,0 +1,167 @@
+package com.platinum.pcv;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * Moves passwords between chars and bytes without ever making a String or a
+ * byte[] of them. Passwords are encoded into the digests through a small
+ * scratch buffer, and UTF-8 passwords are decoded into a scratch char buffer,
+ * both of which belong to the thread and are wiped as soon as they are done
+ * with.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+final class PasswordEncoding {
+
+    private static final int ENCODE_CHUNK = 256;
+    private static final int MIN_DECODE_CAPACITY = 64;
+
+    private static final ThreadLocal<ByteBuffer> ENCODE_SCRATCH = new ThreadLocal<ByteBuffer>() {
+
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocate(ENCODE_CHUNK);
+        }
+    };
+
+    private static final ThreadLocal<CharsetDecoder> UTF_8_DECODER = new ThreadLocal<CharsetDecoder>() {
+
+        @Override
+        protected CharsetDecoder initialValue() {
+            return StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT);
+        }
+    };
+
+    // Taken while in use, so a rule validating another password from within
+    // a check gets a buffer of its own
+    private static final ThreadLocal<CharBuffer> DECODE_SCRATCH = new ThreadLocal<CharBuffer>();
+
+    private PasswordEncoding() {
+    }
+
+    /**
+     * An encoder which replaces unpaired surrogates exactly as
+     * String.getBytes does, so the digests match those of the String.
+     *
+     * @param encoder
+     * @return
+     */
+    static CharsetEncoder replacing(CharsetEncoder encoder) {
+        return encoder.onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * A UTF-8 encoder which reports unpaired surrogates, for update to encode
+     * as generalized UTF-8 does. Those bytes are never valid UTF-8, so unlike
+     * a replacement they can't match another password's, while every other
+     * password encodes as String.getBytes does.
+     *
+     * @return
+     */
+    static CharsetEncoder reportingUtf8() {
+        return StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+    }
+
+    /**
+     * Feed the encoded password to the digest, a chunk at a time.
+     *
+     * @param digest
+     * @param encoder one made by replacing or reportingUtf8
+     * @param password
+     */
+    static void update(MessageDigest digest, CharsetEncoder encoder, CharSequence password) {
+        CharBuffer in = password instanceof CharBuffer
+                ? ((CharBuffer) password).duplicate() : CharBuffer.wrap(password);
+        ByteBuffer out = ENCODE_SCRATCH.get();
+        out.clear();
+        encoder.reset();
+        try {
+            CoderResult result;
+            do {
+                result = encoder.encode(in, out, true);
+                drain(digest, out);
+                if (result.isMalformed() == true) {
+                    // Only reportingUtf8 reports, and only unpaired surrogates
+                    for (int i = 0; i < result.length(); i++) {
+                        char c = in.get();
+                        out.put((byte) (0xE0 | (c >> 12)));
+                        out.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                        out.put((byte) (0x80 | (c & 0x3F)));
+                    }
+                    drain(digest, out);
+                }
+            } while (result.isOverflow() || result.isMalformed());
+            do {
+                result = encoder.flush(out);
+                drain(digest, out);
+            } while (result.isOverflow());
+        } finally {
+            Arrays.fill(out.array(), (byte) 0);
+            out.clear();
+        }
+    }
+
+    /**
+     * Decode a UTF-8 password into a scratch buffer, leaving the bytes' own
+     * position untouched. Hand the buffer back with release once done.
+     *
+     * @param utf8
+     * @return the chars, or null if the bytes aren't valid UTF-8
+     */
+    static CharBuffer decode(ByteBuffer utf8) {
+        int capacity = Math.max(utf8.remaining(), MIN_DECODE_CAPACITY);
+        CharBuffer chars = DECODE_SCRATCH.get();
+        if (chars == null || chars.capacity() < capacity) {
+            chars = CharBuffer.allocate(capacity);
+        } else {
+            DECODE_SCRATCH.set(null);
+        }
+        chars.clear();
+
+        // A UTF-8 password never has more chars than bytes, so it always fits
+        CharsetDecoder decoder = UTF_8_DECODER.get();
+        decoder.reset();
+        CoderResult result = decoder.decode(utf8.duplicate(), chars, true);
+        if (result.isUnderflow()) {
+            result = decoder.flush(chars);
+        }
+        chars.flip();
+        if (result.isError()) {
+            release(chars);
+            return null;
+        }
+        return chars;
+    }
+
+    /**
+     * Wipe a buffer from decode and keep it for the thread's next password.
+     *
+     * @param chars
+     */
+    static void release(CharBuffer chars) {
+        Arrays.fill(chars.array(), '\0');
+        chars.clear();
+        DECODE_SCRATCH.set(chars);
+    }
+
+    private static void drain(MessageDigest digest, ByteBuffer out) {
+        out.flip();
+        digest.update(out);
+        out.clear();
+    }
+}
@@ -0,0 +1,203 @@
+package com.platinum.pcv;
+
+import java.nio.charset.CharsetEncoder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * PasswordHistory is a compact, hashed record of a user's previous passwords,
+ * so the plaintext never needs to be kept or loaded. Each previous password is
+ * stored as a 64 bit fingerprint: the first 8 bytes of SHA-256 over the
+ * user's salt followed by the UTF-8 password. An unpaired surrogate, which
+ * UTF-8 can't hold, is hashed as its generalized UTF-8 bytes rather than
+ * replaced by '?', so it never matches a password with a '?' there.
+ *
+ * The fingerprints are loaded into a fixed size open addressing table, so
+ * checking a new password is a single digest plus a probe or two, however
+ * many generations are kept.
+ *
+ * A fingerprint is a single fast hash, not a slow, iterated one made for
+ * storing passwords, so a leaked one can be guessed offline at the speed of
+ * SHA-256. It is far weaker than the password hash it sits next to. Keep
+ * fingerprints as confidential as the plaintext passwords would be, with a
+ * salt per user, and out of anything the password hashes are shared with.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+public final class PasswordHistory {
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private static final ThreadLocal<MessageDigest> DIGEST = new ThreadLocal<MessageDigest>() {
+
+        @Override
+        protected MessageDigest initialValue() {
+            try {
+                return MessageDigest.getInstance(DIGEST_ALGORITHM);
+            } catch (NoSuchAlgorithmException ex) {
+                // Every JVM is required to support SHA-256
+                throw new IllegalStateException(ex);
+            }
+        }
+    };
+
+    private static final ThreadLocal<CharsetEncoder> ENCODER = new ThreadLocal<CharsetEncoder>() {
+
+        @Override
+        protected CharsetEncoder initialValue() {
+            return PasswordEncoding.reportingUtf8();
+        }
+    };
+
+    private final byte[] salt;
+    private final long[] fingerprints;
+    private final String newestPassword;
+
+    // Open addressing table of fingerprints and the generation each came
+    // from, plus one so that zero marks an empty slot
+    private final long[] table;
+    private final int[] generations;
+    private final int mask;
+
+    /**
+     * A hashed history without the plaintext newest password, the "differ by
+     * N chars" check is skipped.
+     *
+     * @param salt
+     * @param fingerprintsNewestToOldest
+     */
+    public PasswordHistory(byte[] salt, long[] fingerprintsNewestToOldest) {
+        this(salt, fingerprintsNewestToOldest, null);
+    }
+
+    /**
+     * A hashed history which also opts in to the "differ by N chars" check
+     * against the newest password.
+     *
+     * @param salt
+     * @param fingerprintsNewestToOldest
+     * @param newestPassword the plaintext of the newest previous password,
+     * or null to skip the check
+     */
+    public PasswordHistory(byte[] salt, long[] fingerprintsNewestToOldest, String newestPassword) {
+        if (salt == null || fingerprintsNewestToOldest == null) {
+            throw new IllegalArgumentException("The salt and fingerprints must not be null");
+        }
+        this.salt = salt.clone();
+        this.fingerprints = fingerprintsNewestToOldest.clone();
+        this.newestPassword = newestPassword;
+
+        // At most half full keeps the probe sequences short
+        int capacity = Integer.highestOneBit(Math.max(1, fingerprints.length) * 2) * 2;
+        table = new long[capacity];
+        generations = new int[capacity];
+        mask = capacity - 1;
+
+        // Newest first, so a password used twice keeps its newest generation
+        for (int g = 0; g < fingerprints.length; g++) {
+            int slot = slotOf(fingerprints[g]);
+            if (generations[slot] == 0) {
+                table[slot] = fingerprints[g];
+                generations[slot] = g + 1;
+            }
+        }
+    }
+
+    /**
+     * The fingerprint to store for a password.
+     *
+     * @param salt
+     * @param password
+     * @return
+     */
+    public static long fingerprint(byte[] salt, CharSequence password) {
+        if (salt == null || password == null) {
+            throw new IllegalArgumentException("The salt and password must not be null");
+        }
+        MessageDigest digest = DIGEST.get();
+        digest.reset();
+        digest.update(salt);
+        PasswordEncoding.update(digest, ENCODER.get(), password);
+        byte[] hash = digest.digest();
+        long fingerprint = 0L;
+        for (int i = 0; i < 8; i++) {
+            fingerprint = (fingerprint << 8) | (hash[i] & 0xFF);
+        }
+        return fingerprint;
+    }
+
+    /**
+     * The fingerprint of a password with this history's salt.
+     *
+     * @param password
+     * @return
+     */
+    public long fingerprint(CharSequence password) {
+        return fingerprint(salt, password);
+    }
+
+    /**
+     * How many password changes ago the password was used.
+     *
+     * @param password
+     * @return 0 for the newest previous password, or -1 if it is not in the
+     * history at all
+     */
+    public int generationOf(CharSequence password) {
+        return generations[slotOf(fingerprint(password))] - 1;
+    }
+
+    /**
+     * Whether the password was used within the last depth changes.
+     *
+     * @param password
+     * @param depth
+     * @return
+     */
+    public boolean containsWithin(CharSequence password, int depth) {
+        int generation = generationOf(password);
+        return generation >= 0 && generation < depth;
+    }
+
+    /**
+     * The number of generations held.
+     *
+     * @return
+     */
+    public int size() {
+        return fingerprints.length;
+    }
+
+    /**
+     * The plaintext newest previous password, if the caller opted in to the
+     * "differ by N chars" check.
+     *
+     * @return
+     */
+    public String getNewestPassword() {
+        return newestPassword;
+    }
+
+    /**
+     * A copy of the fingerprints, newest to oldest.
+     *
+     * @return
+     */
+    public long[] getFingerprints() {
+        return fingerprints.clone();
+    }
+
+    /**
+     * The slot holding the fingerprint, or the empty slot where it would go.
+     */
+    private int slotOf(long fingerprint) {
+        // The fingerprint is already a digest, so its low bits are uniform
+        int slot = (int) fingerprint & mask;
+        while (generations[slot] != 0 && table[slot] != fingerprint) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+}
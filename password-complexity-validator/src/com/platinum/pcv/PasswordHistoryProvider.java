@@ -0,0 +1,25 @@
+package com.platinum.pcv;
+
+import java.io.IOException;
+
+/**
+ * PasswordHistoryProvider fetches a user's hashed history, typically from a
+ * database or a directory, for AsyncPasswordValidator. It is called off the
+ * caller's thread, so it may block, and from many threads at once, so it must
+ * be thread safe.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+public interface PasswordHistoryProvider {
+
+    /**
+     * The user's previous passwords.
+     *
+     * @param userId
+     * @return the history, or null if the user has none
+     * @throws IOException if it couldn't be fetched
+     */
+    PasswordHistory getHistory(String userId) throws IOException;
+}
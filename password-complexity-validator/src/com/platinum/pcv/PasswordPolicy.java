@@ -0,0 +1,584 @@
+package com.platinum.pcv;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * PasswordPolicy holds the complexity requirements a password is validated
+ * against. A policy is immutable once built, so a single instance can be
+ * shared between any number of threads and validators.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+public final class PasswordPolicy {
+
+    /**
+     * The out of the box requirements.
+     */
+    public static final PasswordPolicy DEFAULT = new Builder().build();
+
+    private final int minPasswordLength;
+    private final int maxPasswordLength;
+    private final int minLowerAlphaChars;
+    private final int minUpperAlphaChars;
+    private final int minSpecialChars;
+    private final int minNumericalChars;
+    private final boolean allowExtendedAsciiSymbols;
+    private final int lastPasswordDifferInChars;
+    private final int passwordHistoryLen;
+    private final int similarHistoryLen;
+    private final boolean restrictedByDictionary;
+    private final boolean allowPhoneNumbers;
+    private final boolean allowDates;
+    private final float dictionaryAccuracy;
+    private final int dictionaryMinWordLength;
+    private final DictionarySource dictionarySource;
+    private final BreachedPasswordIndex breachedPasswordIndex;
+    private final double minEntropyBits;
+    private final StrengthEstimator strengthEstimator;
+    private final ValidationMetrics metrics;
+    private final ResultCache resultCache;
+    private final List<Rule> rules;
+
+    private PasswordPolicy(Builder builder) {
+        minPasswordLength = builder.minPasswordLength;
+        maxPasswordLength = builder.maxPasswordLength;
+        minLowerAlphaChars = builder.minLowerAlphaChars;
+        minUpperAlphaChars = builder.minUpperAlphaChars;
+        minSpecialChars = builder.minSpecialChars;
+        minNumericalChars = builder.minNumericalChars;
+        allowExtendedAsciiSymbols = builder.allowExtendedAsciiSymbols;
+        lastPasswordDifferInChars = builder.lastPasswordDifferInChars;
+        passwordHistoryLen = builder.passwordHistoryLen;
+        similarHistoryLen = builder.similarHistoryLen;
+        restrictedByDictionary = builder.restrictedByDictionary;
+        allowPhoneNumbers = builder.allowPhoneNumbers;
+        allowDates = builder.allowDates;
+        dictionaryAccuracy = builder.dictionaryAccuracy;
+        dictionaryMinWordLength = builder.dictionaryMinWordLength;
+        dictionarySource = builder.dictionarySource;
+        breachedPasswordIndex = builder.breachedPasswordIndex;
+        minEntropyBits = builder.minEntropyBits;
+        strengthEstimator = builder.strengthEstimator;
+        metrics = builder.metrics;
+        resultCache = builder.resultCache;
+        rules = Collections.unmodifiableList(new ArrayList<Rule>(builder.rules));
+    }
+
+    /**
+     * Start a new policy from the default settings.
+     *
+     * @return
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Start a new policy from the settings of this one.
+     *
+     * @return
+     */
+    public Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    public int getMinPasswordLength() {
+        return minPasswordLength;
+    }
+
+    public int getMaxPasswordLength() {
+        return maxPasswordLength;
+    }
+
+    public int getMinLowerAlphaChars() {
+        return minLowerAlphaChars;
+    }
+
+    public int getMinUpperAlphaChars() {
+        return minUpperAlphaChars;
+    }
+
+    public int getMinSpecialChars() {
+        return minSpecialChars;
+    }
+
+    public int getMinNumericalChars() {
+        return minNumericalChars;
+    }
+
+    public boolean isAllowExtendedAsciiSymbols() {
+        return allowExtendedAsciiSymbols;
+    }
+
+    public int getLastPasswordDifferInChars() {
+        return lastPasswordDifferInChars;
+    }
+
+    public int getPasswordHistoryLen() {
+        return passwordHistoryLen;
+    }
+
+    /**
+     * How many old passwords, newest first, the new one must differ from by
+     * lastPasswordDifferInChars. Only the newest by default.
+     *
+     * @return
+     */
+    public int getSimilarHistoryLen() {
+        return similarHistoryLen;
+    }
+
+    public boolean isRestrictedByDictionary() {
+        return restrictedByDictionary;
+    }
+
+    public boolean isAllowPhoneNumbers() {
+        return allowPhoneNumbers;
+    }
+
+    public boolean isAllowDates() {
+        return allowDates;
+    }
+
+    public float getDictionaryAccuracy() {
+        return dictionaryAccuracy;
+    }
+
+    public int getDictionaryMinWordLength() {
+        return dictionaryMinWordLength;
+    }
+
+    /**
+     * Where the dictionary check looks for words.
+     *
+     * @return
+     */
+    public DictionarySource getDictionarySource() {
+        return dictionarySource;
+    }
+
+    /**
+     * The breach corpus to reject passwords from, or null for no breach check.
+     *
+     * @return
+     */
+    public BreachedPasswordIndex getBreachedPasswordIndex() {
+        return breachedPasswordIndex;
+    }
+
+    /**
+     * The fewest bits of entropy StrengthEstimator may find in a password,
+     * or 0 for no estimate.
+     *
+     * @return
+     */
+    public double getMinEntropyBits() {
+        return minEntropyBits;
+    }
+
+    /**
+     * The estimator the entropy is found with, or null for
+     * StrengthEstimator.getDefault.
+     *
+     * @return
+     */
+    public StrengthEstimator getStrengthEstimator() {
+        return strengthEstimator;
+    }
+
+    /**
+     * Where validators of this policy report their measurements.
+     *
+     * @return
+     */
+    public ValidationMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * The cache of results, or null if results aren't cached.
+     *
+     * @return
+     */
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * The custom rules checked alongside the built in ones.
+     *
+     * @return
+     */
+    public List<Rule> getRules() {
+        return rules;
+    }
+
+    /**
+     * Collects the settings for a PasswordPolicy. Builders are not thread
+     * safe, but the policies they build are.
+     */
+    public static final class Builder {
+
+        private int minPasswordLength = 15;
+        private int maxPasswordLength = 50;
+        private int minLowerAlphaChars = 1;
+        private int minUpperAlphaChars = 1;
+        private int minSpecialChars = 1;
+        private int minNumericalChars = 1;
+        private boolean allowExtendedAsciiSymbols = false;
+        private int lastPasswordDifferInChars = 4;
+        private int passwordHistoryLen = 10;
+        private int similarHistoryLen = 1;
+        private boolean restrictedByDictionary = true;
+        private boolean allowPhoneNumbers = false;
+        private boolean allowDates = false;
+        private float dictionaryAccuracy = 17.0f;
+        private int dictionaryMinWordLength = 4;
+        private DictionarySource dictionarySource = BloomFilterDictionarySource.INSTANCE;
+        private BreachedPasswordIndex breachedPasswordIndex = null;
+        private double minEntropyBits = 0.0;
+        private StrengthEstimator strengthEstimator = null;
+        private ValidationMetrics metrics = ValidationMetrics.NONE;
+        private ResultCache resultCache = null;
+        private final List<Rule> rules = new ArrayList<Rule>();
+
+        private Builder() {
+        }
+
+        private Builder(PasswordPolicy policy) {
+            minPasswordLength = policy.minPasswordLength;
+            maxPasswordLength = policy.maxPasswordLength;
+            minLowerAlphaChars = policy.minLowerAlphaChars;
+            minUpperAlphaChars = policy.minUpperAlphaChars;
+            minSpecialChars = policy.minSpecialChars;
+            minNumericalChars = policy.minNumericalChars;
+            allowExtendedAsciiSymbols = policy.allowExtendedAsciiSymbols;
+            lastPasswordDifferInChars = policy.lastPasswordDifferInChars;
+            passwordHistoryLen = policy.passwordHistoryLen;
+            similarHistoryLen = policy.similarHistoryLen;
+            restrictedByDictionary = policy.restrictedByDictionary;
+            allowPhoneNumbers = policy.allowPhoneNumbers;
+            allowDates = policy.allowDates;
+            dictionaryAccuracy = policy.dictionaryAccuracy;
+            dictionaryMinWordLength = policy.dictionaryMinWordLength;
+            dictionarySource = policy.dictionarySource;
+            breachedPasswordIndex = policy.breachedPasswordIndex;
+            minEntropyBits = policy.minEntropyBits;
+            strengthEstimator = policy.strengthEstimator;
+            metrics = policy.metrics;
+            resultCache = policy.resultCache;
+            rules.addAll(policy.rules);
+        }
+
+        public Builder minPasswordLength(int value) {
+            minPasswordLength = value;
+            return this;
+        }
+
+        public Builder maxPasswordLength(int value) {
+            maxPasswordLength = value;
+            return this;
+        }
+
+        public Builder minLowerAlphaChars(int value) {
+            minLowerAlphaChars = value;
+            return this;
+        }
+
+        public Builder minUpperAlphaChars(int value) {
+            minUpperAlphaChars = value;
+            return this;
+        }
+
+        public Builder minSpecialChars(int value) {
+            minSpecialChars = value;
+            return this;
+        }
+
+        public Builder minNumericalChars(int value) {
+            minNumericalChars = value;
+            return this;
+        }
+
+        public Builder allowExtendedAsciiSymbols(boolean value) {
+            allowExtendedAsciiSymbols = value;
+            return this;
+        }
+
+        public Builder lastPasswordDifferInChars(int value) {
+            lastPasswordDifferInChars = value;
+            return this;
+        }
+
+        public Builder passwordHistoryLen(int value) {
+            passwordHistoryLen = value;
+            return this;
+        }
+
+        public Builder similarHistoryLen(int value) {
+            similarHistoryLen = value;
+            return this;
+        }
+
+        public Builder restrictedByDictionary(boolean value) {
+            restrictedByDictionary = value;
+            return this;
+        }
+
+        public Builder allowPhoneNumbers(boolean value) {
+            allowPhoneNumbers = value;
+            return this;
+        }
+
+        public Builder allowDates(boolean value) {
+            allowDates = value;
+            return this;
+        }
+
+        /**
+         * The bloom filter size per dictionary word. The bundled dictionary is
+         * shared by the whole JVM and only takes this setting from the first
+         * policy applied through PasswordComplexityValidator.configure.
+         *
+         * @param value
+         * @return
+         */
+        public Builder dictionaryAccuracy(float value) {
+            dictionaryAccuracy = value;
+            return this;
+        }
+
+        /**
+         * The shortest word to look for. The same caveat as the accuracy
+         * applies, it is shared by the whole JVM.
+         *
+         * @param value
+         * @return
+         */
+        public Builder dictionaryMinWordLength(int value) {
+            dictionaryMinWordLength = value;
+            return this;
+        }
+
+        /**
+         * Where to look for dictionary words, the bundled en_US bloom filter
+         * by default. With any other source the bundled dictionary is never
+         * loaded, the source decides its own minimum word length and the
+         * accuracy doesn't apply.
+         *
+         * @param value
+         * @return
+         */
+        public Builder dictionarySource(DictionarySource value) {
+            dictionarySource = value;
+            return this;
+        }
+
+        /**
+         * Reject passwords found in a breach corpus, off by default.
+         *
+         * @param value the corpus, or null for no breach check
+         * @return
+         */
+        public Builder breachedPasswordIndex(BreachedPasswordIndex value) {
+            breachedPasswordIndex = value;
+            return this;
+        }
+
+        /**
+         * Reject passwords StrengthEstimator finds fewer bits of entropy in,
+         * off by default. zxcvbn's scores start at about 10, 20, 27 and 33
+         * bits.
+         *
+         * @param value the bits, or 0 for no estimate
+         * @return
+         */
+        public Builder minEntropyBits(double value) {
+            minEntropyBits = value;
+            return this;
+        }
+
+        /**
+         * The estimator to find the entropy with, the one with the bundled
+         * word list by default.
+         *
+         * @param value the estimator, or null for StrengthEstimator.getDefault
+         * @return
+         */
+        public Builder strengthEstimator(StrengthEstimator value) {
+            strengthEstimator = value;
+            return this;
+        }
+
+        /**
+         * Report rule latencies and rejections, dictionary load times and
+         * batch throughput, ValidationMetrics.NONE by default.
+         *
+         * @param value
+         * @return
+         */
+        public Builder metrics(ValidationMetrics value) {
+            metrics = value;
+            return this;
+        }
+
+        /**
+         * Remember the results of the rules which don't use the history, off
+         * by default. See ResultCache.
+         *
+         * @param value the cache, or null for no cache
+         * @return
+         */
+        public Builder resultCache(ResultCache value) {
+            resultCache = value;
+            return this;
+        }
+
+        /**
+         * Check passwords against a custom rule as well as the built in ones.
+         * The rule is run wherever it measures cheapest and most selective,
+         * see Rule.
+         *
+         * @param rule
+         * @return
+         */
+        public Builder addRule(Rule rule) {
+            if (rule == null) {
+                throw new IllegalArgumentException("The rule cannot be null.");
+            }
+            rules.add(rule);
+            return this;
+        }
+
+        /**
+         * Apply settings from properties named after the builder's methods,
+         * for example minPasswordLength=12 or allowDates=true. Only the
+         * numbers and booleans can be set this way, the sources, estimator,
+         * metrics, cache and rules stay as they are.
+         *
+         * @param settings
+         * @return
+         * @throws IllegalArgumentException for an unknown setting or a value
+         * which doesn't parse
+         */
+        public Builder properties(Properties settings) {
+            if (settings == null) {
+                throw new IllegalArgumentException("The settings cannot be null.");
+            }
+            for (String name : settings.stringPropertyNames()) {
+                String value = settings.getProperty(name).trim();
+                switch (name) {
+                    case "minPasswordLength":
+                        minPasswordLength = intSetting(name, value);
+                        break;
+                    case "maxPasswordLength":
+                        maxPasswordLength = intSetting(name, value);
+                        break;
+                    case "minLowerAlphaChars":
+                        minLowerAlphaChars = intSetting(name, value);
+                        break;
+                    case "minUpperAlphaChars":
+                        minUpperAlphaChars = intSetting(name, value);
+                        break;
+                    case "minSpecialChars":
+                        minSpecialChars = intSetting(name, value);
+                        break;
+                    case "minNumericalChars":
+                        minNumericalChars = intSetting(name, value);
+                        break;
+                    case "allowExtendedAsciiSymbols":
+                        allowExtendedAsciiSymbols = booleanSetting(name, value);
+                        break;
+                    case "lastPasswordDifferInChars":
+                        lastPasswordDifferInChars = intSetting(name, value);
+                        break;
+                    case "passwordHistoryLen":
+                        passwordHistoryLen = intSetting(name, value);
+                        break;
+                    case "similarHistoryLen":
+                        similarHistoryLen = intSetting(name, value);
+                        break;
+                    case "restrictedByDictionary":
+                        restrictedByDictionary = booleanSetting(name, value);
+                        break;
+                    case "allowPhoneNumbers":
+                        allowPhoneNumbers = booleanSetting(name, value);
+                        break;
+                    case "allowDates":
+                        allowDates = booleanSetting(name, value);
+                        break;
+                    case "dictionaryAccuracy":
+                        dictionaryAccuracy = (float) doubleSetting(name, value);
+                        break;
+                    case "dictionaryMinWordLength":
+                        dictionaryMinWordLength = intSetting(name, value);
+                        break;
+                    case "minEntropyBits":
+                        minEntropyBits = doubleSetting(name, value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown policy setting " + name + ".");
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Build the immutable policy.
+         *
+         * @return
+         * @throws IllegalArgumentException if the settings contradict each other
+         */
+        public PasswordPolicy build() {
+            if (minPasswordLength < 0 || maxPasswordLength < minPasswordLength) {
+                throw new IllegalArgumentException("The maximum password length must be at least the minimum password length.");
+            }
+            if (dictionarySource == null) {
+                throw new IllegalArgumentException("The dictionary source cannot be null.");
+            }
+            if (passwordHistoryLen < 0) {
+                throw new IllegalArgumentException("The password history length cannot be negative.");
+            }
+            if (similarHistoryLen < 0) {
+                throw new IllegalArgumentException("The similar history length cannot be negative.");
+            }
+            if (metrics == null) {
+                throw new IllegalArgumentException("The metrics cannot be null, use ValidationMetrics.NONE.");
+            }
+            if ((minEntropyBits >= 0.0) == false) {
+                throw new IllegalArgumentException("The minimum entropy cannot be negative.");
+            }
+            return new PasswordPolicy(this);
+        }
+
+        private static int intSetting(String name, String value) {
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("The policy setting " + name + " must be a whole number, not " + value + ".");
+            }
+        }
+
+        private static double doubleSetting(String name, String value) {
+            try {
+                return Double.parseDouble(value);
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("The policy setting " + name + " must be a number, not " + value + ".");
+            }
+        }
+
+        private static boolean booleanSetting(String name, String value) {
+            if (value.equalsIgnoreCase("true") == true) {
+                return true;
+            } else if (value.equalsIgnoreCase("false") == true) {
+                return false;
+            }
+            throw new IllegalArgumentException("The policy setting " + name + " must be true or false, not " + value + ".");
+        }
+    }
+}
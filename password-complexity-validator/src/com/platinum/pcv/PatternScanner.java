@@ -0,0 +1,124 @@
+package com.platinum.pcv;
+
+/**
+ * PatternScanner finds numerical dates and phone numbers in a single pass
+ * over the password, one character at a time. It reports exactly what the
+ * regular expressions it replaces reported:
+ *
+ * <pre>
+ * .*([0-9]{1,4}[\-.\/]{1}[0-9]{1,2}[\-.\/]{1}[0-9]{1,4}).*
+ * .*([0-9]{3}[\-.]{1}[0-9]{3}[\-.]{1}[0-9]{4}).*
+ * </pre>
+ *
+ * Including the quirk that neither matches once the password holds a line
+ * terminator, since '.' does not match one.
+ *
+ * The whole scanner state is packed into an int, so scanning allocates
+ * nothing and can be folded into any other loop over the characters.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+final class PatternScanner {
+
+    /**
+     * The state before the first character.
+     */
+    static final int INITIAL = 0;
+
+    // Length of the current run of digits, capped at 4 as no segment of
+    // either pattern needs to tell 4 digits from more
+    private static final int RUN_MASK = 0x7;
+    private static final int RUN_CAP = 4;
+
+    // Inside the middle segment, after "digit separator"
+    private static final int DATE_MIDDLE = 1 << 3;
+    // Inside the middle segment, after "3+ digits separator"
+    private static final int PHONE_MIDDLE = 1 << 4;
+    // Inside the last segment, after the second separator
+    private static final int DATE_LAST = 1 << 5;
+    private static final int PHONE_LAST = 1 << 6;
+
+    // Sticky results
+    private static final int DATE_FOUND = 1 << 7;
+    private static final int PHONE_FOUND = 1 << 8;
+    private static final int LINE_TERMINATOR = 1 << 9;
+
+    private static final int FOUND_MASK = DATE_FOUND | PHONE_FOUND | LINE_TERMINATOR;
+
+    private PatternScanner() {
+    }
+
+    /**
+     * Advance the scanner by one character.
+     *
+     * @param state
+     * @param c
+     * @return the new state
+     */
+    static int next(int state, char c) {
+
+        int run = state & RUN_MASK;
+
+        if (c >= '0' && c <= '9') {
+            if (run < RUN_CAP) {
+                run++;
+            }
+            int result = (state & ~RUN_MASK) | run;
+            if ((state & DATE_LAST) != 0) {
+                result |= DATE_FOUND;
+            }
+            if ((state & PHONE_LAST) != 0 && run >= 4) {
+                result |= PHONE_FOUND;
+            }
+            return result;
+        }
+
+        int result = state & FOUND_MASK;
+
+        if (c == '-' || c == '.' || c == '/') {
+            if (run > 0) {
+                result |= DATE_MIDDLE;
+                if ((state & DATE_MIDDLE) != 0 && run <= 2) {
+                    result |= DATE_LAST;
+                }
+                // Phone numbers don't use slashes
+                if (c != '/') {
+                    if (run >= 3) {
+                        result |= PHONE_MIDDLE;
+                    }
+                    if ((state & PHONE_MIDDLE) != 0 && run == 3) {
+                        result |= PHONE_LAST;
+                    }
+                }
+            }
+        } else if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+            result |= LINE_TERMINATOR;
+        }
+
+        return result;
+    }
+
+    /**
+     * Scan a whole password.
+     *
+     * @param password
+     * @return the final state
+     */
+    static int scan(CharSequence password) {
+        int state = INITIAL;
+        for (int i = 0, len = password.length(); i < len; i++) {
+            state = next(state, password.charAt(i));
+        }
+        return state;
+    }
+
+    static boolean containsDate(int state) {
+        return (state & (DATE_FOUND | LINE_TERMINATOR)) == DATE_FOUND;
+    }
+
+    static boolean containsPhoneNumber(int state) {
+        return (state & (PHONE_FOUND | LINE_TERMINATOR)) == PHONE_FOUND;
+    }
+}
@@ -0,0 +1,259 @@
+package com.platinum.pcv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * PolicyWatcher loads a policy from a properties file and reloads it whenever
+ * the file changes, so a policy can be changed without restarting. The file
+ * holds the settings named as PasswordPolicy.Builder.properties describes,
+ * plus optionally
+ *
+ * dictionaryIndex, an index file written by DictionaryIndexBuilder to use as
+ * the dictionary source, and
+ *
+ * breachedPasswordIndex, a breached password index file,
+ *
+ * both relative to the policy file's directory. Anything the file doesn't set
+ * comes from the base policy, including the metrics and custom rules.
+ *
+ * A change is loaded on the watcher's own thread. The new validator is built,
+ * its index files opened, and a password run through every rule which needs
+ * nothing loaded. Only once that passes are any dictionaries loaded on first
+ * use loaded there, as the bundled one can't be unloaded, before the
+ * validator is swapped in whole. Validations never wait on a reload, and each one runs against
+ * either the old policy or the new one, never a mix. A file which doesn't
+ * load is logged and the current policy kept.
+ *
+ * dictionaryAccuracy and dictionaryMinWordLength aren't reloadable. They
+ * apply to the bundled dictionary, which is shared by every policy, and only
+ * through watchDefault, and only until it is loaded. A later change to them
+ * is warned about and ignored until the application restarts.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+public final class PolicyWatcher implements Closeable {
+
+    static final String DICTIONARY_INDEX = "dictionaryIndex";
+    static final String BREACHED_PASSWORD_INDEX = "breachedPasswordIndex";
+
+    // Editors often save in several writes, the change is loaded once they
+    // have been quiet this long
+    private static final long SETTLE_MILLIS = 100;
+
+    private static final String WARM_UP_PASSWORD = "Warm up the policy 1";
+
+    private final Path file;
+    private final PasswordPolicy basePolicy;
+    private final boolean configureDefault;
+    private final WatchService watchService;
+    private final Thread thread;
+    private volatile PasswordComplexityValidator validator;
+
+    private PolicyWatcher(Path file, PasswordPolicy basePolicy, boolean configureDefault) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.basePolicy = basePolicy;
+        this.configureDefault = configureDefault;
+        validator = warmUp(load(this.file, basePolicy));
+        if (configureDefault == true) {
+            PasswordComplexityValidator.configure(validator);
+        }
+
+        // The directory is watched rather than the file, so a file replaced
+        // by a rename is seen too
+        watchService = this.file.getFileSystem().newWatchService();
+        try {
+            this.file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException ex) {
+            watchService.close();
+            throw ex;
+        }
+        thread = new Thread(this::watch, "PolicyWatcher " + this.file.getFileName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Load a policy file and keep it loaded.
+     *
+     * @param file
+     * @param basePolicy the settings the file doesn't set
+     * @return
+     * @throws IOException if the file can't be read or watched
+     * @throws IllegalArgumentException if the file's settings aren't valid
+     */
+    public static PolicyWatcher watch(Path file, PasswordPolicy basePolicy) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("The file cannot be null.");
+        }
+        if (basePolicy == null) {
+            throw new IllegalArgumentException("The base policy cannot be null.");
+        }
+        return new PolicyWatcher(file, basePolicy, false);
+    }
+
+    /**
+     * Load a policy file over the default settings, and keep it loaded as the
+     * policy used by the static methods of PasswordComplexityValidator.
+     *
+     * @param file
+     * @return
+     * @throws IOException if the file can't be read or watched
+     * @throws IllegalArgumentException if the file's settings aren't valid
+     */
+    public static PolicyWatcher watchDefault(Path file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("The file cannot be null.");
+        }
+        return new PolicyWatcher(file, PasswordPolicy.DEFAULT, true);
+    }
+
+    /**
+     * Read a policy file once.
+     *
+     * @param file
+     * @param basePolicy the settings the file doesn't set
+     * @return
+     * @throws IOException if the file or an index it names can't be read
+     * @throws IllegalArgumentException if the file's settings aren't valid
+     */
+    public static PasswordPolicy load(Path file, PasswordPolicy basePolicy) throws IOException {
+
+        Properties settings = new Properties();
+        InputStream in = Files.newInputStream(file);
+        try {
+            settings.load(in);
+        } finally {
+            in.close();
+        }
+
+        PasswordPolicy.Builder builder = basePolicy.toBuilder();
+        Object dictionaryIndex = settings.remove(DICTIONARY_INDEX);
+        if (dictionaryIndex != null) {
+            builder.dictionarySource(MappedDictionaryIndex.open(resolve(file, dictionaryIndex)));
+        }
+        Object breachedPasswordIndex = settings.remove(BREACHED_PASSWORD_INDEX);
+        if (breachedPasswordIndex != null) {
+            builder.breachedPasswordIndex(BreachedPasswordIndex.open(resolve(file, breachedPasswordIndex)));
+        }
+        return builder.properties(settings).build();
+    }
+
+    /**
+     * The validator for the policy last loaded.
+     *
+     * @return
+     */
+    public PasswordComplexityValidator getValidator() {
+        return validator;
+    }
+
+    /**
+     * The policy last loaded.
+     *
+     * @return
+     */
+    public PasswordPolicy getPolicy() {
+        return validator.getPolicy();
+    }
+
+    /**
+     * Stop watching. The policy last loaded stays in use.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                boolean changed = isChanged(watchService.take());
+                WatchKey key;
+                while ((key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    changed |= isChanged(key);
+                }
+                if (changed == true) {
+                    reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ex) {
+            // Closed
+        }
+    }
+
+    private boolean isChanged(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || file.getFileName().equals(event.context())) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+
+    private void reload() {
+        try {
+            PasswordComplexityValidator newValidator = warmUp(load(file, basePolicy));
+            validator = newValidator;
+            if (configureDefault == true) {
+                PasswordComplexityValidator.configure(newValidator);
+            }
+        } catch (IOException | RuntimeException ex) {
+            // Anything a custom rule or an index throws too, so the watcher
+            // thread never dies
+            Logger.getLogger(PolicyWatcher.class.getName()).log(Level.WARNING,
+                    "Keeping the current policy, " + file + " could not be loaded.", ex);
+        }
+    }
+
+    private PasswordComplexityValidator warmUp(PasswordPolicy newPolicy) {
+        PasswordComplexityValidator newValidator = new PasswordComplexityValidator(newPolicy);
+        PasswordCandidate candidate = new PasswordCandidate(WARM_UP_PASSWORD);
+        for (Rule rule : newValidator.getRules()) {
+            if (rule.isLoaded() == true) {
+                rule.checkAll(candidate);
+            }
+        }
+
+        // The policy has passed, so its settings can apply to the bundled
+        // dictionary before it is loaded
+        if (configureDefault == true) {
+            PasswordComplexityValidator.configureDictionary(newPolicy);
+        }
+        for (Rule rule : newValidator.getRules()) {
+            if (rule.isLoaded() == false) {
+                try {
+                    rule.load();
+                } catch (IOException | RuntimeException ex) {
+
+                    // Its checks report it, and try again
+                    Logger.getLogger(PolicyWatcher.class.getName()).log(Level.SEVERE, null, ex);
+                }
+            }
+        }
+        return newValidator;
+    }
+
+    private static Path resolve(Path file, Object name) {
+        return file.toAbsolutePath().resolveSibling(name.toString().trim());
+    }
+}
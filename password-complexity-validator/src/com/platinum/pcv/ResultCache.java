@@ -0,0 +1,279 @@
+package com.platinum.pcv;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * ResultCache remembers the results of passwords already validated, so retry
+ * storms and audits full of repeated passwords don't run every rule again.
+ * Set it on a policy with PasswordPolicy.Builder.resultCache.
+ *
+ * No plaintext is kept. Each password is keyed by 128 bits of HMAC-SHA256
+ * under a random key made for the cache, which never leaves the process, so
+ * the keys can't be tested against a word list. The chars are hashed as
+ * they are, so two passwords only share a key if they are the same password.
+ * Only the results of the rules which don't read the history are cached, the
+ * history rules run on every check, so a password change retried with the
+ * user's history still hits. Each validator keys its results apart, so a
+ * cache can be shared by validators with different policies, and a reloaded
+ * policy never sees the results of the one it replaced. Results from a
+ * dictionary which couldn't be loaded aren't cached. Custom rules are
+ * assumed to give the same result for the same password, unless they say
+ * they read the history with Rule.usesHistory.
+ *
+ * A lookup costs an HMAC, around a microsecond, so the rules cheaper than
+ * that, such as the length and character classes, still run first and the
+ * passwords they reject never pay for one.
+ *
+ * The entries are held in sets of eight, a password's key picks its set, and
+ * a CLOCK hand per set picks which entry to evict, skipping those read since
+ * it last passed. The sets are locked in stripes, so threads rarely wait on
+ * each other, and nothing is allocated per entry.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+public final class ResultCache {
+
+    /**
+     * The most entries a cache can hold.
+     */
+    public static final int MAX_CAPACITY = 1 << 24;
+
+    // About what a lookup costs, mostly the HMAC. Rules estimated to cost
+    // less run before the lookup rather than being cached.
+    static final long LOOKUP_NANOS = 1000L;
+
+    // Marks a result holding every violation, rather than the first found
+    static final long COMPLETE = Long.MIN_VALUE;
+
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int KEY_BYTES = 32;
+    private static final int SCRATCH_BYTES = 256;
+
+    private static final int WAYS = 8;
+    private static final int MAX_STRIPES = 64;
+
+    // The two halves of the key and the result, which is 0 for no entry
+    private static final int ENTRY_LONGS = 3;
+
+    private final SecretKeySpec key;
+    private final ThreadLocal<Hasher> hashers;
+    private final long[] entries;
+    private final boolean[] referenced;
+    private final byte[] hands;
+    private final Object[] locks;
+    private final int setMask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * A cache holding at least the given number of results.
+     *
+     * @param capacity doubled and rounded up to a power of two, as each set
+     * fills at its own rate
+     */
+    public ResultCache(int capacity) {
+        if (capacity < 1 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("The capacity must be from 1 to " + MAX_CAPACITY + ".");
+        }
+        int sets = 1;
+        while (sets * WAYS < capacity * 2L) {
+            sets <<= 1;
+        }
+        setMask = sets - 1;
+        entries = new long[sets * WAYS * ENTRY_LONGS];
+        referenced = new boolean[sets * WAYS];
+        hands = new byte[sets];
+        locks = new Object[Math.min(sets, MAX_STRIPES)];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+
+        byte[] keyBytes = new byte[KEY_BYTES];
+        new SecureRandom().nextBytes(keyBytes);
+        key = new SecretKeySpec(keyBytes, MAC_ALGORITHM);
+        Arrays.fill(keyBytes, (byte) 0);
+        hashers = new ThreadLocal<Hasher>() {
+
+            @Override
+            protected Hasher initialValue() {
+                return new Hasher(key);
+            }
+        };
+    }
+
+    /**
+     * The most results held at once.
+     *
+     * @return
+     */
+    public int getCapacity() {
+        return referenced.length;
+    }
+
+    /**
+     * The checks answered from the cache.
+     *
+     * @return
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * The checks which had to run the rules.
+     *
+     * @return
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * The key of a password's result.
+     *
+     * @param version tells apart the validators sharing the cache
+     * @param password
+     * @return
+     */
+    long[] keyOf(long version, CharSequence password) {
+        return hashers.get().hash(version, password);
+    }
+
+    /**
+     * Look up a result.
+     *
+     * @param key
+     * @param complete whether only a result with every violation will do
+     * @return the result with COMPLETE set if it holds every violation, or 0
+     * if there is none
+     */
+    long get(long[] key, boolean complete) {
+        int set = (int) key[1] & setMask;
+        long result = 0L;
+        synchronized (locks[set & (locks.length - 1)]) {
+            for (int entry = set * WAYS, end = entry + WAYS; entry < end; entry++) {
+                int i = entry * ENTRY_LONGS;
+                if (entries[i + 2] != 0L && entries[i] == key[0] && entries[i + 1] == key[1]) {
+                    referenced[entry] = true;
+                    result = entries[i + 2];
+                    break;
+                }
+            }
+        }
+        if (complete == true && (result & COMPLETE) == 0L) {
+            result = 0L;
+        }
+        if (result != 0L) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return result;
+    }
+
+    /**
+     * Remember a result, keeping one already held if it has more violations.
+     *
+     * @param key
+     * @param result the first violation found, or every violation with
+     * COMPLETE set
+     */
+    void put(long[] key, long result) {
+        int set = (int) key[1] & setMask;
+        synchronized (locks[set & (locks.length - 1)]) {
+            int first = set * WAYS;
+            int free = -1;
+            for (int entry = first, end = first + WAYS; entry < end; entry++) {
+                int i = entry * ENTRY_LONGS;
+                if (entries[i + 2] == 0L) {
+                    free = free < 0 ? entry : free;
+                } else if (entries[i] == key[0] && entries[i + 1] == key[1]) {
+                    if ((result & COMPLETE) != 0L) {
+                        entries[i + 2] = result;
+                    }
+                    return;
+                }
+            }
+            if (free < 0) {
+                free = evict(set);
+            }
+            int i = free * ENTRY_LONGS;
+            entries[i] = key[0];
+            entries[i + 1] = key[1];
+            entries[i + 2] = result;
+            referenced[free] = false;
+        }
+    }
+
+    /**
+     * Sweep the set's hand past the entries read since it last passed,
+     * clearing their marks, to the first which wasn't.
+     */
+    private int evict(int set) {
+        int first = set * WAYS;
+        int hand = hands[set];
+        while (referenced[first + hand] == true) {
+            referenced[first + hand] = false;
+            hand = (hand + 1) & (WAYS - 1);
+        }
+        hands[set] = (byte) ((hand + 1) & (WAYS - 1));
+        return first + hand;
+    }
+
+    /**
+     * A thread's MAC, and the scratch buffer the chars are fed to it through,
+     * which is wiped after every password.
+     */
+    private static final class Hasher {
+
+        private final Mac mac;
+        private final ByteBuffer scratch = ByteBuffer.allocate(SCRATCH_BYTES);
+        private final byte[] digest;
+
+        Hasher(SecretKeySpec key) {
+            try {
+                mac = Mac.getInstance(MAC_ALGORITHM);
+                mac.init(key);
+            } catch (GeneralSecurityException ex) {
+                // Every JVM is required to support HmacSHA256
+                throw new IllegalStateException(ex);
+            }
+            digest = new byte[mac.getMacLength()];
+        }
+
+        long[] hash(long version, CharSequence password) {
+            try {
+                scratch.putLong(version);
+                for (int i = 0, passwordLen = password.length(); i < passwordLen; i++) {
+                    if (scratch.remaining() < 2) {
+                        drain();
+                    }
+                    scratch.putChar(password.charAt(i));
+                }
+                drain();
+                mac.doFinal(digest, 0);
+            } catch (GeneralSecurityException ex) {
+                throw new IllegalStateException(ex);
+            } finally {
+                Arrays.fill(scratch.array(), (byte) 0);
+                scratch.clear();
+            }
+            ByteBuffer hash = ByteBuffer.wrap(digest);
+            return new long[]{hash.getLong(), hash.getLong()};
+        }
+
+        private void drain() {
+            scratch.flip();
+            mac.update(scratch);
+            scratch.clear();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.platinum.pcv;
+
+import java.io.IOException;
+
+/**
+ * Rule is a single check in a policy's pipeline. The built in rules are
+ * compiled from the policy's settings, and custom rules can be added with
+ * PasswordPolicy.Builder.addRule. A rule is shared by every thread validating
+ * against its policy, so it must be thread safe.
+ *
+ * The pipeline runs the rules cheapest and most selective first, and keeps
+ * reordering them as it measures them, so rules must not depend on each
+ * other's order. A password which breaks several rules may therefore be
+ * reported against any of them by check, checkAll reports them all.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+public interface Rule {
+
+    /**
+     * Check the candidate's password, which is never null.
+     *
+     * @param candidate
+     * @return VALID, or the rule the password broke. Custom rules without a
+     * result of their own use REJECTED_BY_RULE.
+     */
+    ValidationResult check(PasswordCandidate candidate);
+
+    /**
+     * Check the candidate's password, reporting every violation this rule
+     * found. Rules which can only fail one way needn't override this.
+     *
+     * @param candidate
+     * @return a bit per violation, see ValidationResult.getBit
+     */
+    default long checkAll(PasswordCandidate candidate) {
+        return check(candidate).getBit();
+    }
+
+    /**
+     * A rough guess of how long the rule takes, which orders the pipeline
+     * until the rule's real cost has been measured.
+     *
+     * @return
+     */
+    default long getEstimatedNanos() {
+        return 1000L;
+    }
+
+    /**
+     * Whether the rule reads the candidate's history. A ResultCache only
+     * holds the results of the rules which don't, those which do always run.
+     *
+     * @return
+     */
+    default boolean usesHistory() {
+        return false;
+    }
+
+    /**
+     * Whether the rule can check without blocking. Rules which load something
+     * on first use, such as the bundled dictionary, aren't until it is.
+     *
+     * @return
+     */
+    default boolean isLoaded() {
+        return true;
+    }
+
+    /**
+     * Load whatever the rule would otherwise load on its first check, blocking
+     * until it has. AsyncPasswordValidator calls this off the caller's thread.
+     *
+     * @throws IOException if it couldn't be loaded, the rule's checks then
+     * report it as they would have
+     */
+    default void load() throws IOException {
+    }
+
+    /**
+     * Why the rule last failed to load what it needs, for rules which report
+     * it as DICTIONARY_UNAVAILABLE. PasswordComplexityValidator.validate
+     * throws it as the cause of its exception.
+     *
+     * @return null unless the last attempt failed
+     */
+    default Exception getLoadFailure() {
+        return null;
+    }
+
+    /**
+     * The name the rule's metrics are reported under, see ValidationMetrics.
+     * The class name unless overridden.
+     *
+     * @return
+     */
+    default String getName() {
+        String name = getClass().getSimpleName();
+        return name.isEmpty() ? getClass().getName() : name;
+    }
+}
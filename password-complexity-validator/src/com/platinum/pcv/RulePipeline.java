@@ -0,0 +1,266 @@
+package com.platinum.pcv;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * RulePipeline runs a policy's compiled rules, stopping at the first one a
+ * password breaks. The rules start out ordered by their estimated costs, and
+ * the pipeline then times a sample of the checks to learn what each rule
+ * really costs and how often it rejects. Every so often the rules are
+ * reordered by their cost per rejection, so a cheap rule which rejects often
+ * runs ahead of an expensive one which rarely does.
+ *
+ * The order is an immutable array swapped in whole, so checks never wait on a
+ * reorder, and the statistics are LongAdders, so timing the sampled checks
+ * doesn't make the threads contend.
+ *
+ * With ValidationMetrics other than NONE every rule is timed and reported,
+ * not only the sampled ones. Without, the only cost is checking which.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+final class RulePipeline {
+
+    // Time about one check in 64
+    private static final int SAMPLE_MASK = 63;
+
+    // Sampled checks between reorders
+    private static final long REORDER_INTERVAL = 4096;
+
+    // A rule which never rejects still gets an order, by its cost alone
+    private static final double MIN_REJECTION_RATE = 0.001;
+
+    private final Stage[] stages;
+    private final ValidationMetrics metrics;
+    private final boolean measured;
+    private final AtomicLong sampledChecks = new AtomicLong();
+    private volatile Stage[] order;
+
+    RulePipeline(List<Rule> rules, ValidationMetrics metrics) {
+        this.metrics = metrics;
+        measured = metrics != ValidationMetrics.NONE;
+        stages = new Stage[rules.size()];
+        for (int i = 0; i < stages.length; i++) {
+            stages[i] = new Stage(rules.get(i), i);
+        }
+        order = stages.clone();
+        Arrays.sort(order, RANK);
+    }
+
+    /**
+     * Run the rules until one rejects the candidate.
+     *
+     * @param candidate
+     * @return VALID, or the result of the first rule to reject
+     */
+    ValidationResult check(PasswordCandidate candidate) {
+        return check(candidate, 0L, Long.MAX_VALUE, Scope.ALL);
+    }
+
+    /**
+     * Run the rules in scope estimated to cost from fromNanos up to toNanos
+     * until one rejects the candidate, so a check can be split around a
+     * ResultCache.
+     *
+     * @param candidate
+     * @param fromNanos
+     * @param toNanos
+     * @param scope
+     * @return VALID, or the result of the first of those rules to reject
+     */
+    ValidationResult check(PasswordCandidate candidate, long fromNanos, long toNanos, Scope scope) {
+        Stage[] current = order;
+        boolean sampled = (ThreadLocalRandom.current().nextInt() & SAMPLE_MASK) == 0;
+        if (sampled == true || measured == true) {
+            return checkTimed(current, candidate, fromNanos, toNanos, scope, sampled);
+        }
+        for (Stage stage : current) {
+            if (stage.estimatedNanos < fromNanos || stage.estimatedNanos >= toNanos || scope.includes(stage) == false) {
+                continue;
+            }
+            ValidationResult result = stage.rule.check(candidate);
+            if (result != ValidationResult.VALID) {
+                return result;
+            }
+        }
+        return ValidationResult.VALID;
+    }
+
+    /**
+     * Run every rule, collecting all of their violations.
+     *
+     * @param candidate
+     * @return
+     */
+    long checkAll(PasswordCandidate candidate) {
+        return checkAll(candidate, Scope.ALL);
+    }
+
+    /**
+     * Run every rule in scope, collecting all of their violations.
+     *
+     * @param candidate
+     * @param scope
+     * @return
+     */
+    long checkAll(PasswordCandidate candidate, Scope scope) {
+        long violations = 0L;
+        if (measured == true) {
+            for (Stage stage : order) {
+                if (scope.includes(stage) == false) {
+                    continue;
+                }
+                long start = System.nanoTime();
+                long ruleViolations = stage.rule.checkAll(candidate);
+                metrics.ruleChecked(stage.name, System.nanoTime() - start, ValidationResult.firstOf(ruleViolations));
+                violations |= ruleViolations;
+            }
+            return violations;
+        }
+        for (Stage stage : order) {
+            if (scope.includes(stage) == true) {
+                violations |= stage.rule.checkAll(candidate);
+            }
+        }
+        return violations;
+    }
+
+    /**
+     * The rules in the order they currently run.
+     *
+     * @return
+     */
+    Rule[] getRules() {
+        Stage[] current = order;
+        Rule[] rules = new Rule[current.length];
+        for (int i = 0; i < rules.length; i++) {
+            rules[i] = current[i].rule;
+        }
+        return rules;
+    }
+
+    /**
+     * Time each rule, for the pipeline's statistics if the check was sampled
+     * and for the metrics if there are any.
+     */
+    private ValidationResult checkTimed(Stage[] current, PasswordCandidate candidate, long fromNanos, long toNanos,
+            Scope scope, boolean sampled) {
+        ValidationResult result = ValidationResult.VALID;
+        for (Stage stage : current) {
+            if (stage.estimatedNanos < fromNanos || stage.estimatedNanos >= toNanos || scope.includes(stage) == false) {
+                continue;
+            }
+            long start = System.nanoTime();
+            result = stage.rule.check(candidate);
+            long elapsed = System.nanoTime() - start;
+            if (sampled == true) {
+                stage.record(elapsed, result != ValidationResult.VALID);
+            }
+            if (measured == true) {
+                metrics.ruleChecked(stage.name, elapsed, result);
+            }
+            if (result != ValidationResult.VALID) {
+                break;
+            }
+        }
+        if (sampled == true && sampledChecks.incrementAndGet() % REORDER_INTERVAL == 0) {
+            reorder();
+        }
+        return result;
+    }
+
+    /**
+     * Fold the latest samples into each rule's statistics, halving the older
+     * ones so the order follows the traffic as it changes, and publish the
+     * new order.
+     */
+    private synchronized void reorder() {
+        for (Stage stage : stages) {
+            stage.decay();
+        }
+        Stage[] newOrder = order.clone();
+        Arrays.sort(newOrder, RANK);
+        order = newOrder;
+    }
+
+    private static final Comparator<Stage> RANK = new Comparator<Stage>() {
+
+        @Override
+        public int compare(Stage a, Stage b) {
+            int compare = Double.compare(a.rank, b.rank);
+            return compare != 0 ? compare : Integer.compare(a.index, b.index);
+        }
+    };
+
+    /**
+     * Which rules a split check runs, by whether they read the history, so
+     * the results of those which don't can be cached.
+     */
+    enum Scope {
+
+        ALL,
+        WITHOUT_HISTORY,
+        HISTORY;
+
+        boolean includes(Stage stage) {
+            return this == ALL || (this == HISTORY) == stage.usesHistory;
+        }
+    }
+
+    /**
+     * A rule and what has been measured of it.
+     */
+    private static final class Stage {
+
+        final Rule rule;
+        final String name;
+        final int index;
+        final long estimatedNanos;
+        final boolean usesHistory;
+
+        private final LongAdder recentEvaluations = new LongAdder();
+        private final LongAdder recentRejections = new LongAdder();
+        private final LongAdder recentNanos = new LongAdder();
+
+        // Only touched by reorder, under the pipeline's lock
+        private double evaluations;
+        private double rejections;
+        private double nanos;
+
+        // Read by the sort, under the same lock
+        double rank;
+
+        Stage(Rule rule, int index) {
+            this.rule = rule;
+            this.index = index;
+            name = rule.getName();
+            estimatedNanos = Math.max(0L, rule.getEstimatedNanos());
+            usesHistory = rule.usesHistory();
+            rank = estimatedNanos / MIN_REJECTION_RATE;
+        }
+
+        void record(long elapsedNanos, boolean rejected) {
+            recentEvaluations.increment();
+            recentNanos.add(elapsedNanos);
+            if (rejected == true) {
+                recentRejections.increment();
+            }
+        }
+
+        void decay() {
+            evaluations = evaluations / 2 + recentEvaluations.sumThenReset();
+            rejections = rejections / 2 + recentRejections.sumThenReset();
+            nanos = nanos / 2 + recentNanos.sumThenReset();
+            if (evaluations >= 1.0) {
+                rank = (nanos / evaluations) / Math.max(rejections / evaluations, MIN_REJECTION_RATE);
+            }
+        }
+    }
+}
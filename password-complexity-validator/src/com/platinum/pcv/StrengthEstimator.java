@@ -0,0 +1,920 @@
+package com.platinum.pcv;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+
+/**
+ * StrengthEstimator estimates how many guesses an attacker needs to find a
+ * password, after the zxcvbn estimator. The character class minimums only
+ * count kinds of characters, so "AAAAbbbb1111@@@@" satisfies them, while this
+ * looks for the patterns people actually build passwords from: dictionary
+ * words, repeats, sequences such as "abcd" or "9753", walks along the
+ * keyboard such as "qwerty" or "zaq1", and dates and years.
+ *
+ * Every pattern found is a match over a run of characters, with the guesses
+ * needed to find that run given its pattern. Characters no match covers are
+ * brute forced. The estimate is the sequence of matches covering the password
+ * needing the fewest guesses, found by dynamic programming over the password
+ * positions and the number of matches, with zxcvbn's penalty for sequences of
+ * many matches.
+ *
+ * Estimating allocates nothing. The keyboard adjacency is tabled once per
+ * JVM, the dictionaries are AhoCorasickDictionary automata run over the
+ * password in one pass, and the matches and the dynamic programming tables
+ * live in a workspace belonging to the thread, which is wiped after each
+ * password. Only the first MAX_ANALYZED_LENGTH characters are analyzed, the
+ * estimate of a longer password being that of its first
+ * MAX_ANALYZED_LENGTH characters.
+ *
+ * Estimators are immutable and thread safe.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+public final class StrengthEstimator {
+
+    /**
+     * The number of characters analyzed.
+     */
+    public static final int MAX_ANALYZED_LENGTH = 100;
+
+    /**
+     * Guesses per second against an online service which throttles logins.
+     */
+    public static final double ONLINE_THROTTLED_GUESSES_PER_SECOND = 100.0 / 3600.0;
+
+    /**
+     * Guesses per second against an online service which doesn't.
+     */
+    public static final double ONLINE_GUESSES_PER_SECOND = 10.0;
+
+    /**
+     * Guesses per second offline against a slow hash, such as bcrypt.
+     */
+    public static final double OFFLINE_SLOW_HASH_GUESSES_PER_SECOND = 1.0e4;
+
+    /**
+     * Guesses per second offline against a fast hash, such as SHA-1.
+     */
+    public static final double OFFLINE_FAST_HASH_GUESSES_PER_SECOND = 1.0e10;
+
+    // zxcvbn's constants
+    private static final double BRUTEFORCE_CARDINALITY = 10.0;
+    private static final double MIN_GUESSES_BEFORE_GROWING_SEQUENCE = 10000.0;
+    private static final double MIN_SUBMATCH_GUESSES_SINGLE_CHAR = 10.0;
+    private static final double MIN_SUBMATCH_GUESSES_MULTI_CHAR = 50.0;
+    private static final double MIN_YEAR_SPACE = 20.0;
+    private static final int MAX_SEQUENCE_DELTA = 5;
+    private static final int MAX_REPEAT_UNIT = 4;
+    private static final int DATE_MIN_YEAR = 1000;
+    private static final int DATE_MAX_YEAR = 2050;
+    private static final int REFERENCE_YEAR = Calendar.getInstance().get(Calendar.YEAR);
+
+    // A sequence of more matches than this can't beat brute forcing the
+    // whole password, its penalty alone being at least as many guesses
+    private static final int MAX_SEQUENCE_LENGTH = MAX_ANALYZED_LENGTH / 4 + 1;
+
+    private static final double[] BRUTEFORCE_GUESSES = new double[MAX_ANALYZED_LENGTH + 1];
+    private static final double[] FACTORIALS = new double[MAX_SEQUENCE_LENGTH + 1];
+    private static final double[] SEQUENCE_PENALTIES = new double[MAX_SEQUENCE_LENGTH + 1];
+
+    static {
+        for (int len = 1; len <= MAX_ANALYZED_LENGTH; len++) {
+            double minGuesses = len == 1 ? MIN_SUBMATCH_GUESSES_SINGLE_CHAR + 1 : MIN_SUBMATCH_GUESSES_MULTI_CHAR + 1;
+            BRUTEFORCE_GUESSES[len] = Math.max(Math.pow(BRUTEFORCE_CARDINALITY, len), minGuesses);
+        }
+        FACTORIALS[0] = 1.0;
+        for (int l = 1; l <= MAX_SEQUENCE_LENGTH; l++) {
+            FACTORIALS[l] = FACTORIALS[l - 1] * l;
+            SEQUENCE_PENALTIES[l] = Math.pow(MIN_GUESSES_BEFORE_GROWING_SEQUENCE, l - 1);
+        }
+    }
+
+    // The date splits zxcvbn tries on a run of digits of each length, the
+    // run being cut after each of the two offsets
+    private static final int[][][] DATE_SPLITS = {
+        {}, {}, {}, {},
+        {{1, 2}, {2, 3}},
+        {{1, 3}, {2, 3}},
+        {{1, 2}, {2, 4}, {4, 5}},
+        {{1, 3}, {2, 3}, {4, 5}, {4, 6}},
+        {{2, 4}, {4, 6}}
+    };
+
+    // A US keyboard, each key being its unshifted and shifted characters.
+    // Each row is offset by a character from the one above, so the keys sit
+    // on a slanted grid where every key has up to six neighbours.
+    private static final String[] QWERTY = {
+        "`~ 1! 2@ 3# 4$ 5% 6^ 7& 8* 9( 0) -_ =+",
+        "    qQ wW eE rR tT yY uU iI oO pP [{ ]} \\|",
+        "     aA sS dD fF gG hH jJ kK lL ;: '\"",
+        "      zZ xX cC vV bB nN mM ,< .> /?"
+    };
+    private static final int[][] DIRECTIONS = {{-1, 0}, {0, -1}, {1, -1}, {1, 0}, {0, 1}, {-1, 1}};
+
+    // For each character, the unshifted character of its key or 0 if it has
+    // none, whether it is typed with shift, and the unshifted character of
+    // the neighbour in each direction or 0
+    private static final char[] KEYS = new char[128];
+    private static final boolean[] SHIFTED = new boolean[128];
+    private static final char[] NEIGHBOURS = new char[128 * 6];
+    private static final double KEYBOARD_STARTING_POSITIONS;
+    private static final double KEYBOARD_AVERAGE_DEGREE;
+
+    static {
+        int rows = QWERTY.length;
+        int columns = 0;
+        for (String row : QWERTY) {
+            columns = Math.max(columns, row.length() / 3 + 1);
+        }
+        char[][] grid = new char[rows][columns];
+        for (int y = 0; y < rows; y++) {
+            String row = QWERTY[y];
+            for (int col = 0; col + 1 < row.length(); col++) {
+                if (row.charAt(col) == ' ' || (col > 0 && row.charAt(col - 1) != ' ')) {
+                    continue;
+                }
+                char unshifted = row.charAt(col);
+                char shifted = row.charAt(col + 1);
+                grid[y][(col - y) / 3] = unshifted;
+                KEYS[unshifted] = unshifted;
+                KEYS[shifted] = unshifted;
+                SHIFTED[shifted] = true;
+            }
+        }
+
+        int keys = 0;
+        int degrees = 0;
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < columns; x++) {
+                char key = grid[y][x];
+                if (key == 0) {
+                    continue;
+                }
+                keys++;
+                for (int d = 0; d < DIRECTIONS.length; d++) {
+                    int nx = x + DIRECTIONS[d][0];
+                    int ny = y + DIRECTIONS[d][1];
+                    if (nx >= 0 && ny >= 0 && ny < rows && nx < columns && grid[ny][nx] != 0) {
+                        NEIGHBOURS[key * 6 + d] = grid[ny][nx];
+                        degrees++;
+                    }
+                }
+            }
+        }
+        // Both characters of a key are a starting position
+        KEYBOARD_STARTING_POSITIONS = keys * 2;
+        KEYBOARD_AVERAGE_DEGREE = (double) degrees / keys;
+    }
+
+    private static final int INITIAL_MATCH_CAPACITY = 256;
+
+    private static final ThreadLocal<Workspace> WORKSPACE = new ThreadLocal<Workspace>() {
+
+        @Override
+        protected Workspace initialValue() {
+            return new Workspace();
+        }
+    };
+
+    // The name the default's load is reported under, see ValidationMetrics
+    static final String DEFAULT_NAME = "strengthEstimator";
+
+    private static volatile StrengthEstimator defaultInstance;
+
+    private final AhoCorasickDictionary[] dictionaries;
+
+    private StrengthEstimator(Builder builder) {
+        dictionaries = builder.dictionaries.toArray(new AhoCorasickDictionary[builder.dictionaries.size()]);
+    }
+
+    /**
+     * Start a new estimator.
+     *
+     * @return
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * The estimator with the word list bundled with
+     * DictionaryPasswordValidator, built the first time it is asked for.
+     *
+     * @return
+     * @throws IOException if the word list isn't on the classpath
+     */
+    public static StrengthEstimator getDefault() throws IOException {
+        StrengthEstimator estimator = defaultInstance;
+        if (estimator == null) {
+            synchronized (StrengthEstimator.class) {
+                estimator = defaultInstance;
+                if (estimator == null) {
+                    estimator = builder()
+                            .addDictionary(AhoCorasickDictionary.builder(1).addBundledDictionary().build())
+                            .build();
+                    defaultInstance = estimator;
+                }
+            }
+        }
+        return estimator;
+    }
+
+    static boolean isDefaultBuilt() {
+        return defaultInstance != null;
+    }
+
+    /**
+     * The number of guesses needed to find the password.
+     *
+     * @param password
+     * @return at least 1
+     */
+    public double estimateGuesses(CharSequence password) {
+        Workspace workspace = WORKSPACE.get();
+        int n = Math.min(password.length(), MAX_ANALYZED_LENGTH);
+        if (n == 0) {
+            return 1.0;
+        }
+        char[] chars = workspace.chars;
+        for (int i = 0; i < n; i++) {
+            chars[i] = password.charAt(i);
+        }
+        try {
+            workspace.matchCount = 0;
+            for (AhoCorasickDictionary dictionary : dictionaries) {
+                matchDictionary(workspace, n, dictionary);
+            }
+            matchRepeats(workspace, n);
+            matchSequences(workspace, n);
+            matchKeyboardWalks(workspace, n);
+            matchDates(workspace, n);
+            return mostGuessableSequence(workspace, n);
+        } finally {
+            Arrays.fill(chars, 0, n, '\0');
+            Arrays.fill(workspace.letterPositions, 0, n, 0);
+        }
+    }
+
+    /**
+     * The entropy of the password in bits, the base 2 logarithm of the
+     * guesses needed to find it.
+     *
+     * @param password
+     * @return
+     */
+    public double estimateEntropyBits(CharSequence password) {
+        return Math.log(estimateGuesses(password)) / Math.log(2.0);
+    }
+
+    /**
+     * zxcvbn's score for a number of guesses, from 0, too guessable, to 4,
+     * very unguessable.
+     *
+     * @param guesses
+     * @return
+     */
+    public static int scoreOf(double guesses) {
+        if (guesses < 1.0e3 + 5) {
+            return 0;
+        }
+        if (guesses < 1.0e6 + 5) {
+            return 1;
+        }
+        if (guesses < 1.0e8 + 5) {
+            return 2;
+        }
+        if (guesses < 1.0e10 + 5) {
+            return 3;
+        }
+        return 4;
+    }
+
+    /**
+     * The seconds needed to make a number of guesses at a rate, see the
+     * GUESSES_PER_SECOND constants.
+     *
+     * @param guesses
+     * @param guessesPerSecond
+     * @return
+     */
+    public static double secondsToCrack(double guesses, double guessesPerSecond) {
+        return guesses / guessesPerSecond;
+    }
+
+    /**
+     * Every word of every dictionary in the password, each word being one
+     * of as many guesses as its dictionary has words, times its capitalisation
+     * and leetspeak variations.
+     */
+    private static void matchDictionary(Workspace workspace, int n, AhoCorasickDictionary dictionary) {
+        char[] chars = workspace.chars;
+        int[] letterPositions = workspace.letterPositions;
+        int letters = 0;
+        int state = 0;
+        for (int i = 0; i < n; i++) {
+            if (dictionary.normalize(chars[i]) == AhoCorasickDictionary.NOT_A_LETTER) {
+                continue;
+            }
+            state = dictionary.step(state, chars[i]);
+            letterPositions[letters++] = i;
+            int word = dictionary.isWordEnd(state) == true ? state : dictionary.nextWordEnd(state);
+            while (word != 0) {
+                int start = letterPositions[letters - dictionary.prefixLength(word)];
+                // Most short words are cheaper brute forced, whatever their
+                // variations
+                if (dictionary.size() < BRUTEFORCE_GUESSES[i - start + 1]) {
+                    double guesses = dictionary.size()
+                            * uppercaseVariations(chars, start, i)
+                            * leetspeakVariations(chars, start, i, dictionary);
+                    addMatch(workspace, n, start, i, guesses);
+                }
+                word = dictionary.nextWordEnd(word);
+            }
+        }
+    }
+
+    private static double uppercaseVariations(char[] chars, int start, int end) {
+        int upper = 0;
+        int lower = 0;
+        int first = -1;
+        int last = -1;
+        for (int i = start; i <= end; i++) {
+            char c = chars[i];
+            if (Character.isUpperCase(c) == true) {
+                upper++;
+            } else if (Character.isLowerCase(c) == true) {
+                lower++;
+            } else {
+                continue;
+            }
+            if (first < 0) {
+                first = i;
+            }
+            last = i;
+        }
+        if (upper == 0) {
+            return 1.0;
+        }
+        // Capitalised, all caps, or only the last letter upper case are the
+        // commonest, so they only double the guesses
+        if (lower == 0 || (upper == 1 && (Character.isUpperCase(chars[first]) == true
+                || Character.isUpperCase(chars[last]) == true))) {
+            return 2.0;
+        }
+        return variations(upper, lower);
+    }
+
+    /**
+     * For each letter substituted, the ways of choosing which of its
+     * occurrences were.
+     */
+    private static double leetspeakVariations(char[] chars, int start, int end, AhoCorasickDictionary dictionary) {
+        double variations = 1.0;
+        for (int i = start; i <= end; i++) {
+            if (dictionary.isLeetspeak(chars[i]) == false || isSubstitutedBefore(chars, start, i, dictionary) == true) {
+                continue;
+            }
+            char letter = dictionary.normalize(chars[i]);
+            int substituted = 0;
+            int unsubstituted = 0;
+            for (int j = i; j <= end; j++) {
+                if (dictionary.normalize(chars[j]) == letter) {
+                    if (dictionary.isLeetspeak(chars[j]) == true) {
+                        substituted++;
+                    } else {
+                        unsubstituted++;
+                    }
+                }
+            }
+            variations *= unsubstituted == 0 ? 2.0 : variations(substituted, unsubstituted);
+        }
+        return variations;
+    }
+
+    private static boolean isSubstitutedBefore(char[] chars, int start, int i, AhoCorasickDictionary dictionary) {
+        char letter = dictionary.normalize(chars[i]);
+        for (int j = start; j < i; j++) {
+            if (dictionary.isLeetspeak(chars[j]) == true && dictionary.normalize(chars[j]) == letter) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The ways of choosing at least one and at most half of the characters
+     * from those of two kinds.
+     */
+    private static double variations(int some, int others) {
+        double variations = 0.0;
+        for (int i = 1, max = Math.min(some, others); i <= max; i++) {
+            variations += binomial(some + others, i);
+        }
+        return variations;
+    }
+
+    /**
+     * The longest run from each position repeating a unit of up to
+     * MAX_REPEAT_UNIT characters, such as "aaaa" or "abcabc".
+     */
+    private static void matchRepeats(Workspace workspace, int n) {
+        char[] chars = workspace.chars;
+        for (int unit = 1; unit <= MAX_REPEAT_UNIT; unit++) {
+            for (int i = 0; i + 2 * unit <= n; i++) {
+                // Only the start of a run, and only units which aren't
+                // themselves repeats, a shorter unit covers those
+                if ((i >= unit && regionMatches(chars, i - unit, i, unit) == true)
+                        || hasShorterPeriod(chars, i, unit) == true) {
+                    continue;
+                }
+                int repeats = 1;
+                while (i + (repeats + 1) * unit <= n && regionMatches(chars, i, i + repeats * unit, unit) == true) {
+                    repeats++;
+                }
+                if (repeats > 1) {
+                    addMatch(workspace, n, i, i + repeats * unit - 1, BRUTEFORCE_GUESSES[unit] * repeats);
+                }
+            }
+        }
+    }
+
+    private static boolean regionMatches(char[] chars, int first, int second, int len) {
+        for (int i = 0; i < len; i++) {
+            if (chars[first + i] != chars[second + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasShorterPeriod(char[] chars, int start, int len) {
+        for (int period = 1; period < len; period++) {
+            if (len % period == 0 && regionMatches(chars, start, start + period, len - period) == true) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Runs of characters a constant step of at most MAX_SEQUENCE_DELTA apart,
+     * such as "abcd", "9753" or "ZYX", as zxcvbn splits them.
+     */
+    private static void matchSequences(Workspace workspace, int n) {
+        char[] chars = workspace.chars;
+        if (n == 1) {
+            return;
+        }
+        int start = 0;
+        int lastDelta = chars[1] - chars[0];
+        for (int k = 2; k < n; k++) {
+            int delta = chars[k] - chars[k - 1];
+            if (delta != lastDelta) {
+                addSequence(workspace, n, start, k - 1, lastDelta);
+                start = k - 1;
+                lastDelta = delta;
+            }
+        }
+        addSequence(workspace, n, start, n - 1, lastDelta);
+    }
+
+    private static void addSequence(Workspace workspace, int n, int start, int end, int delta) {
+        int absDelta = Math.abs(delta);
+        if ((end - start > 1 || absDelta == 1) && absDelta > 0 && absDelta <= MAX_SEQUENCE_DELTA) {
+            char first = workspace.chars[start];
+            double guesses;
+            if ("aAzZ019".indexOf(first) >= 0) {
+                guesses = 4.0;
+            } else if (first >= '0' && first <= '9') {
+                guesses = 10.0;
+            } else {
+                guesses = 26.0;
+            }
+            if (delta < 0) {
+                guesses *= 2.0;
+            }
+            addMatch(workspace, n, start, end, guesses * (end - start + 1));
+        }
+    }
+
+    /**
+     * Runs of at least three neighbouring keys, as zxcvbn finds them,
+     * counting the turns taken and the characters typed with shift.
+     */
+    private static void matchKeyboardWalks(Workspace workspace, int n) {
+        char[] chars = workspace.chars;
+        int i = 0;
+        while (i < n - 1) {
+            int j = i + 1;
+            int lastDirection = -1;
+            int turns = 0;
+            int shifted = isShifted(chars[i]) == true ? 1 : 0;
+            while (j < n) {
+                int direction = directionOf(chars[j - 1], chars[j]);
+                if (direction < 0) {
+                    break;
+                }
+                if (isShifted(chars[j]) == true) {
+                    shifted++;
+                }
+                if (direction != lastDirection) {
+                    turns++;
+                    lastDirection = direction;
+                }
+                j++;
+            }
+            if (j - i > 2) {
+                addMatch(workspace, n, i, j - 1, keyboardWalkGuesses(j - i, turns, shifted));
+            }
+            i = j;
+        }
+    }
+
+    private static boolean isShifted(char c) {
+        return c < 128 && SHIFTED[c];
+    }
+
+    /**
+     * The direction from the key of one character to the key of the next,
+     * or -1 if they aren't neighbours.
+     */
+    private static int directionOf(char from, char to) {
+        if (from >= 128 || to >= 128 || KEYS[from] == 0 || KEYS[to] == 0) {
+            return -1;
+        }
+        int base = KEYS[from] * 6;
+        char key = KEYS[to];
+        for (int d = 0; d < 6; d++) {
+            if (NEIGHBOURS[base + d] == key) {
+                return d;
+            }
+        }
+        return -1;
+    }
+
+    private static double keyboardWalkGuesses(int len, int turns, int shifted) {
+        double guesses = 0.0;
+        for (int i = 2; i <= len; i++) {
+            int possibleTurns = Math.min(turns, i - 1);
+            for (int j = 1; j <= possibleTurns; j++) {
+                guesses += binomial(i - 1, j - 1) * KEYBOARD_STARTING_POSITIONS * Math.pow(KEYBOARD_AVERAGE_DEGREE, j);
+            }
+        }
+        if (shifted > 0) {
+            int unshifted = len - shifted;
+            guesses *= unshifted == 0 ? 2.0 : variations(shifted, unshifted);
+        }
+        return guesses;
+    }
+
+    /**
+     * Recent years, and dates of up to eight digits with or without a
+     * separator, such as "1987", "3/14/15" or "19870314". A date is one of as
+     * many guesses as there are days between its year and this one, at least
+     * MIN_YEAR_SPACE years' worth.
+     */
+    private static void matchDates(Workspace workspace, int n) {
+        char[] chars = workspace.chars;
+        for (int i = 0; i < n; i++) {
+            if (isDigit(chars[i]) == false) {
+                continue;
+            }
+
+            // Years from 1900 to 2039 on their own
+            if (i + 4 <= n && isDigits(chars, i, i + 4) == true) {
+                int year = parse(chars, i, i + 4);
+                if (year >= 1900 && year <= 2039) {
+                    addMatch(workspace, n, i, i + 3, yearSpace(year));
+                }
+            }
+
+            // Digits only, read every way zxcvbn reads them
+            for (int len = 4; len <= 8 && i + len <= n && isDigits(chars, i, i + len) == true; len++) {
+                int bestYear = -1;
+                for (int[] split : DATE_SPLITS[len]) {
+                    int year = yearOf(parse(chars, i, i + split[0]),
+                            parse(chars, i + split[0], i + split[1]),
+                            parse(chars, i + split[1], i + len));
+                    if (year >= 0 && (bestYear < 0
+                            || Math.abs(year - REFERENCE_YEAR) < Math.abs(bestYear - REFERENCE_YEAR))) {
+                        bestYear = year;
+                    }
+                }
+                if (bestYear >= 0) {
+                    addMatch(workspace, n, i, i + len - 1, yearSpace(bestYear) * 365.0);
+                }
+            }
+
+            // One to four digits, a separator, one or two digits, the same
+            // separator, then one to four digits
+            int firstEnd = digitsEnd(chars, i, n, 4);
+            if (firstEnd >= n || isDateSeparator(chars[firstEnd]) == false) {
+                continue;
+            }
+            char separator = chars[firstEnd];
+            int secondEnd = digitsEnd(chars, firstEnd + 1, n, 2);
+            if (secondEnd == firstEnd + 1 || secondEnd >= n || chars[secondEnd] != separator) {
+                continue;
+            }
+            int first = parse(chars, i, firstEnd);
+            int second = parse(chars, firstEnd + 1, secondEnd);
+            for (int end = secondEnd + 2; end <= secondEnd + 5 && end <= n && isDigit(chars[end - 1]) == true; end++) {
+                int year = yearOf(first, second, parse(chars, secondEnd + 1, end));
+                if (year >= 0) {
+                    addMatch(workspace, n, i, end - 1, yearSpace(year) * 365.0 * 4.0);
+                }
+            }
+        }
+    }
+
+    /**
+     * The year of a day, month and year in any of the orders zxcvbn accepts,
+     * two digit years becoming four digit ones, or -1 if they aren't a date.
+     */
+    private static int yearOf(int first, int second, int third) {
+        if (second > 31 || second <= 0) {
+            return -1;
+        }
+        if (isDatePart(first) == false || isDatePart(second) == false || isDatePart(third) == false) {
+            return -1;
+        }
+        int over12 = (first > 12 ? 1 : 0) + (second > 12 ? 1 : 0) + (third > 12 ? 1 : 0);
+        int over31 = (first > 31 ? 1 : 0) + (third > 31 ? 1 : 0);
+        int under1 = (first <= 0 ? 1 : 0) + (third <= 0 ? 1 : 0);
+        if (over31 >= 2 || over12 == 3 || under1 >= 2) {
+            return -1;
+        }
+
+        // A four digit year first or last decides the order
+        if (third >= DATE_MIN_YEAR && third <= DATE_MAX_YEAR) {
+            return isDayAndMonth(first, second) == true ? third : -1;
+        }
+        if (first >= DATE_MIN_YEAR && first <= DATE_MAX_YEAR) {
+            return isDayAndMonth(second, third) == true ? first : -1;
+        }
+        if (isDayAndMonth(first, second) == true) {
+            return twoDigitYear(third);
+        }
+        if (isDayAndMonth(second, third) == true) {
+            return twoDigitYear(first);
+        }
+        return -1;
+    }
+
+    private static boolean isDatePart(int value) {
+        return value <= 99 || (value >= DATE_MIN_YEAR && value <= DATE_MAX_YEAR);
+    }
+
+    private static boolean isDayAndMonth(int first, int second) {
+        return (first >= 1 && first <= 31 && second >= 1 && second <= 12)
+                || (second >= 1 && second <= 31 && first >= 1 && first <= 12);
+    }
+
+    private static int twoDigitYear(int year) {
+        if (year > 99) {
+            return year;
+        }
+        return year > 50 ? 1900 + year : 2000 + year;
+    }
+
+    private static double yearSpace(int year) {
+        return Math.max(Math.abs(year - REFERENCE_YEAR), MIN_YEAR_SPACE);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isDigits(char[] chars, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (isDigit(chars[i]) == false) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDateSeparator(char c) {
+        return c == ' ' || c == '/' || c == '\\' || c == '_' || c == '.' || c == '-';
+    }
+
+    /**
+     * After the run of up to max digits from start.
+     */
+    private static int digitsEnd(char[] chars, int start, int n, int max) {
+        int end = start;
+        while (end < n && end - start < max && isDigit(chars[end]) == true) {
+            end++;
+        }
+        return end;
+    }
+
+    private static int parse(char[] chars, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            value = value * 10 + (chars[i] - '0');
+        }
+        return value;
+    }
+
+    private static double binomial(int n, int k) {
+        if (k > n) {
+            return 0.0;
+        }
+        double result = 1.0;
+        for (int i = 1; i <= k; i++) {
+            result = result * (n - k + i) / i;
+        }
+        return result;
+    }
+
+    /**
+     * Keep a match, unless brute forcing its characters needs no more
+     * guesses. It could then never be part of the best sequence, as the
+     * brute forced run merging with its neighbours only needs fewer.
+     */
+    private static void addMatch(Workspace workspace, int n, int start, int end, double guesses) {
+        int len = end - start + 1;
+        if (guesses >= BRUTEFORCE_GUESSES[len]) {
+            return;
+        }
+        double minGuesses;
+        if (len == n) {
+            minGuesses = 1.0;
+        } else {
+            minGuesses = len == 1 ? MIN_SUBMATCH_GUESSES_SINGLE_CHAR : MIN_SUBMATCH_GUESSES_MULTI_CHAR;
+        }
+        int m = workspace.matchCount++;
+        if (m == workspace.matchStarts.length) {
+            workspace.grow();
+        }
+        workspace.matchStarts[m] = start;
+        workspace.matchEnds[m] = end;
+        workspace.matchGuesses[m] = Math.max(guesses, minGuesses);
+    }
+
+    /**
+     * zxcvbn's search for the sequence of matches and brute forced runs
+     * covering the password with the fewest guesses. A sequence of l parts
+     * needs l! times the product of its parts' guesses, as the parts could
+     * come in any order, plus MIN_GUESSES_BEFORE_GROWING_SEQUENCE^(l - 1)
+     * for the shorter sequences tried first. The table keeps, for each end
+     * position and l, the smallest product of l parts ending there. Brute
+     * forced runs never follow each other, one longer run covers both.
+     */
+    private static double mostGuessableSequence(Workspace workspace, int n) {
+        int maxL = Math.min(n / 4 + 1, MAX_SEQUENCE_LENGTH);
+        int stride = maxL + 1;
+        double[] products = workspace.products;
+        boolean[] bruteforced = workspace.bruteforced;
+        int[] longest = workspace.longest;
+        Arrays.fill(products, 0, n * stride, Double.POSITIVE_INFINITY);
+
+        // Bucket the matches by their end
+        int[] firstByEnd = workspace.firstByEnd;
+        int[] order = workspace.order;
+        Arrays.fill(firstByEnd, 0, n + 1, 0);
+        for (int m = 0; m < workspace.matchCount; m++) {
+            firstByEnd[workspace.matchEnds[m] + 1]++;
+        }
+        for (int k = 1; k <= n; k++) {
+            firstByEnd[k] += firstByEnd[k - 1];
+        }
+        for (int m = 0; m < workspace.matchCount; m++) {
+            order[firstByEnd[workspace.matchEnds[m]]++] = m;
+        }
+        for (int k = n; k > 0; k--) {
+            firstByEnd[k] = firstByEnd[k - 1];
+        }
+        firstByEnd[0] = 0;
+
+        for (int k = 0; k < n; k++) {
+            int row = k * stride;
+            for (int o = firstByEnd[k]; o < firstByEnd[k + 1]; o++) {
+                int m = order[o];
+                int start = workspace.matchStarts[m];
+                double guesses = workspace.matchGuesses[m];
+                if (start == 0) {
+                    extend(products, bruteforced, row + 1, guesses, false);
+                } else {
+                    int previous = (start - 1) * stride;
+                    for (int l = 1, max = Math.min(longest[start - 1], maxL - 1); l <= max; l++) {
+                        extend(products, bruteforced, row + l + 1, guesses * products[previous + l], false);
+                    }
+                }
+            }
+
+            extend(products, bruteforced, row + 1, BRUTEFORCE_GUESSES[k + 1], true);
+            for (int start = 1; start <= k; start++) {
+                double guesses = BRUTEFORCE_GUESSES[k - start + 1];
+                int previous = (start - 1) * stride;
+                for (int l = 1, max = Math.min(longest[start - 1], maxL - 1); l <= max; l++) {
+                    if (bruteforced[previous + l] == false) {
+                        extend(products, bruteforced, row + l + 1, guesses * products[previous + l], true);
+                    }
+                }
+            }
+
+            int l = maxL;
+            while (products[row + l] == Double.POSITIVE_INFINITY) {
+                l--;
+            }
+            longest[k] = l;
+        }
+
+        double best = Double.POSITIVE_INFINITY;
+        int row = (n - 1) * stride;
+        for (int l = 1; l <= maxL; l++) {
+            double product = products[row + l];
+            if (product != Double.POSITIVE_INFINITY) {
+                best = Math.min(best, FACTORIALS[l] * product + SEQUENCE_PENALTIES[l]);
+            }
+        }
+        return best;
+    }
+
+    private static void extend(double[] products, boolean[] bruteforced, int cell, double product, boolean bruteforce) {
+        if (product < products[cell]) {
+            products[cell] = product;
+            bruteforced[cell] = bruteforce;
+        }
+    }
+
+    /**
+     * A thread's scratch space. Only the match arrays grow, when a password
+     * has more matches than any before it on the thread.
+     */
+    private static final class Workspace {
+
+        final char[] chars = new char[MAX_ANALYZED_LENGTH];
+        // The position of each letter the automaton has read
+        final int[] letterPositions = new int[MAX_ANALYZED_LENGTH];
+
+        int matchCount;
+        int[] matchStarts = new int[INITIAL_MATCH_CAPACITY];
+        int[] matchEnds = new int[INITIAL_MATCH_CAPACITY];
+        double[] matchGuesses = new double[INITIAL_MATCH_CAPACITY];
+        // The matches ending at k are order[firstByEnd[k]] to order[firstByEnd[k + 1] - 1]
+        int[] order = new int[INITIAL_MATCH_CAPACITY];
+        final int[] firstByEnd = new int[MAX_ANALYZED_LENGTH + 1];
+
+        // The smallest product of l parts covering the first k + 1
+        // characters is at k * (maxL + 1) + l, and whether its last part
+        // is brute forced
+        final double[] products = new double[MAX_ANALYZED_LENGTH * (MAX_SEQUENCE_LENGTH + 1)];
+        final boolean[] bruteforced = new boolean[MAX_ANALYZED_LENGTH * (MAX_SEQUENCE_LENGTH + 1)];
+        // The most parts of any sequence covering the first k + 1 characters
+        final int[] longest = new int[MAX_ANALYZED_LENGTH];
+
+        void grow() {
+            int capacity = matchStarts.length * 2;
+            matchStarts = Arrays.copyOf(matchStarts, capacity);
+            matchEnds = Arrays.copyOf(matchEnds, capacity);
+            matchGuesses = Arrays.copyOf(matchGuesses, capacity);
+            order = new int[capacity];
+        }
+    }
+
+    /**
+     * Collects the dictionaries for a StrengthEstimator. Builders are not
+     * thread safe, but the estimators they build are.
+     */
+    public static final class Builder {
+
+        private final List<AhoCorasickDictionary> dictionaries = new ArrayList<AhoCorasickDictionary>();
+
+        private Builder() {
+        }
+
+        /**
+         * Look for the words of a dictionary, each being one of as many
+         * guesses as the dictionary has words. A short list of the commonest
+         * passwords therefore counts for far fewer guesses than a whole
+         * language's words.
+         *
+         * @param dictionary
+         * @return
+         */
+        public Builder addDictionary(AhoCorasickDictionary dictionary) {
+            if (dictionary == null) {
+                throw new IllegalArgumentException("The dictionary cannot be null.");
+            }
+            dictionaries.add(dictionary);
+            return this;
+        }
+
+        /**
+         * Build the estimator.
+         *
+         * @return
+         */
+        public StrengthEstimator build() {
+            return new StrengthEstimator(this);
+        }
+    }
+}
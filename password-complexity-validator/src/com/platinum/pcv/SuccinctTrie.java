@@ -0,0 +1,478 @@
+package com.platinum.pcv;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.TreeSet;
+
+/**
+ * SuccinctTrie is an exact match DictionarySource, so unlike the bloom filter
+ * it never rejects a password for a word that isn't there. Any number of word
+ * lists, in any language, go into the one trie, which lives off the heap in a
+ * direct buffer, or in a file mapped read only.
+ *
+ * The trie is stored as LOUDS (level order unary degree sequence) bitmaps.
+ * Edges are numbered breadth first, each with its label and three bits: the
+ * first edge of its node, a word ends here, and the edge leads to a child.
+ * The child of edge e is the node numbered by the count of child bits up to e,
+ * and that node's edges start at the matching first edge bit, found with a
+ * rank directory. That costs about 2.5 bytes per edge:
+ *
+ * <pre>
+ * int magic, int version, int minWordLength, int wordCount, int edgeCount,
+ * int nodeCount, int unused, int unused,
+ * long[words] hasChild, long[words] firstEdge, long[words] terminal,
+ * int[words + 1] hasChildRank, int[words + 1] firstEdgeRank, char[edgeCount] labels
+ * </pre>
+ *
+ * Words are folded to lower case, and only words made up entirely of letters
+ * are kept since nothing else can match the letters of a password.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+public final class SuccinctTrie implements DictionarySource {
+
+    static final int MAGIC = 0x50435654; // "PCVT"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+
+    private final ByteBuffer buffer;
+    private final int minWordLength;
+    private final int wordCount;
+    private final int edgeCount;
+    private final int nodeCount;
+    private final int bitWords;
+
+    private final int hasChildOffset;
+    private final int firstEdgeOffset;
+    private final int terminalOffset;
+    private final int hasChildRankOffset;
+    private final int firstEdgeRankOffset;
+    private final int labelsOffset;
+
+    private SuccinctTrie(ByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a dictionary trie file.");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported dictionary trie version: " + buffer.getInt(4));
+        }
+        minWordLength = buffer.getInt(8);
+        wordCount = buffer.getInt(12);
+        edgeCount = buffer.getInt(16);
+        nodeCount = buffer.getInt(20);
+        bitWords = (edgeCount + 63) >>> 6;
+
+        hasChildOffset = HEADER_SIZE;
+        firstEdgeOffset = hasChildOffset + bitWords * 8;
+        terminalOffset = firstEdgeOffset + bitWords * 8;
+        hasChildRankOffset = terminalOffset + bitWords * 8;
+        firstEdgeRankOffset = hasChildRankOffset + (bitWords + 1) * 4;
+        labelsOffset = firstEdgeRankOffset + (bitWords + 1) * 4;
+
+        if (edgeCount < 0 || buffer.capacity() != sizeOf(edgeCount)) {
+            throw new IOException("The dictionary trie file is truncated or corrupt.");
+        }
+        this.buffer = buffer;
+    }
+
+    /**
+     * Start a new trie.
+     *
+     * @param minWordLength the shortest word to keep
+     * @return
+     */
+    public static Builder builder(int minWordLength) {
+        return new Builder(minWordLength);
+    }
+
+    /**
+     * Map a trie file written by Builder.writeTo.
+     *
+     * @param file
+     * @return
+     * @throws IOException if the file can't be read or isn't a trie
+     */
+    public static SuccinctTrie open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            // The mapping stays valid once the channel is closed
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new SuccinctTrie(mapped);
+        } finally {
+            channel.close();
+        }
+    }
+
+    @Override
+    public boolean isPasswordDictionaryBased(CharSequence password) {
+        int len = password.length();
+        for (int start = 0; start < len; start++) {
+            if (Character.isLetter(password.charAt(start)) == false) {
+                continue;
+            }
+            // Walk down the trie from this start, one letter at a time
+            int node = 0;
+            for (int i = start; i < len; i++) {
+                char c = password.charAt(i);
+                if (Character.isLetter(c) == false) {
+                    continue;
+                }
+                int edge = findEdge(node, Character.toLowerCase(c));
+                if (edge < 0) {
+                    break;
+                }
+                if (bit(terminalOffset, edge)) {
+                    return true;
+                }
+                if (bit(hasChildOffset, edge) == false) {
+                    break;
+                }
+                node = rank(hasChildOffset, hasChildRankOffset, edge + 1);
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isDictionaryWord(CharSequence word) {
+        int len = word.length();
+        if (len < minWordLength) {
+            return false;
+        }
+        int node = 0;
+        for (int i = 0; i < len; i++) {
+            char c = word.charAt(i);
+            if (Character.isLetter(c) == false) {
+                return false;
+            }
+            int edge = findEdge(node, Character.toLowerCase(c));
+            if (edge < 0) {
+                return false;
+            }
+            if (i == len - 1) {
+                return bit(terminalOffset, edge);
+            }
+            if (bit(hasChildOffset, edge) == false) {
+                return false;
+            }
+            node = rank(hasChildOffset, hasChildRankOffset, edge + 1);
+        }
+        return false;
+    }
+
+    /**
+     * The shortest word the trie was built with.
+     *
+     * @return
+     */
+    public int getMinWordLength() {
+        return minWordLength;
+    }
+
+    /**
+     * The number of distinct words in the trie.
+     *
+     * @return
+     */
+    public int size() {
+        return wordCount;
+    }
+
+    /**
+     * The number of bytes the trie takes up off the heap.
+     *
+     * @return
+     */
+    public int sizeInBytes() {
+        return buffer.capacity();
+    }
+
+    /**
+     * The edge out of node labelled c, or -1. A node's edges are sorted by
+     * label and run until the next first edge bit.
+     */
+    private int findEdge(int node, char c) {
+        if (node >= nodeCount) {
+            return -1;
+        }
+        for (int edge = select(node); edge < edgeCount; edge++) {
+            char label = buffer.getChar(labelsOffset + edge * 2);
+            if (label == c) {
+                return edge;
+            }
+            if (label > c || (edge + 1 < edgeCount && bit(firstEdgeOffset, edge + 1))) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private boolean bit(int offset, int index) {
+        return (buffer.getLong(offset + (index >>> 6) * 8) & (1L << index)) != 0L;
+    }
+
+    /**
+     * The number of bits set before index.
+     */
+    private int rank(int offset, int rankOffset, int index) {
+        int word = index >>> 6;
+        int rank = buffer.getInt(rankOffset + word * 4);
+        int bits = index & 63;
+        if (bits != 0) {
+            rank += Long.bitCount(buffer.getLong(offset + word * 8) & ((1L << bits) - 1));
+        }
+        return rank;
+    }
+
+    /**
+     * The index of the first edge bit for node, that is the node'th bit set.
+     */
+    private int select(int node) {
+        // The last word whose rank is at most node holds the bit
+        int low = 0;
+        int high = bitWords - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (buffer.getInt(firstEdgeRankOffset + middle * 4) <= node) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        long bits = buffer.getLong(firstEdgeOffset + low * 8);
+        for (int skip = node - buffer.getInt(firstEdgeRankOffset + low * 4); skip > 0; skip--) {
+            bits &= bits - 1;
+        }
+        return (low << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
+    private static int sizeOf(int edgeCount) {
+        int bitWords = (edgeCount + 63) >>> 6;
+        return HEADER_SIZE + bitWords * 8 * 3 + (bitWords + 1) * 4 * 2 + edgeCount * 2;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: SuccinctTrie output.trie [minWordLength] [wordList ...]");
+            System.exit(2);
+        }
+        int minWordLength = args.length > 1 ? Integer.parseInt(args[1]) : PasswordPolicy.DEFAULT.getDictionaryMinWordLength();
+        Builder builder = builder(minWordLength);
+        if (args.length > 2) {
+            for (int i = 2; i < args.length; i++) {
+                Reader in = Files.newBufferedReader(Paths.get(args[i]), StandardCharsets.UTF_8);
+                try {
+                    builder.addWords(in);
+                } finally {
+                    in.close();
+                }
+            }
+        } else {
+            builder.addBundledDictionary();
+        }
+        builder.writeTo(Paths.get(args[0]));
+    }
+
+    /**
+     * Collects the words for a SuccinctTrie. Builders are not thread safe,
+     * but the tries they build are.
+     */
+    public static final class Builder {
+
+        private final int minWordLength;
+        private final TreeSet<String> words = new TreeSet<String>();
+
+        private Builder(int minWordLength) {
+            if (minWordLength < 1) {
+                throw new IllegalArgumentException("The minimum word length must be at least 1.");
+            }
+            this.minWordLength = minWordLength;
+        }
+
+        /**
+         * Add a word, if it is long enough and only holds letters.
+         *
+         * @param word
+         * @return
+         */
+        public Builder addWord(CharSequence word) {
+            String folded = WordLists.fold(word, minWordLength);
+            if (folded != null) {
+                words.add(folded);
+            }
+            return this;
+        }
+
+        /**
+         * Add a word list, one word per line. Hunspell style affix flags
+         * after a '/' are dropped, so .dic files can be used as they are.
+         *
+         * @param list
+         * @return
+         * @throws IOException
+         */
+        public Builder addWords(Reader list) throws IOException {
+            BufferedReader reader = new BufferedReader(list);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                addWord(WordLists.wordOf(line));
+            }
+            return this;
+        }
+
+        /**
+         * Add the word list bundled with DictionaryPasswordValidator.
+         *
+         * @return
+         * @throws IOException if it isn't on the classpath
+         */
+        public Builder addBundledDictionary() throws IOException {
+            Reader in = DictionaryIndexBuilder.openBundledDictionary();
+            try {
+                return addWords(in);
+            } finally {
+                in.close();
+            }
+        }
+
+        /**
+         * Build the trie into a direct buffer.
+         *
+         * @return
+         */
+        public SuccinctTrie build() {
+            ByteBuffer buffer = encode(true);
+            try {
+                return new SuccinctTrie(buffer);
+            } catch (IOException ex) {
+                // The buffer was just encoded, so it can't be corrupt
+                throw new IllegalStateException(ex);
+            }
+        }
+
+        /**
+         * Write the trie for SuccinctTrie.open. It is written to a temporary
+         * file first and moved into place, so a running process never maps a
+         * half written trie.
+         *
+         * @param file
+         * @throws IOException
+         */
+        public void writeTo(Path file) throws IOException {
+            ByteBuffer buffer = encode(false);
+            Path absolute = file.toAbsolutePath();
+            Path temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+            try {
+                FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE);
+                try {
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                } finally {
+                    channel.close();
+                }
+                Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+
+        private ByteBuffer encode(boolean direct) {
+            String[] sorted = words.toArray(new String[words.size()]);
+
+            StringBuilder labels = new StringBuilder();
+            BitSet hasChild = new BitSet();
+            BitSet firstEdge = new BitSet();
+            BitSet terminal = new BitSet();
+            int nodeCount = 0;
+
+            // Breadth first over the nodes, each being the range of sorted
+            // words sharing a prefix of length depth and longer than it
+            ArrayDeque<int[]> queue = new ArrayDeque<int[]>();
+            if (sorted.length > 0) {
+                queue.add(new int[]{0, sorted.length, 0});
+            }
+            while (queue.isEmpty() == false) {
+                int[] node = queue.poll();
+                int depth = node[2];
+                nodeCount++;
+                firstEdge.set(labels.length());
+                for (int i = node[0]; i < node[1];) {
+                    char c = sorted[i].charAt(depth);
+                    int end = i;
+                    while (end < node[1] && sorted[end].charAt(depth) == c) {
+                        end++;
+                    }
+                    int edge = labels.length();
+                    labels.append(c);
+                    // Sorted, so a word ending here comes first
+                    int childStart = i;
+                    if (sorted[i].length() == depth + 1) {
+                        terminal.set(edge);
+                        childStart++;
+                    }
+                    if (childStart < end) {
+                        hasChild.set(edge);
+                        queue.add(new int[]{childStart, end, depth + 1});
+                    }
+                    i = end;
+                }
+            }
+
+            int edgeCount = labels.length();
+            int bitWords = (edgeCount + 63) >>> 6;
+            int size = sizeOf(edgeCount);
+            ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putInt(minWordLength);
+            buffer.putInt(sorted.length);
+            buffer.putInt(edgeCount);
+            buffer.putInt(nodeCount);
+            buffer.putInt(0);
+            buffer.putInt(0);
+            putBits(buffer, hasChild, bitWords);
+            putBits(buffer, firstEdge, bitWords);
+            putBits(buffer, terminal, bitWords);
+            putRanks(buffer, hasChild, bitWords);
+            putRanks(buffer, firstEdge, bitWords);
+            for (int i = 0; i < edgeCount; i++) {
+                buffer.putChar(labels.charAt(i));
+            }
+            buffer.flip();
+            return buffer;
+        }
+
+        private static void putBits(ByteBuffer buffer, BitSet bits, int bitWords) {
+            long[] longs = bits.toLongArray();
+            for (int i = 0; i < bitWords; i++) {
+                buffer.putLong(i < longs.length ? longs[i] : 0L);
+            }
+        }
+
+        private static void putRanks(ByteBuffer buffer, BitSet bits, int bitWords) {
+            long[] longs = bits.toLongArray();
+            int rank = 0;
+            for (int i = 0; i <= bitWords; i++) {
+                buffer.putInt(rank);
+                if (i < longs.length) {
+                    rank += Long.bitCount(longs[i]);
+                }
+            }
+        }
+    }
+}
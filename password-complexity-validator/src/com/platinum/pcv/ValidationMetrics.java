@@ -0,0 +1,58 @@
+package com.platinum.pcv;
+
+/**
+ * ValidationMetrics receives what a validator measures of itself, for
+ * telling whether a slow validation is down to the pattern scan, the
+ * dictionary or the history without attaching a profiler. Set one on a
+ * policy with PasswordPolicy.Builder.metrics. JfrValidationMetrics records
+ * the measurements as Flight Recorder events and MeterRegistryMetrics as
+ * timers and counters.
+ *
+ * The default, NONE, costs a validator nothing: the pipeline checks once
+ * whether it has metrics and otherwise runs exactly as without them. With
+ * metrics every rule a password is checked against is timed, so each method
+ * is called from the validating threads, concurrently, and must be thread
+ * safe and quick. The methods do nothing unless overridden.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+public interface ValidationMetrics {
+
+    /**
+     * Measures nothing.
+     */
+    ValidationMetrics NONE = new ValidationMetrics() {
+    };
+
+    /**
+     * A rule was checked against a password.
+     *
+     * @param rule the rule's name, see Rule.getName
+     * @param nanos how long the rule took
+     * @param result VALID, or the rule the password broke. From checkAll, the
+     * lowest coded of the rule's violations.
+     */
+    default void ruleChecked(String rule, long nanos, ValidationResult result) {
+    }
+
+    /**
+     * A dictionary the validator loads itself was loaded, on first use.
+     *
+     * @param dictionary
+     * @param nanos how long loading took
+     */
+    default void dictionaryLoaded(String dictionary, long nanos) {
+    }
+
+    /**
+     * A batch of candidates was validated by validateAll. Streams are
+     * validated lazily, so only the batches given as a List are reported.
+     *
+     * @param candidates the number of candidates
+     * @param nanos how long the whole batch took
+     */
+    default void batchValidated(int candidates, long nanos) {
+    }
+}
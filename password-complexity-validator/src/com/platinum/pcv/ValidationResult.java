@@ -0,0 +1,176 @@
+package com.platinum.pcv;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The outcome of validating a password: VALID, or the rule it broke. Each
+ * result has a fixed code which is safe to store, the codes don't change when
+ * results are added. Codes stay below 64 so every result has a bit in the
+ * bitsets returned by checkAll.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+public enum ValidationResult {
+
+    VALID(0),
+    NULL_PASSWORD(1),
+    TOO_SHORT(2),
+    TOO_LONG(3),
+    INVALID_CHARACTER(4),
+    TOO_FEW_LOWER_ALPHA(5),
+    TOO_FEW_UPPER_ALPHA(6),
+    TOO_FEW_NUMERICAL(7),
+    TOO_FEW_SPECIAL(8),
+    CONTAINS_DATE(9),
+    CONTAINS_PHONE_NUMBER(10),
+    CONTAINS_DICTIONARY_WORD(11),
+    DICTIONARY_UNAVAILABLE(12),
+    TOO_SIMILAR_TO_LAST(13),
+    RECENTLY_USED(14),
+    HISTORY_INVALID(15),
+    BREACHED(16),
+    REJECTED_BY_RULE(17),
+    TOO_GUESSABLE(18),
+    TOO_SIMILAR_TO_RECENT(19);
+
+    private static final ValidationResult[] BY_CODE;
+
+    static {
+        int maxCode = 0;
+        for (ValidationResult result : values()) {
+            maxCode = Math.max(maxCode, result.code);
+        }
+        BY_CODE = new ValidationResult[maxCode + 1];
+        for (ValidationResult result : values()) {
+            BY_CODE[result.code] = result;
+        }
+    }
+
+    private final byte code;
+
+    private ValidationResult(int code) {
+        this.code = (byte) code;
+    }
+
+    /**
+     * The stable code for this result.
+     *
+     * @return
+     */
+    public byte getCode() {
+        return code;
+    }
+
+    /**
+     * The bit for this result in the bitsets returned by checkAll. VALID has
+     * no bit, so a valid password is 0.
+     *
+     * @return
+     */
+    public long getBit() {
+        return this == VALID ? 0L : 1L << code;
+    }
+
+    public boolean isValid() {
+        return this == VALID;
+    }
+
+    /**
+     * The message explaining this result to the user, with the limits filled
+     * in from the policy. Only built when asked for, so checking a password
+     * never pays for it.
+     *
+     * @param policy
+     * @return
+     */
+    public String getMessage(PasswordPolicy policy) {
+        switch (this) {
+            case VALID:
+                return "The password is valid.";
+            case NULL_PASSWORD:
+                return "You cannot have a null password.";
+            case TOO_SHORT:
+                return "The password must be at least " + policy.getMinPasswordLength() + " characters in length.";
+            case TOO_LONG:
+                return "The password must be at less than " + policy.getMaxPasswordLength() + " characters in length.";
+            case INVALID_CHARACTER:
+                return "Invalid password character entered.  You can use: a-z, A-Z, 0-9, Symbols";
+            case TOO_FEW_LOWER_ALPHA:
+                return "The password must contain at least " + policy.getMinLowerAlphaChars() + " lowercase alpha (a-z) characters.";
+            case TOO_FEW_UPPER_ALPHA:
+                return "The password must contain at least " + policy.getMinUpperAlphaChars() + " uppercase alpha (A-Z) characters.";
+            case TOO_FEW_NUMERICAL:
+                return "The password must contain at least " + policy.getMinNumericalChars() + " numerical (0-9) characters.";
+            case TOO_FEW_SPECIAL:
+                return "The password must contain at least " + policy.getMinSpecialChars() + " special (symbols such as: !@#) characters.";
+            case CONTAINS_DATE:
+                return "Your password cannot contain dates.";
+            case CONTAINS_PHONE_NUMBER:
+                return "Your password cannot contain phone numbers.";
+            case CONTAINS_DICTIONARY_WORD:
+                return "Your password cannot contain dictionary words.";
+            case DICTIONARY_UNAVAILABLE:
+                return "Error attempting to load up the dictionary.";
+            case TOO_SIMILAR_TO_LAST:
+                return "The password must differ by at least " + policy.getLastPasswordDifferInChars() + " characters.";
+            case RECENTLY_USED:
+                return "You may not use a password which has been used within the last " + policy.getPasswordHistoryLen() + " password changes.";
+            case HISTORY_INVALID:
+                return "Error doing Levenshtein Distance calculation.";
+            case BREACHED:
+                return "Your password has appeared in a known data breach.";
+            case REJECTED_BY_RULE:
+                return "Your password does not meet the password policy.";
+            case TOO_GUESSABLE:
+                return "Your password is too easy to guess.";
+            case TOO_SIMILAR_TO_RECENT:
+                return "The password must differ from each of your last " + policy.getSimilarHistoryLen()
+                        + " passwords by at least " + policy.getLastPasswordDifferInChars() + " characters.";
+            default:
+                throw new AssertionError(this);
+        }
+    }
+
+    /**
+     * The results in a bitset from checkAll, in code order.
+     *
+     * @param bits
+     * @return
+     */
+    public static Set<ValidationResult> fromBits(long bits) {
+        Set<ValidationResult> results = EnumSet.noneOf(ValidationResult.class);
+        while (bits != 0L) {
+            results.add(fromCode(Long.numberOfTrailingZeros(bits)));
+            bits &= bits - 1;
+        }
+        return results;
+    }
+
+    /**
+     * The lowest coded rule broken in a bitset from checkAll. Check returns
+     * whichever broken rule its pipeline ran first, which needn't be this one.
+     *
+     * @param bits
+     * @return VALID if no bits are set
+     */
+    public static ValidationResult firstOf(long bits) {
+        return bits == 0L ? VALID : fromCode(Long.numberOfTrailingZeros(bits));
+    }
+
+    /**
+     * The result for a code from getCode.
+     *
+     * @param code
+     * @return
+     * @throws IllegalArgumentException if no result has the code
+     */
+    public static ValidationResult fromCode(int code) {
+        if (code < 0 || code >= BY_CODE.length || BY_CODE[code] == null) {
+            throw new IllegalArgumentException("Unknown validation result code: " + code);
+        }
+        return BY_CODE[code];
+    }
+}
@@ -0,0 +1,310 @@
+package com.platinum.pcv;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * ValidationSession follows a password as it is typed, for live strength
+ * meters and checklists. Rather than validating the whole password again on
+ * every keystroke, the session keeps the character class counts, and the
+ * PatternScanner and dictionary automaton states after every prefix. An edit
+ * only redoes the characters from where it was made, so typing or deleting at
+ * the end costs the same however long the password is.
+ *
+ * The dictionary is only followed incrementally when the policy's source is
+ * an AhoCorasickDictionary. The history, breach, entropy, custom and other
+ * dictionary rules are checked against the whole password when the violations
+ * are asked for, once per edit.
+ *
+ * Sessions are not thread safe, each one belongs to a single form. Call clear
+ * once done with it to wipe the typed characters.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+public final class ValidationSession {
+
+    private static final int INITIAL_CAPACITY = 32;
+
+    private final List<String> oldPasswordsNewestToOldest;
+    private final PasswordHistory history;
+
+    private final BuiltInRules.LengthRule lengthRule;
+    private final BuiltInRules.CharacterRule characterRule;
+    private final AhoCorasickDictionary dictionary;
+    private final Rule[] otherRules;
+
+    private char[] chars = new char[INITIAL_CAPACITY];
+    private int length;
+
+    // The class of each character, and the number of characters in each
+    private byte[] classes = new byte[INITIAL_CAPACITY];
+    private final int[] classCounts = new int[BuiltInRules.CharacterRule.CLASS_COUNT];
+
+    // The scanner and automaton states after each prefix, index i being the
+    // state after the first i characters
+    private int[] scanStates = new int[INITIAL_CAPACITY + 1];
+    private int[] dictionaryStates = new int[INITIAL_CAPACITY + 1];
+
+    // The shortest prefix holding a dictionary word, or Integer.MAX_VALUE
+    private int firstWordEnd = Integer.MAX_VALUE;
+
+    private long otherViolations;
+    private boolean otherViolationsCurrent;
+
+    // Typed characters are passed on through this rather than as Strings
+    private final char[] typed = new char[1];
+    private final CharBuffer typedView = CharBuffer.wrap(typed);
+
+    ValidationSession(Rule[] rules, List<String> oldPasswordsNewestToOldest, PasswordHistory history) {
+        this.oldPasswordsNewestToOldest = oldPasswordsNewestToOldest;
+        this.history = history;
+
+        BuiltInRules.LengthRule lengthRule = null;
+        BuiltInRules.CharacterRule characterRule = null;
+        AhoCorasickDictionary dictionary = null;
+        List<Rule> otherRules = new ArrayList<Rule>();
+        for (Rule rule : rules) {
+            if (rule instanceof BuiltInRules.LengthRule) {
+                lengthRule = (BuiltInRules.LengthRule) rule;
+            } else if (rule instanceof BuiltInRules.CharacterRule) {
+                characterRule = (BuiltInRules.CharacterRule) rule;
+            } else if (rule instanceof BuiltInRules.DictionaryRule
+                    && ((BuiltInRules.DictionaryRule) rule).getDictionarySource() instanceof AhoCorasickDictionary) {
+                dictionary = (AhoCorasickDictionary) ((BuiltInRules.DictionaryRule) rule).getDictionarySource();
+            } else {
+                otherRules.add(rule);
+            }
+        }
+        this.lengthRule = lengthRule;
+        this.characterRule = characterRule;
+        this.dictionary = dictionary;
+        this.otherRules = otherRules.toArray(new Rule[otherRules.size()]);
+    }
+
+    /**
+     * Type characters at the end of the password.
+     *
+     * @param text
+     * @return
+     */
+    public ValidationSession append(CharSequence text) {
+        return replace(length, length, text);
+    }
+
+    /**
+     * Type a character at the end of the password.
+     *
+     * @param c
+     * @return
+     */
+    public ValidationSession append(char c) {
+        typed[0] = c;
+        replace(length, length, typedView);
+        typed[0] = '\0';
+        return this;
+    }
+
+    /**
+     * Type characters at a position within the password.
+     *
+     * @param offset
+     * @param text
+     * @return
+     */
+    public ValidationSession insert(int offset, CharSequence text) {
+        return replace(offset, offset, text);
+    }
+
+    /**
+     * Delete characters from the password.
+     *
+     * @param start the first character to delete
+     * @param end after the last character to delete
+     * @return
+     */
+    public ValidationSession delete(int start, int end) {
+        return replace(start, end, "");
+    }
+
+    /**
+     * Delete the last character, as backspace does at the end.
+     *
+     * @return
+     */
+    public ValidationSession deleteLast() {
+        if (length > 0) {
+            replace(length - 1, length, "");
+        }
+        return this;
+    }
+
+    /**
+     * Replace characters of the password, as pasting over a selection does.
+     * Costs the length of the new text plus the characters after it.
+     *
+     * @param start the first character to replace
+     * @param end after the last character to replace
+     * @param text
+     * @return
+     * @throws IndexOutOfBoundsException if the range isn't within the password
+     */
+    public ValidationSession replace(int start, int end, CharSequence text) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") is outside the password of length " + length);
+        }
+        int textLen = text.length();
+        int newLength = length - (end - start) + textLen;
+        ensureCapacity(newLength);
+
+        for (int i = start; i < end; i++) {
+            classCounts[classes[i]]--;
+        }
+        System.arraycopy(chars, end, chars, start + textLen, length - end);
+        System.arraycopy(classes, end, classes, start + textLen, length - end);
+        for (int i = 0; i < textLen; i++) {
+            char c = text.charAt(i);
+            int charClass = characterRule.classOf(c);
+            chars[start + i] = c;
+            classes[start + i] = (byte) charClass;
+            classCounts[charClass]++;
+        }
+        if (newLength < length) {
+            // The tail moved left, so wipe the copies it left behind
+            Arrays.fill(chars, newLength, length, '\0');
+        }
+        length = newLength;
+
+        // Every prefix up to the edit is unchanged
+        if (firstWordEnd > start) {
+            firstWordEnd = Integer.MAX_VALUE;
+        }
+        for (int i = start; i < length; i++) {
+            scanStates[i + 1] = PatternScanner.next(scanStates[i], chars[i]);
+            if (dictionary != null) {
+                dictionaryStates[i + 1] = dictionary.step(dictionaryStates[i], chars[i]);
+                if (firstWordEnd == Integer.MAX_VALUE && dictionary.isMatch(dictionaryStates[i + 1])) {
+                    firstWordEnd = i + 1;
+                }
+            }
+        }
+
+        otherViolationsCurrent = false;
+        return this;
+    }
+
+    /**
+     * Replace the whole password with a form field's new value. Only the
+     * characters after the prefix the values share are redone.
+     *
+     * @param value
+     * @return
+     */
+    public ValidationSession setPassword(CharSequence value) {
+        int common = 0;
+        int max = Math.min(length, value.length());
+        while (common < max && chars[common] == value.charAt(common)) {
+            common++;
+        }
+        if (common == length && common == value.length()) {
+            return this;
+        }
+        return replace(common, length, CharBuffer.wrap(value, common, value.length()));
+    }
+
+    /**
+     * The number of characters typed.
+     *
+     * @return
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * The password as typed so far.
+     *
+     * @return
+     */
+    public String getPassword() {
+        return new String(chars, 0, length);
+    }
+
+    /**
+     * Every rule the password as typed so far breaks, as checkAll would
+     * report them.
+     *
+     * @return a bit per broken rule, see ValidationResult.getBit, or 0 if the
+     * password is valid
+     */
+    public long getViolations() {
+        long violations = 0L;
+        if (lengthRule != null) {
+            violations |= lengthRule.checkLength(length).getBit();
+        }
+        violations |= characterRule.violationsOf(
+                classCounts[BuiltInRules.CharacterRule.LOWER_ALPHA],
+                classCounts[BuiltInRules.CharacterRule.UPPER_ALPHA],
+                classCounts[BuiltInRules.CharacterRule.NUMERICAL],
+                classCounts[BuiltInRules.CharacterRule.SPECIAL],
+                classCounts[BuiltInRules.CharacterRule.INVALID] > 0,
+                scanStates[length]);
+        if (firstWordEnd <= length) {
+            violations |= ValidationResult.CONTAINS_DICTIONARY_WORD.getBit();
+        }
+
+        if (otherViolationsCurrent == false) {
+            otherViolations = 0L;
+            if (otherRules.length > 0) {
+                CharBuffer password = CharBuffer.wrap(chars, 0, length);
+                PasswordCandidate candidate = history != null
+                        ? new PasswordCandidate(password, history)
+                        : new PasswordCandidate(password, oldPasswordsNewestToOldest);
+                for (Rule rule : otherRules) {
+                    otherViolations |= rule.checkAll(candidate);
+                }
+            }
+            otherViolationsCurrent = true;
+        }
+        return violations | otherViolations;
+    }
+
+    /**
+     * Whether the password as typed so far is valid.
+     *
+     * @return
+     */
+    public boolean isValid() {
+        return getViolations() == 0L;
+    }
+
+    /**
+     * Wipe the typed characters and start over.
+     */
+    public void clear() {
+        Arrays.fill(chars, '\0');
+        Arrays.fill(classes, (byte) 0);
+        Arrays.fill(classCounts, 0);
+        Arrays.fill(scanStates, 0);
+        Arrays.fill(dictionaryStates, 0);
+        length = 0;
+        firstWordEnd = Integer.MAX_VALUE;
+        otherViolations = 0L;
+        otherViolationsCurrent = false;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > chars.length) {
+            int newCapacity = Math.max(capacity, chars.length * 2);
+            char[] newChars = Arrays.copyOf(chars, newCapacity);
+            Arrays.fill(chars, '\0');
+            chars = newChars;
+            classes = Arrays.copyOf(classes, newCapacity);
+            scanStates = Arrays.copyOf(scanStates, newCapacity + 1);
+            dictionaryStates = Arrays.copyOf(dictionaryStates, newCapacity + 1);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.platinum.pcv;
+
+/**
+ * Parsing shared by the dictionary builders which accept any language.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+final class WordLists {
+
+    private WordLists() {
+    }
+
+    /**
+     * The word on a line of a word list. Hunspell style affix flags after a
+     * '/' are dropped, so .dic files can be used as they are.
+     *
+     * @param line
+     * @return
+     */
+    static String wordOf(String line) {
+        int flags = line.indexOf('/');
+        return (flags < 0 ? line : line.substring(0, flags)).trim();
+    }
+
+    /**
+     * The word folded to lower case, or null if it is too short or holds
+     * anything but letters, since it could never match a password.
+     *
+     * @param word
+     * @param minWordLength
+     * @return
+     */
+    static String fold(CharSequence word, int minWordLength) {
+        int len = word.length();
+        if (len < minWordLength) {
+            return null;
+        }
+        StringBuilder folded = new StringBuilder(len);
+        for (int i = 0; i < len; i++) {
+            char c = word.charAt(i);
+            if (Character.isLetter(c) == false) {
+                return null;
+            }
+            folded.append(Character.toLowerCase(c));
+        }
+        return folded.toString();
+    }
+}
@@ -0,0 +1,113 @@
+package com.platinum.pcv.test;
+
+import com.platinum.pcv.AhoCorasickDictionary;
+import com.platinum.pcv.PasswordComplexityValidator;
+import com.platinum.pcv.PasswordPolicy;
+import com.platinum.pcv.ValidationResult;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks the Aho-Corasick dictionary against a brute force search of every
+ * substring.
+ *
+ * @author jlucier
+ */
+public class AhoCorasickDictionaryTest {
+
+    // A small alphabet so words overlap and share suffixes often
+    private static final String LETTERS = "abcde\u00e9";
+    private static final String LEETSPEAK = "@48(3";
+    private static final String LEETSPEAK_AS = "aabce";
+
+    @Test
+    public void bundledDictionaryTest() throws IOException {
+        AhoCorasickDictionary dictionary = AhoCorasickDictionary.builder(4).addBundledDictionary().build();
+        assertTrue(dictionary.size() > 40000);
+        assertTrue(dictionary.isDictionaryWord("Password"));
+        assertTrue(dictionary.isPasswordDictionaryBased("xx9pass-WORDxx"));
+        assertTrue(dictionary.isPasswordDictionaryBased("P@55w0rd"));
+        assertTrue(dictionary.isPasswordDictionaryBased("Xq7m0nk3y!!"));
+        assertFalse(dictionary.isPasswordDictionaryBased("AAAAbbbb2222^^^^"));
+
+        AhoCorasickDictionary plain = AhoCorasickDictionary.builder(4).leetspeak(false).addBundledDictionary().build();
+        assertFalse(plain.isPasswordDictionaryBased("P@55w0rd"));
+        assertTrue(plain.isPasswordDictionaryBased("Password"));
+
+        PasswordComplexityValidator validator = new PasswordComplexityValidator(PasswordPolicy.builder()
+                .dictionarySource(dictionary)
+                .build());
+        assertEquals(ValidationResult.VALID, validator.check("AAAAbbbb2222^^^^"));
+        assertEquals(ValidationResult.CONTAINS_DICTIONARY_WORD, validator.check("AAAAbbbb2222^^^^m0nk3y"));
+    }
+
+    @Test
+    public void randomWordsTest() {
+        Random random = new Random(23L);
+        Set<String> words = new HashSet<String>();
+        AhoCorasickDictionary.Builder builder = AhoCorasickDictionary.builder(3);
+        for (int i = 0; i < 2000; i++) {
+            String word = randomString(random, LETTERS, 1 + random.nextInt(7));
+            builder.addWord(word);
+            if (word.length() >= 3) {
+                words.add(word);
+            }
+        }
+        AhoCorasickDictionary dictionary = builder.build();
+        assertEquals(words.size(), dictionary.size());
+
+        String alphabet = LETTERS + LEETSPEAK + "-%";
+        for (int i = 0; i < 20000; i++) {
+            String password = randomString(random, alphabet, 1 + random.nextInt(16));
+            String letters = normalize(password);
+            assertEquals(password, containsWord(words, letters), dictionary.isPasswordDictionaryBased(password));
+            assertEquals(password, words.contains(letters) && letters.length() == password.length(),
+                    dictionary.isDictionaryWord(password));
+        }
+    }
+
+    @Test
+    public void emptyDictionaryTest() {
+        AhoCorasickDictionary dictionary = AhoCorasickDictionary.builder(4).build();
+        assertEquals(0, dictionary.size());
+        assertFalse(dictionary.isPasswordDictionaryBased("password"));
+        assertFalse(dictionary.isDictionaryWord("password"));
+    }
+
+    private static String randomString(Random random, String alphabet, int length) {
+        StringBuilder chars = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            chars.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return chars.toString();
+    }
+
+    private static String normalize(String password) {
+        StringBuilder letters = new StringBuilder();
+        for (int i = 0; i < password.length(); i++) {
+            char c = password.charAt(i);
+            int leet = LEETSPEAK.indexOf(c);
+            if (leet >= 0) {
+                letters.append(LEETSPEAK_AS.charAt(leet));
+            } else if (Character.isLetter(c)) {
+                letters.append(Character.toLowerCase(c));
+            }
+        }
+        return letters.toString();
+    }
+
+    private static boolean containsWord(Set<String> words, String letters) {
+        for (int start = 0; start < letters.length(); start++) {
+            for (int end = start + 1; end <= letters.length(); end++) {
+                if (words.contains(letters.substring(start, end))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,227 @@
+package com.platinum.pcv.test;
+
+import com.platinum.pcv.AsyncPasswordValidator;
+import com.platinum.pcv.PasswordCandidate;
+import com.platinum.pcv.PasswordComplexityValidator;
+import com.platinum.pcv.PasswordHistory;
+import com.platinum.pcv.PasswordHistoryProvider;
+import com.platinum.pcv.PasswordPolicy;
+import com.platinum.pcv.Rule;
+import com.platinum.pcv.ValidationResult;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks the async facade gives the same results as the validator, loads
+ * once however many calls wait on it, and only leaves the caller's thread
+ * for blocking work.
+ *
+ * @author jlucier
+ */
+public class AsyncPasswordValidatorTest {
+
+    private static final String GENERIC_SUCCESS_PW = "AAAAbbbb1111@@@@";
+
+    @Test
+    public void sharedLoadTest() throws Exception {
+
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger loads = new AtomicInteger();
+        final AtomicInteger checks = new AtomicInteger();
+        // The first two checks after the load only pass if they run at once
+        final CyclicBarrier together = new CyclicBarrier(2);
+        Rule slowToLoad = new Rule() {
+
+            private volatile boolean loaded;
+
+            @Override
+            public ValidationResult check(PasswordCandidate candidate) {
+                if (loaded == false) {
+                    return ValidationResult.DICTIONARY_UNAVAILABLE;
+                }
+                if (checks.getAndIncrement() < 2) {
+                    try {
+                        together.await(10, TimeUnit.SECONDS);
+                    } catch (Exception ex) {
+                        return ValidationResult.REJECTED_BY_RULE;
+                    }
+                }
+                return ValidationResult.VALID;
+            }
+
+            @Override
+            public boolean isLoaded() {
+                return loaded;
+            }
+
+            @Override
+            public void load() throws IOException {
+                loads.incrementAndGet();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    throw new IOException(ex);
+                }
+                loaded = true;
+            }
+        };
+        PasswordComplexityValidator validator = new PasswordComplexityValidator(PasswordPolicy.builder()
+                .addRule(slowToLoad)
+                .build());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            AsyncPasswordValidator async = new AsyncPasswordValidator(validator, null, executor);
+            List<CompletableFuture<ValidationResult>> waiting = new ArrayList<CompletableFuture<ValidationResult>>();
+            for (int i = 0; i < 50; i++) {
+                waiting.add(async.check(GENERIC_SUCCESS_PW + i));
+            }
+            for (CompletableFuture<ValidationResult> result : waiting) {
+                assertFalse(result.isDone());
+            }
+            release.countDown();
+            for (CompletableFuture<ValidationResult> result : waiting) {
+                assertEquals(ValidationResult.VALID, result.get());
+            }
+            assertEquals(1, loads.get());
+
+            // Loaded, so checked on the caller's thread
+            CompletableFuture<Long> violations = async.checkAll("a2b3c@!");
+            assertTrue(violations.isDone());
+            assertEquals(validator.checkAll("a2b3c@!"), violations.get().longValue());
+            assertEquals(1, loads.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void failedLoadTest() throws Exception {
+
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger loads = new AtomicInteger();
+        Rule failsToLoad = new Rule() {
+
+            @Override
+            public ValidationResult check(PasswordCandidate candidate) {
+                // As the dictionary does, a check tries the load itself
+                try {
+                    load();
+                } catch (IOException ex) {
+                    return ValidationResult.DICTIONARY_UNAVAILABLE;
+                }
+                return ValidationResult.VALID;
+            }
+
+            @Override
+            public boolean isLoaded() {
+                return false;
+            }
+
+            @Override
+            public void load() throws IOException {
+                loads.incrementAndGet();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    throw new IOException(ex);
+                }
+                throw new IOException("Words missing");
+            }
+        };
+        PasswordComplexityValidator validator = new PasswordComplexityValidator(PasswordPolicy.builder()
+                .addRule(failsToLoad)
+                .build());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            AsyncPasswordValidator async = new AsyncPasswordValidator(validator, null, executor);
+            List<CompletableFuture<ValidationResult>> waiting = new ArrayList<CompletableFuture<ValidationResult>>();
+            for (int i = 0; i < 20; i++) {
+                waiting.add(async.check(GENERIC_SUCCESS_PW + i));
+            }
+            CompletableFuture<Long> violations = async.checkAll(GENERIC_SUCCESS_PW);
+            release.countDown();
+
+            // The waiting checks share the one failed attempt
+            for (CompletableFuture<ValidationResult> result : waiting) {
+                assertEquals(ValidationResult.DICTIONARY_UNAVAILABLE, result.get());
+            }
+            assertEquals(ValidationResult.DICTIONARY_UNAVAILABLE.getBit(), violations.get().longValue());
+            assertEquals(1, loads.get());
+
+            // And the next call tries again
+            assertEquals(ValidationResult.DICTIONARY_UNAVAILABLE, async.check(GENERIC_SUCCESS_PW).get());
+            assertEquals(2, loads.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void lazyEstimatorTest() throws Exception {
+
+        // Nothing else in this class builds the default estimator
+        PasswordComplexityValidator validator = new PasswordComplexityValidator(PasswordPolicy.builder()
+                .restrictedByDictionary(false)
+                .minEntropyBits(45.0)
+                .build());
+        Rule entropy = null;
+        for (Rule rule : validator.getRules()) {
+            if (rule.getName().equals("entropy")) {
+                entropy = rule;
+            }
+        }
+        assertFalse(entropy.isLoaded());
+        AsyncPasswordValidator async = new AsyncPasswordValidator(validator);
+        assertEquals(ValidationResult.TOO_GUESSABLE, async.check(GENERIC_SUCCESS_PW).get());
+        assertTrue(entropy.isLoaded());
+        assertTrue(async.check(GENERIC_SUCCESS_PW).isDone());
+    }
+
+    @Test
+    public void historyTest() throws Exception {
+
+        final byte[] salt = {1, 2, 3, 4};
+        PasswordHistoryProvider provider = new PasswordHistoryProvider() {
+
+            @Override
+            public PasswordHistory getHistory(String userId) throws IOException {
+                switch (userId) {
+                    case "alice":
+                        return new PasswordHistory(salt, new long[]{PasswordHistory.fingerprint(salt, GENERIC_SUCCESS_PW)});
+                    case "bob":
+                        return null;
+                    default:
+                        throw new IOException("Directory down");
+                }
+            }
+        };
+        AsyncPasswordValidator async = new AsyncPasswordValidator(PasswordComplexityValidator.getDefaultInstance(),
+                provider, null);
+        assertEquals(ValidationResult.RECENTLY_USED, async.check(GENERIC_SUCCESS_PW, "alice").get());
+        assertEquals(ValidationResult.VALID, async.check(GENERIC_SUCCESS_PW, "bob").get());
+        assertEquals(0L, async.checkAll(GENERIC_SUCCESS_PW, "bob").get().longValue());
+        try {
+            async.check(GENERIC_SUCCESS_PW, "mallory").get();
+            assertTrue(false);
+        } catch (ExecutionException ex) {
+            assertEquals("Directory down", ex.getCause().getMessage());
+        }
+
+        try {
+            new AsyncPasswordValidator(PasswordComplexityValidator.getDefaultInstance()).check(GENERIC_SUCCESS_PW, "alice");
+            assertTrue(false);
+        } catch (IllegalStateException ex) {
+        }
+    }
+}
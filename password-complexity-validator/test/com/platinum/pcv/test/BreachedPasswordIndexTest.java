@@ -0,0 +1,146 @@
+package com.platinum.pcv.test;
+
+import com.platinum.pcv.BreachedPasswordIndex;
+import com.platinum.pcv.BreachedPasswordIndexBuilder;
+import com.platinum.pcv.PasswordComplexityValidator;
+import com.platinum.pcv.PasswordPolicy;
+import com.platinum.pcv.ValidationResult;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks the local breached password corpus.
+ *
+ * @author jlucier
+ */
+public class BreachedPasswordIndexTest {
+
+    private static final String BREACHED_PW = "AAAAbbbb1111@@@@";
+    private static final String SAFE_PW = "nnnnTTTT3333!&&&";
+
+    private Path dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("breached");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        File[] files = dir.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Files.delete(file.toPath());
+            }
+        }
+        Files.delete(dir);
+    }
+
+    @Test
+    public void pwnedPasswordsFormatTest() throws IOException {
+        Path file = dir.resolve("breached.idx");
+        BreachedPasswordIndexBuilder builder = new BreachedPasswordIndexBuilder(BreachedPasswordIndex.HashAlgorithm.SHA1, dir);
+        // SHA-1 of "password", twice, in the Pwned Passwords "HASH:count" format
+        builder.addHashes(new StringReader("5BAA61E4C9B93F3F0682250B6CF8331B7EE68FD8:9545824\n\n"
+                + "5baa61e4c9b93f3f0682250b6cf8331b7ee68fd8:1\n"));
+        builder.addPassword(BREACHED_PW);
+        builder.writeTo(file);
+
+        // Only the index itself is left behind
+        assertEquals(1, dir.toFile().listFiles().length);
+
+        BreachedPasswordIndex index = BreachedPasswordIndex.open(file);
+        assertEquals(2, index.size());
+        assertTrue(index.contains("password"));
+        assertTrue(index.contains(BREACHED_PW));
+        assertFalse(index.contains(SAFE_PW));
+
+        PasswordComplexityValidator validator = new PasswordComplexityValidator(PasswordPolicy.builder()
+                .breachedPasswordIndex(index)
+                .build());
+        assertEquals(ValidationResult.BREACHED, validator.check(BREACHED_PW));
+        assertEquals(ValidationResult.VALID, validator.check(SAFE_PW));
+        assertEquals(ValidationResult.BREACHED.getBit(), validator.checkAll(BREACHED_PW));
+    }
+
+    @Test
+    public void unsortedCorpusTest() throws IOException {
+        Random random = new Random(5L);
+        Set<Long> keys = new HashSet<Long>();
+        StringBuilder corpus = new StringBuilder();
+        for (int i = 0; i < 50000; i++) {
+            long key = random.nextLong();
+            keys.add(key);
+            corpus.append(String.format("%016X%08x:%d%n", key, random.nextInt(), random.nextInt(1000)));
+        }
+
+        Path file = dir.resolve("breached.idx");
+        new BreachedPasswordIndexBuilder(BreachedPasswordIndex.HashAlgorithm.SHA1, dir)
+                .addHashes(new StringReader(corpus.toString()))
+                .writeTo(file);
+        BreachedPasswordIndex index = BreachedPasswordIndex.open(file);
+
+        assertEquals(keys.size(), index.size());
+        for (long key : keys) {
+            assertTrue(index.containsKey(key));
+        }
+        for (int i = 0; i < 50000; i++) {
+            long key = random.nextLong();
+            assertEquals(keys.contains(key), index.containsKey(key));
+        }
+    }
+
+    @Test
+    public void crowdedBucketTest() throws IOException {
+        // Every key shares a prefix, and most crowd the start of the bucket,
+        // so lookups land far from where the uniform guess puts them
+        Random random = new Random(7L);
+        Set<Long> keys = new HashSet<Long>();
+        StringBuilder corpus = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            long low = i % 4 == 0 ? random.nextLong() >>> 16 : random.nextInt(1 << 20);
+            long key = 0x1234000000000000L | low;
+            keys.add(key);
+            corpus.append(String.format("%016X%08x%n", key, random.nextInt()));
+        }
+
+        Path file = dir.resolve("breached.idx");
+        new BreachedPasswordIndexBuilder(BreachedPasswordIndex.HashAlgorithm.SHA1, dir)
+                .addHashes(new StringReader(corpus.toString()))
+                .writeTo(file);
+        BreachedPasswordIndex index = BreachedPasswordIndex.open(file);
+
+        assertEquals(keys.size(), index.size());
+        for (long key : keys) {
+            assertTrue(index.containsKey(key));
+            assertEquals(keys.contains(key + 1), index.containsKey(key + 1));
+            assertEquals(keys.contains(key - 1), index.containsKey(key - 1));
+        }
+        assertFalse(index.containsKey(0x1234000000000000L - 1));
+        assertEquals(keys.contains(0x1234FFFFFFFFFFFFL), index.containsKey(0x1234FFFFFFFFFFFFL));
+    }
+
+    @Test
+    public void badCorpusTest() throws IOException {
+        BreachedPasswordIndexBuilder builder = new BreachedPasswordIndexBuilder(BreachedPasswordIndex.HashAlgorithm.SHA1, dir);
+        try {
+            builder.addHashes(new StringReader("5BAA61E4C9B93F3F0682250B6CF8331B7EE68FD8\nnot a hash\n"));
+            assertTrue(false);
+        } catch (IOException ex) {
+            assertTrue(ex.getMessage().toLowerCase().contains("line 2"));
+        } finally {
+            builder.discard();
+        }
+        assertEquals(0, dir.toFile().listFiles().length);
+    }
+}
@@ -0,0 +1,109 @@
+package com.platinum.pcv.test;
+
+import com.platinum.pcv.BreachedPasswordIndex;
+import com.platinum.pcv.PasswordComplexityValidator;
+import com.platinum.pcv.PasswordHistory;
+import com.platinum.pcv.PasswordPolicy;
+import com.platinum.pcv.ValidationResult;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks passwords given as char[], CharBuffer and UTF-8 bytes get the same
+ * results as the same passwords given as Strings.
+ *
+ * @author jlucier
+ */
+public class CharInputTest {
+
+    private static final String OLD_PW = "nnnnTTTT3333!&&&";
+    private static final String[] PASSWORDS = {"AAAAbbbb1111@@@@", "a2b3c@!", "aaaabbbb1111@@@@",
+        "AAAAbbbb1111@@@@12/27/2010", "AAAAbbbb1111@@@@111-222-3333", OLD_PW, "ttTTyYYY3333!&&&",
+        "AAAAbbbb1111@@@@\u00e4\u00df", "AAAAbbbb1111@@@@\ud83d\ude00", "AAAAbbbb1111@@@@\ud800", ""};
+
+    @Test
+    public void charArrayTest() {
+
+        byte[] salt = "salt".getBytes(StandardCharsets.UTF_8);
+        PasswordHistory history = new PasswordHistory(salt, new long[]{PasswordHistory.fingerprint(salt, OLD_PW)}, OLD_PW);
+        List<String> plainHistory = new ArrayList<String>();
+        plainHistory.add(OLD_PW);
+
+        for (PasswordComplexityValidator validator : validators()) {
+            for (String password : PASSWORDS) {
+                // Padded either side, as a password sits in a larger buffer
+                char[] chars = ("xx" + password + "yyy").toCharArray();
+                CharBuffer buffer = CharBuffer.wrap(chars, 2, password.length());
+
+                assertEquals(password, validator.check(password), validator.check(chars, 2, password.length()));
+                assertEquals(password, validator.check(password, history), validator.check(chars, 2, password.length(), history));
+                assertEquals(password, validator.check(password, plainHistory), validator.check(buffer, plainHistory));
+                assertEquals(password, validator.checkAll(password, plainHistory), validator.checkAll(buffer, plainHistory));
+            }
+        }
+        PasswordHistory hashedOnly = new PasswordHistory(salt, new long[]{PasswordHistory.fingerprint(salt, OLD_PW)});
+        assertEquals(ValidationResult.RECENTLY_USED, validators()[0].check(OLD_PW.toCharArray(), 0, OLD_PW.length(), hashedOnly));
+        assertEquals(ValidationResult.NULL_PASSWORD, validators()[0].check((char[]) null, 0, 0));
+    }
+
+    @Test
+    public void utf8Test() {
+
+        for (PasswordComplexityValidator validator : validators()) {
+            for (String password : PASSWORDS) {
+                if (password.endsWith("\ud800")) {
+                    // An unpaired surrogate has no UTF-8
+                    continue;
+                }
+                ByteBuffer utf8 = ByteBuffer.wrap(("x" + password).getBytes(StandardCharsets.UTF_8));
+                utf8.position(1);
+                assertEquals(password, validator.check(password), validator.check(utf8));
+                assertEquals(1, utf8.position());
+            }
+
+            // Overlong and truncated sequences
+            assertEquals(ValidationResult.INVALID_CHARACTER, validator.check(ByteBuffer.wrap(new byte[]{'a', (byte) 0xC0, (byte) 0xAF})));
+            assertEquals(ValidationResult.INVALID_CHARACTER, validator.check(ByteBuffer.wrap(new byte[]{'a', (byte) 0xE2, (byte) 0x82})));
+        }
+        assertEquals(ValidationResult.NULL_PASSWORD, validators()[0].check((ByteBuffer) null));
+    }
+
+    @Test
+    public void digestTest() {
+
+        // The digests must match the String's, unpaired surrogates and all
+        byte[] salt = "salt".getBytes(StandardCharsets.UTF_8);
+        StringBuilder longPassword = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            longPassword.append("\u00e4b\ud83d\ude00");
+        }
+        List<String> passwords = new ArrayList<String>();
+        for (String password : PASSWORDS) {
+            passwords.add(password);
+        }
+        passwords.add(longPassword.toString());
+
+        for (String password : passwords) {
+            CharBuffer chars = CharBuffer.wrap(password.toCharArray());
+            assertEquals(password, PasswordHistory.fingerprint(salt, password), PasswordHistory.fingerprint(salt, chars));
+            assertEquals(password, BreachedPasswordIndex.HashAlgorithm.SHA1.key(password),
+                    BreachedPasswordIndex.HashAlgorithm.SHA1.key(chars));
+            assertEquals(0, chars.position());
+        }
+    }
+
+    private static PasswordComplexityValidator[] validators() {
+        return new PasswordComplexityValidator[]{
+            PasswordComplexityValidator.getDefaultInstance(),
+            new PasswordComplexityValidator(PasswordPolicy.builder()
+            .allowExtendedAsciiSymbols(true)
+            .restrictedByDictionary(false)
+            .build())
+        };
+    }
+}
@@ -0,0 +1,95 @@
+package com.platinum.pcv.test;
+
+import com.platinum.pcv.DictionaryIndexBuilder;
+import com.platinum.pcv.MappedDictionaryIndex;
+import com.platinum.pcv.PasswordComplexityValidator;
+import com.platinum.pcv.PasswordPolicy;
+import com.platinum.pcv.ValidationResult;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks the prebuilt, memory mapped dictionary index.
+ *
+ * @author jlucier
+ */
+public class DictionaryIndexTest {
+
+    private static Path bundledIndexFile;
+    private static MappedDictionaryIndex bundledIndex;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        bundledIndexFile = Files.createTempFile("en_US", ".idx");
+        new DictionaryIndexBuilder(4).addBundledDictionary().writeTo(bundledIndexFile);
+        bundledIndex = MappedDictionaryIndex.open(bundledIndexFile);
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        Files.deleteIfExists(bundledIndexFile);
+    }
+
+    @Test
+    public void bundledDictionaryTest() {
+        assertTrue(bundledIndex.size() > 40000);
+        assertTrue(bundledIndex.isDictionaryWord("password"));
+        assertTrue(bundledIndex.isDictionaryWord("PassWord"));
+        assertFalse(bundledIndex.isDictionaryWord("qzxv"));
+
+        // Words are found anywhere in the letters, across other characters
+        assertTrue(bundledIndex.isPasswordDictionaryBased("Xx9Pass-Word!!1"));
+        assertTrue(bundledIndex.isPasswordDictionaryBased("11monkey22"));
+        assertFalse(bundledIndex.isPasswordDictionaryBased("AAAAbbbb1111@@@@"));
+        assertFalse(bundledIndex.isPasswordDictionaryBased(""));
+    }
+
+    @Test
+    public void validatorTest() {
+        PasswordComplexityValidator validator = new PasswordComplexityValidator(PasswordPolicy.builder()
+                .dictionarySource(bundledIndex)
+                .build());
+        assertEquals(ValidationResult.VALID, validator.check("AAAAbbbb1111@@@@"));
+        assertEquals(ValidationResult.CONTAINS_DICTIONARY_WORD, validator.check("AAAAbbbb1111@@@@monkey"));
+    }
+
+    @Test
+    public void wordListTest() throws IOException {
+        Path file = Files.createTempFile("words", ".idx");
+        try {
+            new DictionaryIndexBuilder(5)
+                    .addWords(new StringReader("zebra\nqwop\nfl1p\nXylophone\n"))
+                    .writeTo(file);
+            MappedDictionaryIndex index = MappedDictionaryIndex.open(file);
+            assertEquals(2, index.size());
+            assertEquals(5, index.getMinWordLength());
+            assertTrue(index.isPasswordDictionaryBased("1ZEBRA2"));
+            assertTrue(index.isPasswordDictionaryBased("@xylo#phone@"));
+            // Too short, and not only letters
+            assertFalse(index.isPasswordDictionaryBased("qwop"));
+            assertFalse(index.isPasswordDictionaryBased("fl1p"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void corruptFileTest() throws IOException {
+        Path file = Files.createTempFile("corrupt", ".idx");
+        try {
+            Files.write(file, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20, 21, 22, 23, 24});
+            MappedDictionaryIndex.open(file);
+            assertTrue(false);
+        } catch (IOException ex) {
+            assertTrue(ex.getMessage().toLowerCase().contains("not a dictionary index"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
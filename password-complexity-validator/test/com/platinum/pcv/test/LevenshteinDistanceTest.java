@@ -0,0 +1,163 @@
+package com.platinum.pcv.test;
+
+import com.platinum.pcv.PasswordComplexityException;
+import com.platinum.pcv.PasswordComplexityValidator;
+import com.platinum.pcv.PasswordPolicy;
+import com.platinum.pcv.ValidationResult;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks the "differ by N chars" rule against a plain full matrix Levenshtein
+ * Distance, for passwords short enough for the bit-parallel version and long
+ * enough for the banded one, and the same for the older passwords checked by
+ * the similar history length.
+ *
+ * @author jlucier
+ */
+public class LevenshteinDistanceTest {
+
+    private static final String ALPHABET = "abcAB1@\u00e9";
+
+    @Test
+    public void shortPasswordsTest() {
+        compareRandom(new Random(4L), 1, 64);
+    }
+
+    @Test
+    public void longPasswordsTest() {
+        compareRandom(new Random(5L), 65, 150);
+    }
+
+    @Test
+    public void lengthDifferenceTest() {
+        assertEquals(false, rejected(4, "aaaaaaaa", "aaaa"));
+        assertEquals(true, rejected(5, "aaaaaaaa", "aaaa"));
+        assertEquals(false, rejected(4, "", "abcd"));
+        assertEquals(true, rejected(5, "", "abcd"));
+    }
+
+    @Test
+    public void similarHistoryTest() {
+
+        Random random = new Random(6L);
+        for (int n = 0; n < 500; n++) {
+            String s = randomString(random, 1 + random.nextInt(n % 2 == 0 ? 64 : 150));
+            int differInChars = 1 + random.nextInt(6);
+            int similarHistoryLen = 2 + random.nextInt(30);
+            List<String> history = new ArrayList<String>();
+            boolean expected = false;
+            for (int i = 0; i < 24; i++) {
+                String old = i % 5 == 4 ? null : mutate(random, s, differInChars + random.nextInt(8));
+                history.add(old);
+                if (old != null && i > 0 && i < similarHistoryLen) {
+                    expected |= fullDistance(s, old) < differInChars;
+                }
+            }
+            PasswordComplexityValidator validator = new PasswordComplexityValidator(lenientPolicy(differInChars)
+                    .similarHistoryLen(similarHistoryLen)
+                    .build());
+            boolean rejected = ValidationResult.fromBits(validator.checkAll(s, history))
+                    .contains(ValidationResult.TOO_SIMILAR_TO_RECENT);
+            assertEquals(s + " / " + differInChars + " / " + similarHistoryLen, expected, rejected);
+        }
+
+        // Variants cycled past the newest are caught further back
+        List<String> history = Arrays.asList("Summer2024!!xQ", "Spring2024!!xQ", "Winter2023!!xQ");
+        PasswordComplexityValidator newestOnly = new PasswordComplexityValidator(lenientPolicy(4).build());
+        PasswordComplexityValidator wholeHistory = new PasswordComplexityValidator(lenientPolicy(4)
+                .similarHistoryLen(24)
+                .build());
+        assertEquals(ValidationResult.VALID, newestOnly.check("Spring2025!!xQ", history));
+        assertEquals(ValidationResult.TOO_SIMILAR_TO_RECENT, wholeHistory.check("Spring2025!!xQ", history));
+        assertEquals(ValidationResult.VALID, wholeHistory.check("Autumn2025!!xQ", history));
+    }
+
+    private void compareRandom(Random random, int minLen, int maxLen) {
+        for (int n = 0; n < 3000; n++) {
+            String s = randomString(random, minLen + random.nextInt(maxLen - minLen + 1));
+            String t = mutate(random, s, random.nextInt(8));
+            int differInChars = 1 + random.nextInt(6);
+            boolean expected = fullDistance(s, t) < differInChars;
+            assertEquals(s + " / " + t + " / " + differInChars, expected, rejected(differInChars, s, t));
+        }
+    }
+
+    private boolean rejected(int differInChars, String newPassword, String lastPassword) {
+        PasswordComplexityValidator validator = new PasswordComplexityValidator(lenientPolicy(differInChars).build());
+        ArrayList<String> history = new ArrayList<String>();
+        history.add(lastPassword);
+        try {
+            validator.validate(newPassword, history);
+            return false;
+        } catch (PasswordComplexityException ex) {
+            return true;
+        }
+    }
+
+    private PasswordPolicy.Builder lenientPolicy(int differInChars) {
+        return PasswordPolicy.builder()
+                .minPasswordLength(0)
+                .maxPasswordLength(200)
+                .minLowerAlphaChars(0)
+                .minUpperAlphaChars(0)
+                .minNumericalChars(0)
+                .minSpecialChars(0)
+                .allowExtendedAsciiSymbols(true)
+                .restrictedByDictionary(false)
+                .lastPasswordDifferInChars(differInChars);
+    }
+
+    private String randomString(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return sb.toString();
+    }
+
+    private String mutate(Random random, String s, int edits) {
+        StringBuilder sb = new StringBuilder(s);
+        for (int e = 0; e < edits; e++) {
+            int pos = sb.length() == 0 ? 0 : random.nextInt(sb.length());
+            char c = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+            switch (random.nextInt(3)) {
+                case 0:
+                    sb.insert(pos, c);
+                    break;
+                case 1:
+                    if (sb.length() > 0) {
+                        sb.deleteCharAt(pos);
+                    }
+                    break;
+                default:
+                    if (sb.length() > 0) {
+                        sb.setCharAt(pos, c);
+                    }
+                    break;
+            }
+        }
+        return sb.toString();
+    }
+
+    private int fullDistance(String s, String t) {
+        int[][] d = new int[s.length() + 1][t.length() + 1];
+        for (int i = 0; i <= s.length(); i++) {
+            d[i][0] = i;
+        }
+        for (int j = 0; j <= t.length(); j++) {
+            d[0][j] = j;
+        }
+        for (int i = 1; i <= s.length(); i++) {
+            for (int j = 1; j <= t.length(); j++) {
+                int cost = s.charAt(i - 1) == t.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1), d[i - 1][j - 1] + cost);
+            }
+        }
+        return d[s.length()][t.length()];
+    }
+}
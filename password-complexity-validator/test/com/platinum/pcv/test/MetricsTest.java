@@ -0,0 +1,163 @@
+package com.platinum.pcv.test;
+
+import com.platinum.pcv.JfrValidationMetrics;
+import com.platinum.pcv.MeterRegistryMetrics;
+import com.platinum.pcv.PasswordCandidate;
+import com.platinum.pcv.PasswordComplexityValidator;
+import com.platinum.pcv.PasswordPolicy;
+import com.platinum.pcv.ValidationMetrics;
+import com.platinum.pcv.ValidationResult;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks validators report their rules to the metrics, and the adapters pass
+ * them on.
+ *
+ * @author jlucier
+ */
+public class MetricsTest {
+
+    private static final String GENERIC_SUCCESS_PW = "AAAAbbbb1111@@@@";
+    private static final String SHORT_PW = "Ab1@";
+
+    @Test
+    public void ruleMetricsTest() {
+
+        final List<String> checks = new ArrayList<String>();
+        final AtomicLong batched = new AtomicLong();
+        PasswordComplexityValidator validator = new PasswordComplexityValidator(PasswordPolicy.builder()
+                .metrics(new ValidationMetrics() {
+
+                    @Override
+                    public synchronized void ruleChecked(String rule, long nanos, ValidationResult result) {
+                        assertTrue(nanos >= 0L);
+                        checks.add(rule + " " + result);
+                    }
+
+                    @Override
+                    public void batchValidated(int candidates, long nanos) {
+                        batched.addAndGet(candidates);
+                    }
+                })
+                .build());
+
+        // Every check of every rule, not a sample
+        for (int i = 0; i < 100; i++) {
+            validator.check(GENERIC_SUCCESS_PW);
+        }
+        assertEquals(500, checks.size());
+        Set<String> rules = new HashSet<String>(checks);
+        assertEquals(5, rules.size());
+        assertTrue(rules.contains("characters VALID"));
+        assertTrue(rules.contains("dictionary VALID"));
+
+        // Only the rule which rejected, and nothing after it
+        checks.clear();
+        assertEquals(ValidationResult.TOO_SHORT, validator.check(SHORT_PW));
+        assertEquals("length TOO_SHORT", checks.get(checks.size() - 1));
+
+        checks.clear();
+        validator.checkAll(SHORT_PW);
+        assertEquals(5, checks.size());
+        assertTrue(checks.contains("length TOO_SHORT"));
+
+        List<PasswordCandidate> candidates = new ArrayList<PasswordCandidate>();
+        for (int i = 0; i < 1000; i++) {
+            candidates.add(new PasswordCandidate(GENERIC_SUCCESS_PW));
+        }
+        validator.validateAll(candidates);
+        assertEquals(1000L, batched.get());
+
+        assertSame(ValidationMetrics.NONE, PasswordPolicy.DEFAULT.getMetrics());
+        try {
+            PasswordPolicy.builder().metrics(null).build();
+            assertTrue(false);
+        } catch (IllegalArgumentException ex) {
+        }
+    }
+
+    @Test
+    public void meterRegistryTest() {
+
+        final Map<String, AtomicLong> meters = new ConcurrentHashMap<String, AtomicLong>();
+        MeterRegistryMetrics metrics = new MeterRegistryMetrics(new MeterRegistryMetrics.Registry() {
+
+            @Override
+            public LongConsumer timer(String name, String... tags) {
+                // Counts the timings
+                final AtomicLong timer = meter(name, tags);
+                return nanos -> timer.incrementAndGet();
+            }
+
+            @Override
+            public LongConsumer counter(String name, String... tags) {
+                return meter(name, tags)::addAndGet;
+            }
+
+            private AtomicLong meter(String name, String... tags) {
+                return meters.computeIfAbsent(name + String.join(",", tags), key -> new AtomicLong());
+            }
+        });
+        PasswordComplexityValidator validator = new PasswordComplexityValidator(PasswordPolicy.builder()
+                .metrics(metrics)
+                .build());
+
+        for (int i = 0; i < 10; i++) {
+            validator.check(GENERIC_SUCCESS_PW);
+            validator.check(SHORT_PW);
+        }
+        assertEquals(20L, meters.get("pcv.rule.latencyrule,length").get());
+        assertEquals(10L, meters.get("pcv.rule.latencyrule,dictionary").get());
+        assertEquals(10L, meters.get("pcv.rule.rejectionsrule,length,result,TOO_SHORT").get());
+
+        List<PasswordCandidate> candidates = new ArrayList<PasswordCandidate>();
+        candidates.add(new PasswordCandidate(GENERIC_SUCCESS_PW));
+        candidates.add(new PasswordCandidate(SHORT_PW));
+        validator.validateAll(candidates);
+        assertEquals(1L, meters.get("pcv.batch.latency").get());
+        assertEquals(2L, meters.get("pcv.batch.candidates").get());
+    }
+
+    @Test
+    public void flightRecorderTest() throws IOException {
+
+        PasswordComplexityValidator validator = new PasswordComplexityValidator(PasswordPolicy.builder()
+                .metrics(JfrValidationMetrics.INSTANCE)
+                .build());
+        // Nothing is recorded without a recording
+        validator.check(SHORT_PW);
+
+        Path file = Files.createTempFile("pcv", ".jfr");
+        try {
+            Recording recording = new Recording();
+            recording.enable("com.platinum.pcv.RuleCheck");
+            recording.start();
+            validator.check(SHORT_PW);
+            recording.stop();
+            recording.dump(file);
+            recording.close();
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            assertEquals(1, events.size());
+            assertEquals("length", events.get(0).getString("rule"));
+            assertEquals("TOO_SHORT", events.get(0).getString("result"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
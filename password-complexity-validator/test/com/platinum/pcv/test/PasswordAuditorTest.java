@@ -0,0 +1,172 @@
+package com.platinum.pcv.test;
+
+import com.platinum.pcv.PasswordAuditor;
+import com.platinum.pcv.PasswordComplexityValidator;
+import com.platinum.pcv.PasswordPolicy;
+import com.platinum.pcv.Rule;
+import com.platinum.pcv.ValidationResult;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Assume;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks the bulk auditor counts and lists the rejects as checkAll finds
+ * them, in the order of the input.
+ *
+ * @author jlucier
+ */
+public class PasswordAuditorTest {
+
+    private static final String[] PASSWORDS = {"AAAAbbbb1111@@@@", "a2b3c@!", "aaaabbbb1111@@@@",
+        "AAAAbbbb1111@@@@12/27/2010", "AAAAbbbb1111@@@@monkey", "AAAAbbbb1111@@@@\u00e9"};
+
+    @Test
+    public void policyFileTest() throws IOException {
+
+        // The dictionary's settings only apply if it isn't loaded yet
+        Assume.assumeTrue(bundledDictionaryLoaded() == false);
+        Path dir = Files.createTempDirectory("audit");
+        Path policy = dir.resolve("policy.properties");
+        Path candidates = dir.resolve("candidates.txt");
+        Path rejects = dir.resolve("rejects.txt");
+        PrintStream out = System.out;
+        try {
+            Files.write(policy, "dictionaryMinWordLength=6\n".getBytes(StandardCharsets.ISO_8859_1));
+            Files.write(candidates, "Xq7!Zk9#Wp2$home\nXq7!Zk9#Wp2$monkey\n".getBytes(StandardCharsets.UTF_8));
+            ByteArrayOutputStream summary = new ByteArrayOutputStream();
+            System.setOut(new PrintStream(summary, true));
+            PasswordAuditor.main(new String[]{"--policy", policy.toString(), "--rejects", rejects.toString(),
+                candidates.toString()});
+
+            assertEquals("2\tCONTAINS_DICTIONARY_WORD\n", new String(Files.readAllBytes(rejects), StandardCharsets.UTF_8));
+            assertTrue(summary.toString().contains("CONTAINS_DICTIONARY_WORD\t1"));
+        } finally {
+            System.setOut(out);
+            PasswordComplexityValidator.configure(PasswordPolicy.DEFAULT);
+            Files.deleteIfExists(policy);
+            Files.deleteIfExists(candidates);
+            Files.deleteIfExists(rejects);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    @Test
+    public void auditTest() throws IOException {
+
+        PasswordComplexityValidator validator = PasswordComplexityValidator.getDefaultInstance();
+        StringBuilder input = new StringBuilder();
+        StringBuilder expectedRejects = new StringBuilder();
+        long[] expectedCounts = new long[ValidationResult.values().length];
+        int lines = 5000;
+        long rejected = 0;
+        for (int i = 0; i < lines; i++) {
+            String password = PASSWORDS[i % PASSWORDS.length] + (i % 7 == 0 ? "" : "Xx" + i);
+            input.append(password).append('\n');
+            long violations = validator.checkAll(password);
+            if (violations != 0L) {
+                rejected++;
+                expectedRejects.append(i + 1).append('\t');
+                String separator = "";
+                for (ValidationResult result : ValidationResult.fromBits(violations)) {
+                    expectedCounts[result.getCode()]++;
+                    expectedRejects.append(separator).append(result.name());
+                    separator = ",";
+                }
+                expectedRejects.append('\n');
+            }
+        }
+        // Blank lines are skipped but still counted as lines
+        input.append("\n\n");
+
+        StringWriter rejects = new StringWriter();
+        PasswordAuditor.Summary summary = new PasswordAuditor(validator, 3, false)
+                .audit(new StringReader(input.toString()), rejects);
+        assertEquals(lines, summary.getCandidates());
+        assertEquals(rejected, summary.getRejected());
+        assertEquals(lines - rejected, summary.getValid());
+        for (ValidationResult result : ValidationResult.values()) {
+            assertEquals(result.name(), expectedCounts[result.getCode()], summary.getCount(result));
+        }
+        assertEquals(expectedRejects.toString(), rejects.toString());
+        // The candidates themselves are never written out
+        assertFalse(rejects.toString().contains("monkey"));
+    }
+
+    @Test
+    public void pairsTest() throws IOException {
+
+        String input = "alice:AAAAbbbb1111@@@@\nbob:a2b3c@!\nno colon here\ncarol:AAAA:bbbb1111@@@@\n";
+        StringWriter rejects = new StringWriter();
+        PasswordAuditor.Summary summary = new PasswordAuditor(PasswordComplexityValidator.getDefaultInstance(), 1, true)
+                .audit(new StringReader(input), rejects);
+        assertEquals(3, summary.getCandidates());
+        assertEquals(1, summary.getMalformed());
+        assertEquals(1, summary.getRejected());
+        assertEquals(1, summary.getCount(ValidationResult.TOO_SHORT));
+        assertEquals("2\tbob\tTOO_SHORT,TOO_FEW_UPPER_ALPHA\n3\t\tMALFORMED\n", rejects.toString());
+    }
+
+    @Test
+    public void readFailureTest() {
+
+        try {
+            new PasswordAuditor(PasswordComplexityValidator.getDefaultInstance(), 2, false)
+                    .audit(failingReader(new IOException("Disk gone")), null);
+            assertTrue(false);
+        } catch (IOException ex) {
+            assertEquals("Disk gone", ex.getMessage());
+        }
+
+        // Failures other than a read's end the audit rather than hang it
+        try {
+            new PasswordAuditor(PasswordComplexityValidator.getDefaultInstance(), 2, false)
+                    .audit(failingReader(new IllegalStateException("Decoder broke")), null);
+            assertTrue(false);
+        } catch (IOException ex) {
+            assertTrue(false);
+        } catch (IllegalStateException ex) {
+            assertEquals("Decoder broke", ex.getMessage());
+        }
+    }
+
+    private static boolean bundledDictionaryLoaded() {
+        for (Rule rule : new PasswordComplexityValidator(PasswordPolicy.DEFAULT).getRules()) {
+            if (rule.getName().equals("dictionary")) {
+                return rule.isLoaded();
+            }
+        }
+        return false;
+    }
+
+    private static Reader failingReader(final Exception failure) {
+        return new Reader() {
+
+            private int reads;
+
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                if (reads++ > 10) {
+                    if (failure instanceof IOException) {
+                        throw (IOException) failure;
+                    }
+                    throw (RuntimeException) failure;
+                }
+                buffer[offset] = reads % 2 == 0 ? '\n' : 'a';
+                return 1;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
@@ -1,8 +1,24 @@
 package com.platinum.pcv.test;
 
+import com.platinum.dpv.DictionaryPasswordFileException;
+import com.platinum.pcv.DictionarySource;
+import com.platinum.pcv.PasswordCandidate;
 import com.platinum.pcv.PasswordComplexityException;
 import com.platinum.pcv.PasswordComplexityValidator;
+import com.platinum.pcv.PasswordHistory;
+import com.platinum.pcv.PasswordPolicy;
+import com.platinum.pcv.ValidationResult;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.junit.After;
@@ -208,4 +224,255 @@ public class PasswordComplexityTest {
             assertTrue(false);
         }
     }
+
+    @Test
+    public void separatePoliciesTest() {
+
+        // A relaxed policy must not leak into the default one
+        PasswordComplexityValidator relaxed = new PasswordComplexityValidator(PasswordPolicy.builder()
+                .minPasswordLength(6)
+                .minUpperAlphaChars(0)
+                .build());
+        try {
+            relaxed.validate(MIN_LENGTH_FAIL_PW, samplePreviousPasswords);
+            assertTrue(true);
+        } catch (PasswordComplexityException ex) {
+            assertTrue(false);
+        }
+
+        try {
+            PasswordComplexityValidator.getDefaultInstance().validate(MIN_LENGTH_FAIL_PW, samplePreviousPasswords);
+            assertTrue(false);
+        } catch (PasswordComplexityException ex) {
+            assertTrue(ex.getMessage().toLowerCase().contains("password must be at least"));
+        }
+    }
+
+    @Test
+    public void invalidPolicyTest() {
+        try {
+            PasswordPolicy.builder().minPasswordLength(20).maxPasswordLength(10).build();
+            assertTrue(false);
+        } catch (IllegalArgumentException ex) {
+            assertTrue(true);
+        }
+    }
+
+    @Test
+    public void hashedHistoryTest() {
+
+        // 24 generations, the old password is the oldest of them
+        byte[] salt = "user-salt".getBytes();
+        long[] fingerprints = new long[24];
+        fingerprints[0] = PasswordHistory.fingerprint(salt, PREV_FOUR_CHAR_PW);
+        for (int i = 1; i < 23; i++) {
+            fingerprints[i] = PasswordHistory.fingerprint(salt, "Password" + i);
+        }
+        fingerprints[23] = PasswordHistory.fingerprint(salt, OLD_PW);
+        PasswordHistory history = new PasswordHistory(salt, fingerprints);
+
+        // Outside the default depth of 10
+        try {
+            PasswordComplexityValidator.getDefaultInstance().validate(OLD_PW, history);
+            assertTrue(true);
+        } catch (PasswordComplexityException ex) {
+            assertTrue(false);
+        }
+
+        PasswordComplexityValidator deep = new PasswordComplexityValidator(PasswordPolicy.builder()
+                .passwordHistoryLen(24)
+                .build());
+        try {
+            deep.validate(OLD_PW, history);
+            assertTrue(false);
+        } catch (PasswordComplexityException ex) {
+            assertTrue(ex.getMessage().toLowerCase().contains("may not use a password which has been used within"));
+        }
+
+        // Without the plaintext newest password the difference check is skipped
+        try {
+            deep.validate(FOUR_CHAR_FAIL_PW, history);
+            assertTrue(true);
+        } catch (PasswordComplexityException ex) {
+            assertTrue(false);
+        }
+
+        try {
+            deep.validate(FOUR_CHAR_FAIL_PW, new PasswordHistory(salt, fingerprints, PREV_FOUR_CHAR_PW));
+            assertTrue(false);
+        } catch (PasswordComplexityException ex) {
+            assertTrue(ex.getMessage().toLowerCase().contains("password must differ by at least"));
+        }
+    }
+
+    @Test
+    public void hashedHistorySaltTest() {
+
+        // The same password under another salt is a different fingerprint
+        long[] fingerprints = {PasswordHistory.fingerprint("salt-a".getBytes(), OLD_PW)};
+        PasswordHistory history = new PasswordHistory("salt-b".getBytes(), fingerprints);
+        assertEquals(-1, history.generationOf(OLD_PW));
+        assertEquals(0, new PasswordHistory("salt-a".getBytes(), fingerprints).generationOf(OLD_PW));
+    }
+
+    @Test
+    public void hashedHistoryEncodingTest() throws NoSuchAlgorithmException {
+
+        // SHA-256 over the salt and the UTF-8 password, as stored elsewhere
+        byte[] salt = "salt-a".getBytes(StandardCharsets.UTF_8);
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update(salt);
+        byte[] hash = digest.digest((OLD_PW + "\u00e9\ud83d\ude00").getBytes(StandardCharsets.UTF_8));
+        assertEquals(ByteBuffer.wrap(hash).getLong(), PasswordHistory.fingerprint(salt, OLD_PW + "\u00e9\ud83d\ude00"));
+
+        // An unpaired surrogate isn't hashed as the '?' replacing it
+        PasswordHistory history = new PasswordHistory(salt, new long[]{PasswordHistory.fingerprint(salt, OLD_PW + "?")});
+        assertEquals(-1, history.generationOf(OLD_PW + "\ud800"));
+        assertEquals(-1, history.generationOf(OLD_PW + "\udc00"));
+        assertEquals(0, history.generationOf(OLD_PW + "?"));
+        assertFalse(PasswordHistory.fingerprint(salt, "a\ud800b") == PasswordHistory.fingerprint(salt, "a\udc00b"));
+        assertEquals(PasswordHistory.fingerprint(salt, "a\ud800b"), PasswordHistory.fingerprint(salt, "a\ud800b"));
+    }
+
+    @Test
+    public void batchTest() {
+
+        List<PasswordCandidate> candidates = new LinkedList<PasswordCandidate>();
+        List<ValidationResult> expected = new ArrayList<ValidationResult>();
+        for (int i = 0; i < 1000; i++) {
+            candidates.add(new PasswordCandidate(GENERIC_SUCCESS_PW, samplePreviousPasswords));
+            expected.add(ValidationResult.VALID);
+            candidates.add(new PasswordCandidate(CHAR_UPPER_FAIL_PW));
+            expected.add(ValidationResult.TOO_FEW_UPPER_ALPHA);
+            candidates.add(new PasswordCandidate(OLD_PW, samplePreviousPasswords));
+            expected.add(ValidationResult.RECENTLY_USED);
+            candidates.add(new PasswordCandidate(null));
+            expected.add(ValidationResult.NULL_PASSWORD);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            byte[] codes = PasswordComplexityValidator.getDefaultInstance().validateAll(candidates, pool);
+            assertEquals(expected.size(), codes.length);
+            for (int i = 0; i < codes.length; i++) {
+                assertEquals(expected.get(i), ValidationResult.fromCode(codes[i]));
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        List<ValidationResult> streamed = PasswordComplexityValidator.getDefaultInstance()
+                .validateAll(candidates.stream())
+                .collect(Collectors.toList());
+        assertEquals(expected, streamed);
+    }
+
+    @Test
+    public void checkTest() {
+
+        PasswordComplexityValidator validator = PasswordComplexityValidator.getDefaultInstance();
+        assertEquals(ValidationResult.VALID, validator.check(GENERIC_SUCCESS_PW, samplePreviousPasswords));
+        assertEquals(ValidationResult.TOO_FEW_UPPER_ALPHA, validator.check(CHAR_UPPER_FAIL_PW));
+        assertEquals(ValidationResult.RECENTLY_USED, validator.check(OLD_PW, samplePreviousPasswords));
+        assertEquals(ValidationResult.NULL_PASSWORD, validator.check((String) null));
+
+        // The thrown form carries the same result and the rendered message
+        try {
+            validator.validate(CHAR_UPPER_FAIL_PW);
+            assertTrue(false);
+        } catch (PasswordComplexityException ex) {
+            assertEquals(ValidationResult.TOO_FEW_UPPER_ALPHA, ex.getResult());
+            assertEquals(ValidationResult.TOO_FEW_UPPER_ALPHA.getMessage(validator.getPolicy()), ex.getMessage());
+            assertEquals(0, ex.getStackTrace().length);
+        }
+    }
+
+    @Test
+    public void dictionaryUnavailableTest() {
+
+        final DictionaryPasswordFileException failure = new DictionaryPasswordFileException("Words missing", new IOException());
+        PasswordComplexityValidator validator = new PasswordComplexityValidator(PasswordPolicy.builder()
+                .dictionarySource(new DictionarySource() {
+
+                    @Override
+                    public boolean isPasswordDictionaryBased(CharSequence password) throws DictionaryPasswordFileException {
+                        throw failure;
+                    }
+
+                    @Override
+                    public boolean isDictionaryWord(CharSequence word) throws DictionaryPasswordFileException {
+                        throw failure;
+                    }
+                })
+                .build());
+        assertEquals(ValidationResult.DICTIONARY_UNAVAILABLE, validator.check(GENERIC_SUCCESS_PW));
+
+        // The load failure is kept as the cause, with a stack trace
+        try {
+            validator.validate(GENERIC_SUCCESS_PW);
+            assertTrue(false);
+        } catch (PasswordComplexityException ex) {
+            assertEquals(ValidationResult.DICTIONARY_UNAVAILABLE, ex.getResult());
+            assertSame(failure, ex.getCause());
+            assertTrue(ex.getStackTrace().length > 0);
+        }
+    }
+
+    @Test
+    public void checkAllTest() {
+
+        PasswordComplexityValidator validator = PasswordComplexityValidator.getDefaultInstance();
+        assertEquals(0L, validator.checkAll(GENERIC_SUCCESS_PW, samplePreviousPasswords));
+
+        // Every broken rule is reported, including those after an invalid char
+        long violations = validator.checkAll("aaa\u00e912/27/2010");
+        assertEquals(EnumSet.of(ValidationResult.TOO_SHORT,
+                ValidationResult.INVALID_CHARACTER,
+                ValidationResult.TOO_FEW_UPPER_ALPHA,
+                ValidationResult.CONTAINS_DATE), ValidationResult.fromBits(violations));
+
+        violations = validator.checkAll(OLD_PW.toLowerCase(), samplePreviousPasswords);
+        assertTrue(ValidationResult.fromBits(violations).contains(ValidationResult.TOO_FEW_UPPER_ALPHA));
+
+        // What check reports is always one of the violations
+        String[] passwords = {GENERIC_SUCCESS_PW, MIN_LENGTH_FAIL_PW, CHAR_UPPER_FAIL_PW,
+            CHAR_LOWER_FAIL_PW, CHAR_NUMERIC_FAIL_PW, CHAR_SYMBOL_FAIL_PW, OLD_PW,
+            FOUR_CHAR_FAIL_PW, FOUR_CHAR_SUCCESS_PW, PHONE_NUMBER_FAILURE_PW, DATE_FAILURE_PW, null};
+        for (String password : passwords) {
+            ValidationResult result = validator.check(password, samplePreviousPasswords);
+            violations = validator.checkAll(password, samplePreviousPasswords);
+            if (result == ValidationResult.VALID) {
+                assertEquals(0L, violations);
+            } else {
+                assertTrue(ValidationResult.fromBits(violations).contains(result));
+            }
+        }
+    }
+
+    @Test
+    public void longPasswordTest() {
+
+        PasswordComplexityValidator validator = new PasswordComplexityValidator(PasswordPolicy.builder()
+                .maxPasswordLength(200000)
+                .restrictedByDictionary(false)
+                .build());
+        StringBuilder lower = new StringBuilder();
+        while (lower.length() < 140000) {
+            lower.append('a');
+        }
+
+        // More of one class than fits a counter doesn't spill into the next
+        assertEquals(EnumSet.of(ValidationResult.TOO_FEW_UPPER_ALPHA,
+                ValidationResult.TOO_FEW_NUMERICAL,
+                ValidationResult.TOO_FEW_SPECIAL), ValidationResult.fromBits(validator.checkAll(lower)));
+        assertEquals(ValidationResult.VALID, validator.check(lower + GENERIC_SUCCESS_PW));
+        assertEquals(ValidationResult.INVALID_CHARACTER, validator.check(lower + GENERIC_SUCCESS_PW + "\u00e9"));
+        assertEquals(ValidationResult.INVALID_CHARACTER, validator.check(GENERIC_SUCCESS_PW + "\u0100" + lower));
+
+        PasswordComplexityValidator extended = new PasswordComplexityValidator(validator.getPolicy().toBuilder()
+                .allowExtendedAsciiSymbols(true)
+                .build());
+        assertEquals(ValidationResult.VALID, extended.check(lower + GENERIC_SUCCESS_PW + "\u00e9"));
+        assertEquals(ValidationResult.INVALID_CHARACTER, extended.check(GENERIC_SUCCESS_PW + "\u0100" + lower));
+    }
 }
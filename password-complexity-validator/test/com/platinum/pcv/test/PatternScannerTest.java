@@ -0,0 +1,85 @@
+package com.platinum.pcv.test;
+
+import com.platinum.pcv.PasswordComplexityException;
+import com.platinum.pcv.PasswordComplexityValidator;
+import com.platinum.pcv.PasswordPolicy;
+import java.util.Random;
+import java.util.regex.Pattern;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks the single pass date and phone number scanning reports exactly what
+ * the regular expressions it replaced reported.
+ *
+ * @author jlucier
+ */
+public class PatternScannerTest {
+
+    private static final Pattern PATTERN_DATE_NUMERICAL = Pattern.compile(".*([0-9]{1,4}[\\-.\\/]{1}"
+            + "[0-9]{1,2}[\\-.\\/]{1}[0-9]{1,4}).*", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE);
+    private static final Pattern PATTERN_PHONE_NUMBER = Pattern.compile(".*([0-9]{3}[\\-.]{1}"
+            + "[0-9]{3}[\\-.]{1}[0-9]{4}).*", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE);
+
+    // Heavy on digits and separators so the interesting shapes come up often
+    private static final String ALPHABET = "0123456789012345-./-./aZ@\u0085";
+
+    // Everything but the date and phone checks switched off
+    private static final PasswordPolicy DATES_ONLY = PasswordPolicy.builder()
+            .minPasswordLength(0)
+            .minLowerAlphaChars(0)
+            .minUpperAlphaChars(0)
+            .minNumericalChars(0)
+            .minSpecialChars(0)
+            .allowExtendedAsciiSymbols(true)
+            .restrictedByDictionary(false)
+            .allowPhoneNumbers(true)
+            .build();
+    private static final PasswordPolicy PHONES_ONLY = DATES_ONLY.toBuilder()
+            .allowPhoneNumbers(false)
+            .allowDates(true)
+            .build();
+
+    @Test
+    public void knownShapesTest() {
+        assertScans("12/27/2010");
+        assertScans("xx1-2-3xx");
+        assertScans("123456.1.1");
+        assertScans("1--2-3");
+        assertScans("12/345/6");
+        assertScans("111-222-3333");
+        assertScans("111-222-333");
+        assertScans("11-222-3333");
+        assertScans("111/222/3333");
+        assertScans("111.222.3333999");
+        assertScans("111-222-3333\u0085");
+        assertScans("12/27/2010\u0085");
+    }
+
+    @Test
+    public void randomShapesTest() {
+        Random random = new Random(27L);
+        char[] chars = new char[20];
+        for (int n = 0; n < 20000; n++) {
+            int len = 1 + random.nextInt(chars.length);
+            for (int i = 0; i < len; i++) {
+                chars[i] = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+            }
+            assertScans(new String(chars, 0, len));
+        }
+    }
+
+    private void assertScans(String password) {
+        assertEquals(password, PATTERN_DATE_NUMERICAL.matcher(password).matches(), rejected(DATES_ONLY, password));
+        assertEquals(password, PATTERN_PHONE_NUMBER.matcher(password).matches(), rejected(PHONES_ONLY, password));
+    }
+
+    private boolean rejected(PasswordPolicy policy, String password) {
+        try {
+            new PasswordComplexityValidator(policy).validate(password);
+            return false;
+        } catch (PasswordComplexityException ex) {
+            return true;
+        }
+    }
+}
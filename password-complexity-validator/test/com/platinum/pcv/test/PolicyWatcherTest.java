@@ -0,0 +1,248 @@
+package com.platinum.pcv.test;
+
+import com.platinum.pcv.DictionaryIndexBuilder;
+import com.platinum.pcv.PasswordCandidate;
+import com.platinum.pcv.PasswordComplexityValidator;
+import com.platinum.pcv.PasswordPolicy;
+import com.platinum.pcv.PolicyWatcher;
+import com.platinum.pcv.Rule;
+import com.platinum.pcv.ValidationMetrics;
+import com.platinum.pcv.ValidationResult;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import org.junit.Assume;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks policies load from properties files, and are reloaded when the file
+ * changes.
+ *
+ * @author jlucier
+ */
+public class PolicyWatcherTest {
+
+    private static final String GENERIC_SUCCESS_PW = "AAAAbbbb1111@@@@";
+
+    // Long enough for a slow file system to notice the change
+    private static final long RELOAD_TIMEOUT_MILLIS = 30000;
+
+    @Test
+    public void propertiesTest() {
+
+        Properties settings = new Properties();
+        settings.setProperty("minPasswordLength", "8");
+        settings.setProperty("allowDates", " TRUE ");
+        settings.setProperty("minEntropyBits", "30.5");
+        PasswordPolicy policy = PasswordPolicy.builder()
+                .metrics(new ValidationMetrics() {
+                })
+                .properties(settings)
+                .build();
+        assertEquals(8, policy.getMinPasswordLength());
+        assertEquals(50, policy.getMaxPasswordLength());
+        assertTrue(policy.isAllowDates());
+        assertEquals(30.5, policy.getMinEntropyBits(), 0.0);
+        assertNotSame(ValidationMetrics.NONE, policy.getMetrics());
+
+        String[][] badSettings = {{"minPasswordLen", "8"}, {"minPasswordLength", "eight"},
+            {"allowDates", "yes"}, {"maxPasswordLength", "4"}};
+        for (String[] setting : badSettings) {
+            Properties bad = new Properties();
+            bad.setProperty(setting[0], setting[1]);
+            try {
+                PasswordPolicy.builder().properties(bad).build();
+                assertTrue(false);
+            } catch (IllegalArgumentException ex) {
+            }
+        }
+    }
+
+    @Test
+    public void reloadTest() throws IOException, InterruptedException {
+
+        Path dir = Files.createTempDirectory("policy");
+        Path file = dir.resolve("policy.properties");
+        Path index = dir.resolve("words.idx");
+        try {
+            new DictionaryIndexBuilder(4).addWords(new StringReader("zebra\n")).writeTo(index);
+            write(file, "minPasswordLength=16\nrestrictedByDictionary=false\n");
+
+            PolicyWatcher watcher = PolicyWatcher.watch(file, PasswordPolicy.DEFAULT);
+            try {
+                PasswordComplexityValidator first = watcher.getValidator();
+                assertEquals(16, watcher.getPolicy().getMinPasswordLength());
+                assertEquals(ValidationResult.VALID, first.check(GENERIC_SUCCESS_PW));
+
+                // Replaced by a rename, as many editors do
+                Path temp = dir.resolve("policy.tmp");
+                write(temp, "minPasswordLength=17\ndictionaryIndex=words.idx\n");
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                PasswordComplexityValidator second = awaitReload(watcher, first);
+                assertEquals(ValidationResult.TOO_SHORT, second.check(GENERIC_SUCCESS_PW));
+                assertEquals(ValidationResult.CONTAINS_DICTIONARY_WORD, second.check(GENERIC_SUCCESS_PW + "zebra"));
+                // The old validator is untouched, for checks already holding it
+                assertEquals(ValidationResult.VALID, first.check(GENERIC_SUCCESS_PW));
+
+                // A broken file keeps the current policy, the next good one loads
+                write(file, "minPasswordLength=many\n");
+                Thread.sleep(500);
+                assertSame(second, watcher.getValidator());
+                write(file, "minPasswordLength=12\nrestrictedByDictionary=false\n");
+                assertEquals(12, awaitReload(watcher, second).getPolicy().getMinPasswordLength());
+            } finally {
+                watcher.close();
+            }
+
+            try {
+                PolicyWatcher.watch(dir.resolve("missing.properties"), PasswordPolicy.DEFAULT);
+                assertTrue(false);
+            } catch (IOException ex) {
+            }
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(index);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    @Test
+    public void failingRuleTest() throws IOException, InterruptedException {
+
+        final AtomicBoolean failing = new AtomicBoolean();
+        PasswordPolicy base = PasswordPolicy.builder()
+                .restrictedByDictionary(false)
+                .addRule(new Rule() {
+
+                    @Override
+                    public ValidationResult check(PasswordCandidate candidate) {
+                        if (failing.get() == true) {
+                            throw new IllegalStateException("Rule broke");
+                        }
+                        return ValidationResult.VALID;
+                    }
+                })
+                .build();
+        Path dir = Files.createTempDirectory("policy");
+        Path file = dir.resolve("policy.properties");
+        try {
+            write(file, "minPasswordLength=16\n");
+            PolicyWatcher watcher = PolicyWatcher.watch(file, base);
+            try {
+                PasswordComplexityValidator first = watcher.getValidator();
+                failing.set(true);
+                write(file, "minPasswordLength=17\n");
+                Thread.sleep(500);
+                assertSame(first, watcher.getValidator());
+
+                // Still watching
+                failing.set(false);
+                write(file, "minPasswordLength=18\n");
+                assertEquals(18, awaitReload(watcher, first).getPolicy().getMinPasswordLength());
+            } finally {
+                watcher.close();
+            }
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    @Test
+    public void defaultDictionarySettingsTest() throws IOException, InterruptedException {
+
+        // The settings only apply if no other test in this JVM has loaded the
+        // bundled dictionary, reloadTest here doesn't
+        Assume.assumeTrue(bundledDictionaryLoaded() == false);
+        final List<LogRecord> records = new ArrayList<LogRecord>();
+        Handler handler = new Handler() {
+
+            @Override
+            public synchronized void publish(LogRecord record) {
+                records.add(record);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        Logger logger = Logger.getLogger("com.platinum.pcv");
+        logger.addHandler(handler);
+        Path dir = Files.createTempDirectory("policy");
+        Path file = dir.resolve("policy.properties");
+        try {
+            write(file, "dictionaryMinWordLength=6\n");
+            PolicyWatcher watcher = PolicyWatcher.watchDefault(file);
+            try {
+                List<String> history = new ArrayList<String>();
+                assertEquals(ValidationResult.VALID, PasswordComplexityValidator.checkPassword("Xq7!Zk9#Wp2$home", history));
+                assertEquals(ValidationResult.CONTAINS_DICTIONARY_WORD,
+                        PasswordComplexityValidator.checkPassword("Xq7!Zk9#Wp2$monkey", history));
+
+                // Too late to change, warned about once rather than failing
+                PasswordComplexityValidator first = watcher.getValidator();
+                write(file, "dictionaryMinWordLength=8\n");
+                PasswordComplexityValidator second = awaitReload(watcher, first);
+                write(file, "dictionaryMinWordLength=8\nminPasswordLength=16\n");
+                awaitReload(watcher, second);
+                assertEquals(ValidationResult.CONTAINS_DICTIONARY_WORD,
+                        PasswordComplexityValidator.checkPassword("Xq7!Zk9#Wp2$monkey", history));
+            } finally {
+                watcher.close();
+                PasswordComplexityValidator.configure(PasswordPolicy.DEFAULT);
+            }
+            int warnings = 0;
+            for (LogRecord record : records) {
+                assertTrue(record.getLevel().intValue() < Level.SEVERE.intValue());
+                if (record.getLevel() == Level.WARNING) {
+                    warnings++;
+                }
+            }
+            // The one for 8, and the one for going back to the default
+            assertEquals(2, warnings);
+        } finally {
+            logger.removeHandler(handler);
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    private static boolean bundledDictionaryLoaded() {
+        for (Rule rule : new PasswordComplexityValidator(PasswordPolicy.DEFAULT).getRules()) {
+            if (rule.getName().equals("dictionary")) {
+                return rule.isLoaded();
+            }
+        }
+        return false;
+    }
+
+    private static PasswordComplexityValidator awaitReload(PolicyWatcher watcher, PasswordComplexityValidator old)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + RELOAD_TIMEOUT_MILLIS;
+        while (watcher.getValidator() == old) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(20);
+        }
+        return watcher.getValidator();
+    }
+
+    private static void write(Path file, String settings) throws IOException {
+        Files.write(file, settings.getBytes(StandardCharsets.ISO_8859_1));
+    }
+}
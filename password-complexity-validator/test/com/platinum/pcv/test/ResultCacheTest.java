@@ -0,0 +1,119 @@
+package com.platinum.pcv.test;
+
+import com.platinum.pcv.PasswordCandidate;
+import com.platinum.pcv.PasswordComplexityValidator;
+import com.platinum.pcv.PasswordPolicy;
+import com.platinum.pcv.ResultCache;
+import com.platinum.pcv.ValidationResult;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks cached results are the same as those found by running the rules.
+ *
+ * @author jlucier
+ */
+public class ResultCacheTest {
+
+    private static final String GENERIC_SUCCESS_PW = "AAAAbbbb1111@@@@";
+    private static final String[] PASSWORDS = {GENERIC_SUCCESS_PW, "a2b3c@!", "aaaabbbb1111@@@@",
+        "AAAAbbbb1111@@@@12/27/2010", "AAAAbbbb1111@@@@monkey", "aaa\u00e912/27/2010",
+        "AAAAbbbb1111@@@?", "AAAAbbbb1111@@@\ud800", ""};
+
+    @Test
+    public void cachedResultsTest() {
+
+        ResultCache cache = new ResultCache(64);
+        PasswordComplexityValidator uncached = PasswordComplexityValidator.getDefaultInstance();
+        PasswordComplexityValidator validator = new PasswordComplexityValidator(PasswordPolicy.builder()
+                .resultCache(cache)
+                .build());
+
+        for (int round = 0; round < 3; round++) {
+            for (String password : PASSWORDS) {
+                assertEquals(password, uncached.check(password), validator.check(password));
+                assertEquals(password, uncached.checkAll(password), validator.checkAll(password));
+                assertEquals(password, uncached.check(password), validator.check(password.toCharArray(), 0, password.length()));
+            }
+        }
+        // The length and character classes are cheaper than a lookup, so
+        // the passwords they reject are never looked up by check
+        assertTrue(cache.getHitCount() > cache.getMissCount() * 3);
+
+        // The history rules run live, the rest still come from the cache
+        List<String> history = Arrays.asList(GENERIC_SUCCESS_PW);
+        long hits = cache.getHitCount();
+        assertTrue(validator.check(GENERIC_SUCCESS_PW, history) != ValidationResult.VALID);
+        assertTrue(ValidationResult.fromBits(validator.checkAll(GENERIC_SUCCESS_PW, history))
+                .contains(ValidationResult.RECENTLY_USED));
+        assertEquals(hits + 1, cache.getHitCount());
+        List<String> otherHistory = Arrays.asList("Zzzz0000!!!!yyyy", "Xxxx9999####wwww");
+        for (int retry = 0; retry < 3; retry++) {
+            assertEquals(ValidationResult.VALID, validator.check(GENERIC_SUCCESS_PW, otherHistory));
+            assertEquals(ValidationResult.VALID, validator.check(GENERIC_SUCCESS_PW, new ArrayList<String>()));
+        }
+        assertEquals(hits + 7, cache.getHitCount());
+
+        // Similar to an older password, so rejected live however often the
+        // rest of the result is cached
+        PasswordComplexityValidator deepHistory = new PasswordComplexityValidator(validator.getPolicy().toBuilder()
+                .similarHistoryLen(24)
+                .build());
+        List<String> variants = Arrays.asList("Zzzz0000!!!!yyyy", GENERIC_SUCCESS_PW + "x");
+        for (int retry = 0; retry < 3; retry++) {
+            assertEquals(ValidationResult.VALID, deepHistory.check(GENERIC_SUCCESS_PW));
+            assertEquals(ValidationResult.TOO_SIMILAR_TO_RECENT, deepHistory.check(GENERIC_SUCCESS_PW, variants));
+        }
+    }
+
+    @Test
+    public void sharedCacheTest() {
+
+        // Validators with different policies sharing one cache
+        ResultCache cache = new ResultCache(1024);
+        PasswordComplexityValidator strict = new PasswordComplexityValidator(PasswordPolicy.builder()
+                .resultCache(cache)
+                .build());
+        PasswordComplexityValidator lenient = new PasswordComplexityValidator(strict.getPolicy().toBuilder()
+                .restrictedByDictionary(false)
+                .build());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(ValidationResult.CONTAINS_DICTIONARY_WORD, strict.check(GENERIC_SUCCESS_PW + "monkey"));
+            assertEquals(ValidationResult.VALID, lenient.check(GENERIC_SUCCESS_PW + "monkey"));
+        }
+        assertEquals(2L, cache.getMissCount());
+    }
+
+    @Test
+    public void evictionTest() {
+
+        ResultCache cache = new ResultCache(4);
+        assertEquals(8, cache.getCapacity());
+        PasswordComplexityValidator validator = new PasswordComplexityValidator(PasswordPolicy.builder()
+                .resultCache(cache)
+                .build());
+
+        // Far more passwords than fit, in a batch across threads
+        List<PasswordCandidate> candidates = new ArrayList<PasswordCandidate>();
+        for (int i = 0; i < 5000; i++) {
+            candidates.add(new PasswordCandidate(GENERIC_SUCCESS_PW + i % 1000));
+            candidates.add(new PasswordCandidate(GENERIC_SUCCESS_PW + "monkey" + i % 3));
+        }
+        byte[] codes = validator.validateAll(candidates);
+        for (int i = 0; i < codes.length; i++) {
+            ValidationResult expected = i % 2 == 0 ? ValidationResult.VALID : ValidationResult.CONTAINS_DICTIONARY_WORD;
+            assertEquals(expected.getCode(), codes[i]);
+        }
+        assertEquals(10000L, cache.getHitCount() + cache.getMissCount());
+        assertTrue(cache.getHitCount() > 0L);
+
+        try {
+            new ResultCache(0);
+            assertTrue(false);
+        } catch (IllegalArgumentException ex) {
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.platinum.pcv.test;
+
+import com.platinum.pcv.PasswordCandidate;
+import com.platinum.pcv.PasswordComplexityException;
+import com.platinum.pcv.PasswordComplexityValidator;
+import com.platinum.pcv.PasswordPolicy;
+import com.platinum.pcv.Rule;
+import com.platinum.pcv.ValidationResult;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks custom rules and the ordering of the compiled rule pipeline.
+ *
+ * @author jlucier
+ */
+public class RuleTest {
+
+    private static final String GENERIC_SUCCESS_PW = "AAAAbbbb1111@@@@";
+    private static final String COMPANY_PW = "AAAAbbbb1111@@@@Acme";
+
+    // Rejects passwords holding the company's name
+    private static final Rule NO_COMPANY_NAME = new Rule() {
+
+        @Override
+        public ValidationResult check(PasswordCandidate candidate) {
+            if (candidate.getPassword().toLowerCase().contains("acme")) {
+                return ValidationResult.REJECTED_BY_RULE;
+            }
+            return ValidationResult.VALID;
+        }
+    };
+
+    @Test
+    public void customRuleTest() {
+
+        PasswordPolicy policy = PasswordPolicy.builder()
+                .restrictedByDictionary(false)
+                .addRule(NO_COMPANY_NAME)
+                .build();
+        PasswordComplexityValidator validator = new PasswordComplexityValidator(policy);
+        assertEquals(ValidationResult.VALID, validator.check(GENERIC_SUCCESS_PW));
+        assertEquals(ValidationResult.REJECTED_BY_RULE, validator.check(COMPANY_PW));
+        assertEquals(ValidationResult.REJECTED_BY_RULE.getBit(), validator.checkAll(COMPANY_PW));
+        assertTrue(validator.getRules().contains(NO_COMPANY_NAME));
+        assertTrue(policy.toBuilder().build().getRules().contains(NO_COMPANY_NAME));
+
+        try {
+            validator.validate(COMPANY_PW);
+            assertTrue(false);
+        } catch (PasswordComplexityException ex) {
+            assertEquals(ValidationResult.REJECTED_BY_RULE, ex.getResult());
+        }
+
+        try {
+            PasswordPolicy.builder().addRule(null);
+            assertTrue(false);
+        } catch (IllegalArgumentException ex) {
+        }
+    }
+
+    @Test
+    public void disabledRulesDroppedTest() {
+
+        // Length, characters, similarity, reuse and the dictionary
+        assertEquals(5, PasswordComplexityValidator.getDefaultInstance().getRules().size());
+
+        // Only the invalid character check is left
+        PasswordComplexityValidator validator = new PasswordComplexityValidator(relaxedPolicy().build());
+        assertEquals(1, validator.getRules().size());
+        assertEquals(ValidationResult.VALID, validator.check("a"));
+        assertEquals(ValidationResult.INVALID_CHARACTER, validator.check("a\u00e9"));
+    }
+
+    @Test
+    public void reorderTest() {
+
+        // Estimated as the cheapest rule, but never rejects anything
+        final AtomicInteger unselectiveChecks = new AtomicInteger();
+        Rule unselective = new Rule() {
+
+            @Override
+            public ValidationResult check(PasswordCandidate candidate) {
+                unselectiveChecks.incrementAndGet();
+                return ValidationResult.VALID;
+            }
+
+            @Override
+            public long getEstimatedNanos() {
+                return 1L;
+            }
+        };
+
+        // Estimated as very expensive, but cheap and rejects everything
+        Rule selective = new Rule() {
+
+            @Override
+            public ValidationResult check(PasswordCandidate candidate) {
+                return ValidationResult.REJECTED_BY_RULE;
+            }
+
+            @Override
+            public long getEstimatedNanos() {
+                return 1000000L;
+            }
+        };
+
+        PasswordComplexityValidator validator = new PasswordComplexityValidator(relaxedPolicy()
+                .addRule(unselective)
+                .addRule(selective)
+                .build());
+        assertEquals(unselective, validator.getRules().get(0));
+        assertEquals(selective, validator.getRules().get(2));
+
+        for (int i = 0; i < 5000000 && validator.getRules().get(0) != selective; i++) {
+            assertEquals(ValidationResult.REJECTED_BY_RULE, validator.check(GENERIC_SUCCESS_PW));
+        }
+        assertEquals(selective, validator.getRules().get(0));
+
+        // The unselective rule no longer runs at all
+        unselectiveChecks.set(0);
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(ValidationResult.REJECTED_BY_RULE, validator.check(GENERIC_SUCCESS_PW));
+        }
+        assertEquals(0, unselectiveChecks.get());
+    }
+
+    private static PasswordPolicy.Builder relaxedPolicy() {
+        return PasswordPolicy.builder()
+                .minPasswordLength(0)
+                .maxPasswordLength(Integer.MAX_VALUE)
+                .minLowerAlphaChars(0)
+                .minUpperAlphaChars(0)
+                .minNumericalChars(0)
+                .minSpecialChars(0)
+                .allowDates(true)
+                .allowPhoneNumbers(true)
+                .lastPasswordDifferInChars(0)
+                .passwordHistoryLen(0)
+                .restrictedByDictionary(false);
+    }
+}
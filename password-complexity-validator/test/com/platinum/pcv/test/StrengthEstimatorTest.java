@@ -0,0 +1,108 @@
+package com.platinum.pcv.test;
+
+import com.platinum.pcv.AhoCorasickDictionary;
+import com.platinum.pcv.PasswordComplexityValidator;
+import com.platinum.pcv.PasswordPolicy;
+import com.platinum.pcv.StrengthEstimator;
+import com.platinum.pcv.ValidationResult;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks the strength estimates find each kind of pattern, and the entropy
+ * rule built on them.
+ *
+ * @author jlucier
+ */
+public class StrengthEstimatorTest {
+
+    private static final String GENERIC_SUCCESS_PW = "AAAAbbbb1111@@@@";
+    private static final String RANDOM_PW = "x7#Qm2!vR9$kLp4&";
+
+    // Ten guesses per character when brute forced
+    private static final double BRUTEFORCE_BITS_PER_CHAR = Math.log(10.0) / Math.log(2.0);
+
+    @Test
+    public void patternsTest() {
+
+        StrengthEstimator estimator = StrengthEstimator.builder().build();
+
+        // Each pattern needs far fewer guesses than brute forcing
+        String[] patterns = {"aaaaaaaaaa", "abcabcabcabc", "abcdefgh", "97531", "ZYXWVU",
+            "qwertyuiop", "zaq1xsw2", "QWERTY", "12/27/2010", "19870314", "1987"};
+        for (String pattern : patterns) {
+            double bits = estimator.estimateEntropyBits(pattern);
+            assertTrue(pattern + " " + bits, bits < pattern.length() * BRUTEFORCE_BITS_PER_CHAR - 4.0);
+        }
+
+        // Nothing to find
+        assertEquals(RANDOM_PW.length() * BRUTEFORCE_BITS_PER_CHAR, estimator.estimateEntropyBits(RANDOM_PW), 0.01);
+        assertEquals(1.0, estimator.estimateGuesses(""), 0.0);
+
+        // Each block repeats, so it is weaker than a random password as long
+        assertTrue(estimator.estimateEntropyBits(GENERIC_SUCCESS_PW) < estimator.estimateEntropyBits(RANDOM_PW) - 10.0);
+
+        // The same for any kind of char sequence, and past the analyzed length
+        assertEquals(estimator.estimateGuesses(GENERIC_SUCCESS_PW),
+                estimator.estimateGuesses(CharBuffer.wrap(GENERIC_SUCCESS_PW.toCharArray())), 0.0);
+        StringBuilder longPassword = new StringBuilder();
+        while (longPassword.length() < StrengthEstimator.MAX_ANALYZED_LENGTH * 2) {
+            longPassword.append(RANDOM_PW);
+        }
+        assertTrue(estimator.estimateEntropyBits(longPassword) > estimator.estimateEntropyBits(RANDOM_PW));
+    }
+
+    @Test
+    public void dictionaryTest() {
+
+        AhoCorasickDictionary common = AhoCorasickDictionary.builder(1)
+                .addWord("password")
+                .addWord("dragon")
+                .addWord("monkey")
+                .build();
+        StrengthEstimator estimator = StrengthEstimator.builder().addDictionary(common).build();
+
+        // One of three words, then only capitalised or substituted, plus
+        // the one guess for a sequence of a single match
+        assertEquals(4.0, estimator.estimateGuesses("password"), 0.0);
+        assertEquals(7.0, estimator.estimateGuesses("Password"), 0.0);
+        assertEquals(7.0, estimator.estimateGuesses("p@ssword"), 0.0);
+        assertTrue(estimator.estimateGuesses("PaSsWoRd") > estimator.estimateGuesses("Password"));
+        assertTrue(estimator.estimateGuesses("dragonmonkey") < StrengthEstimator.builder().build().estimateGuesses("dragonmonkey"));
+
+        assertEquals(3, StrengthEstimator.scoreOf(1.0e9));
+        assertEquals(0, StrengthEstimator.scoreOf(estimator.estimateGuesses("monkey")));
+        assertEquals(1.0e4, StrengthEstimator.secondsToCrack(1.0e8, StrengthEstimator.OFFLINE_SLOW_HASH_GUESSES_PER_SECOND), 0.0);
+
+        try {
+            StrengthEstimator.builder().addDictionary(null);
+            assertTrue(false);
+        } catch (IllegalArgumentException ex) {
+        }
+    }
+
+    @Test
+    public void entropyRuleTest() throws IOException {
+
+        PasswordComplexityValidator validator = new PasswordComplexityValidator(PasswordPolicy.builder()
+                .minEntropyBits(45.0)
+                .build());
+        assertEquals(ValidationResult.TOO_GUESSABLE, validator.check(GENERIC_SUCCESS_PW));
+        assertEquals(ValidationResult.VALID, validator.check(RANDOM_PW));
+        assertTrue(ValidationResult.fromBits(validator.checkAll("Password1234!!!!")).contains(ValidationResult.TOO_GUESSABLE));
+        assertNotNull(ValidationResult.TOO_GUESSABLE.getMessage(validator.getPolicy()));
+        assertTrue(StrengthEstimator.getDefault().estimateEntropyBits("Password1234!!!!")
+                < StrengthEstimator.builder().build().estimateEntropyBits("Password1234!!!!"));
+
+        // Off by default
+        assertEquals(ValidationResult.VALID, PasswordComplexityValidator.getDefaultInstance().check(GENERIC_SUCCESS_PW));
+
+        try {
+            PasswordPolicy.builder().minEntropyBits(-1.0).build();
+            assertTrue(false);
+        } catch (IllegalArgumentException ex) {
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.platinum.pcv.test;
+
+import com.platinum.pcv.PasswordComplexityValidator;
+import com.platinum.pcv.PasswordPolicy;
+import com.platinum.pcv.SuccinctTrie;
+import com.platinum.pcv.ValidationResult;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks the exact match succinct trie against a plain set of words.
+ *
+ * @author jlucier
+ */
+public class SuccinctTrieTest {
+
+    // A small alphabet so words share plenty of prefixes
+    private static final String LETTERS = "abcde\u00e9\u00df";
+
+    @Test
+    public void multipleWordListsTest() throws IOException {
+        SuccinctTrie trie = SuccinctTrie.builder(4)
+                .addWords(new StringReader("Haus/S\nStra\u00dfe\nk\u00f6nnen/DX\n"))
+                .addWords(new StringReader("fen\u00eatre\n\u00e9cole/S\n"))
+                .addWords(new StringReader("Platinum\nab\nx-ray\n"))
+                .build();
+
+        assertEquals(6, trie.size());
+        assertTrue(trie.isDictionaryWord("haus"));
+        assertTrue(trie.isDictionaryWord("STRA\u00dfE"));
+        assertTrue(trie.isDictionaryWord("\u00c9cole"));
+        assertFalse(trie.isDictionaryWord("hau"));
+        assertFalse(trie.isDictionaryWord("ab"));
+        assertFalse(trie.isDictionaryWord("x-ray"));
+
+        assertTrue(trie.isPasswordDictionaryBased("11K\u00f6n-nen@@"));
+        assertTrue(trie.isPasswordDictionaryBased("#PLATINUM#"));
+        assertFalse(trie.isPasswordDictionaryBased("Hau1!"));
+        assertFalse(trie.isPasswordDictionaryBased(""));
+
+        PasswordComplexityValidator validator = new PasswordComplexityValidator(PasswordPolicy.builder()
+                .allowExtendedAsciiSymbols(true)
+                .dictionarySource(trie)
+                .build());
+        assertEquals(ValidationResult.VALID, validator.check("AAAAbbbb1111@@@@"));
+        assertEquals(ValidationResult.CONTAINS_DICTIONARY_WORD, validator.check("AAAAbbbb1111@@@@Fen\u00eatre"));
+    }
+
+    @Test
+    public void randomWordsTest() throws IOException {
+        Random random = new Random(11L);
+        Set<String> words = new HashSet<String>();
+        SuccinctTrie.Builder builder = SuccinctTrie.builder(3);
+        for (int i = 0; i < 3000; i++) {
+            String word = randomLetters(random, 1 + random.nextInt(8));
+            builder.addWord(word);
+            if (word.length() >= 3) {
+                words.add(word);
+            }
+        }
+
+        Path file = Files.createTempFile("words", ".trie");
+        try {
+            builder.writeTo(file);
+            SuccinctTrie built = builder.build();
+            SuccinctTrie mapped = SuccinctTrie.open(file);
+            assertEquals(words.size(), built.size());
+            assertEquals(built.sizeInBytes(), mapped.sizeInBytes());
+
+            for (int i = 0; i < 20000; i++) {
+                String candidate = randomLetters(random, 1 + random.nextInt(12));
+                boolean expectedWord = words.contains(candidate);
+                boolean expectedContains = containsWord(words, candidate);
+                assertEquals(candidate, expectedWord, built.isDictionaryWord(candidate));
+                assertEquals(candidate, expectedWord, mapped.isDictionaryWord(candidate));
+                assertEquals(candidate, expectedContains, built.isPasswordDictionaryBased(candidate));
+                assertEquals(candidate, expectedContains, mapped.isPasswordDictionaryBased(candidate));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void emptyTrieTest() {
+        SuccinctTrie trie = SuccinctTrie.builder(4).build();
+        assertEquals(0, trie.size());
+        assertFalse(trie.isPasswordDictionaryBased("password"));
+        assertFalse(trie.isDictionaryWord("password"));
+    }
+
+    private static String randomLetters(Random random, int length) {
+        StringBuilder letters = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            letters.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+        }
+        return letters.toString();
+    }
+
+    private static boolean containsWord(Set<String> words, String candidate) {
+        for (int start = 0; start < candidate.length(); start++) {
+            for (int end = start + 1; end <= candidate.length(); end++) {
+                if (words.contains(candidate.substring(start, end))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
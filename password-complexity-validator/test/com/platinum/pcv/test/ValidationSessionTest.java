@@ -0,0 +1,125 @@
+package com.platinum.pcv.test;
+
+import com.platinum.pcv.AhoCorasickDictionary;
+import com.platinum.pcv.PasswordComplexityValidator;
+import com.platinum.pcv.PasswordPolicy;
+import com.platinum.pcv.ValidationResult;
+import com.platinum.pcv.ValidationSession;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks a session always agrees with validating the password from scratch.
+ *
+ * @author jlucier
+ */
+public class ValidationSessionTest {
+
+    private static final String GENERIC_SUCCESS_PW = "AAAAbbbb1111@@@@";
+    private static final String OLD_PW = "nnnnTTTT3333!&&&";
+
+    // Digits and separators to make dates and phone numbers, letters and
+    // leetspeak to make words
+    private static final String ALPHABET = "0123456789/-.pasword@$Tx!\u00e9\n";
+
+    @Test
+    public void typingTest() {
+
+        List<String> history = new ArrayList<String>();
+        history.add(OLD_PW);
+        PasswordComplexityValidator validator = PasswordComplexityValidator.getDefaultInstance();
+        ValidationSession session = validator.newSession(history);
+        assertEquals(validator.checkAll("", history), session.getViolations());
+
+        for (int i = 0; i < GENERIC_SUCCESS_PW.length(); i++) {
+            session.append(GENERIC_SUCCESS_PW.charAt(i));
+            assertEquals(validator.checkAll(GENERIC_SUCCESS_PW.substring(0, i + 1), history), session.getViolations());
+        }
+        assertTrue(session.isValid());
+
+        session.append("12/27/2010");
+        assertEquals(EnumSet.of(ValidationResult.CONTAINS_DATE), ValidationResult.fromBits(session.getViolations()));
+        session.delete(GENERIC_SUCCESS_PW.length(), session.length());
+        assertTrue(session.isValid());
+
+        session.setPassword(OLD_PW);
+        assertEquals(OLD_PW, session.getPassword());
+        assertTrue(ValidationResult.fromBits(session.getViolations()).contains(ValidationResult.RECENTLY_USED));
+
+        session.clear();
+        assertEquals(0, session.length());
+        assertEquals(validator.checkAll("", history), session.getViolations());
+
+        try {
+            session.delete(0, 1);
+            assertTrue(false);
+        } catch (IndexOutOfBoundsException ex) {
+        }
+    }
+
+    @Test
+    public void randomEditsTest() {
+
+        AhoCorasickDictionary dictionary = AhoCorasickDictionary.builder(4)
+                .addWord("pass")
+                .addWord("word")
+                .addWord("sword")
+                .addWord("taxes")
+                .build();
+        PasswordComplexityValidator validator = new PasswordComplexityValidator(PasswordPolicy.builder()
+                .minPasswordLength(8)
+                .maxPasswordLength(24)
+                .dictionarySource(dictionary)
+                .build());
+        List<String> history = new ArrayList<String>();
+        history.add("password1$");
+        history.add("Tx0099/12/31");
+
+        Random random = new Random(14L);
+        ValidationSession session = validator.newSession(history);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            int start = random.nextInt(expected.length() + 1);
+            int end = start + random.nextInt(Math.min(3, expected.length() - start) + 1);
+            String text = randomString(random, random.nextInt(3));
+            switch (random.nextInt(4)) {
+                case 0:
+                    // Typing at the end, the common case
+                    session.append(text);
+                    expected.append(text);
+                    break;
+                case 1:
+                    session.deleteLast();
+                    if (expected.length() > 0) {
+                        expected.setLength(expected.length() - 1);
+                    }
+                    break;
+                case 2:
+                    session.replace(start, end, text);
+                    expected.replace(start, end, text);
+                    break;
+                default:
+                    if (expected.length() > 30) {
+                        expected.setLength(random.nextInt(30));
+                    }
+                    session.setPassword(expected);
+                    break;
+            }
+            String password = expected.toString();
+            assertEquals(password, session.getPassword());
+            assertEquals(password, validator.checkAll(password, history), session.getViolations());
+        }
+    }
+
+    private static String randomString(Random random, int length) {
+        StringBuilder chars = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            chars.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return chars.toString();
+    }
+}